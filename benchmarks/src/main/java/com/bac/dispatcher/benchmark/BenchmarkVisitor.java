@@ -0,0 +1,512 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher.benchmark;
+
+import com.bac.dispatcher.Visitor;
+import com.bac.dispatcher.benchmark.Targets.AcceptVisitor;
+import com.bac.dispatcher.benchmark.Targets.SubClass;
+import com.bac.dispatcher.benchmark.Targets.SuperClass;
+import com.bac.dispatcher.benchmark.Targets.T00;
+import com.bac.dispatcher.benchmark.Targets.T01;
+import com.bac.dispatcher.benchmark.Targets.T02;
+import com.bac.dispatcher.benchmark.Targets.T03;
+import com.bac.dispatcher.benchmark.Targets.T04;
+import com.bac.dispatcher.benchmark.Targets.T05;
+import com.bac.dispatcher.benchmark.Targets.T06;
+import com.bac.dispatcher.benchmark.Targets.T07;
+import com.bac.dispatcher.benchmark.Targets.T08;
+import com.bac.dispatcher.benchmark.Targets.T09;
+import com.bac.dispatcher.benchmark.Targets.T10;
+import com.bac.dispatcher.benchmark.Targets.T11;
+import com.bac.dispatcher.benchmark.Targets.T12;
+import com.bac.dispatcher.benchmark.Targets.T13;
+import com.bac.dispatcher.benchmark.Targets.T14;
+import com.bac.dispatcher.benchmark.Targets.T15;
+import com.bac.dispatcher.benchmark.Targets.T16;
+import com.bac.dispatcher.benchmark.Targets.T17;
+import com.bac.dispatcher.benchmark.Targets.T18;
+import com.bac.dispatcher.benchmark.Targets.T19;
+import com.bac.dispatcher.benchmark.Targets.T20;
+import com.bac.dispatcher.benchmark.Targets.T21;
+import com.bac.dispatcher.benchmark.Targets.T22;
+import com.bac.dispatcher.benchmark.Targets.T23;
+
+/**
+ * A Visitor with a method for every benchmark target class. Each method does
+ * the minimum of work, so the benchmarks measure the cost of selecting it.
+ * The handle methods return cached Long values so that boxing does not add to
+ * the allocation rate.
+ *
+ * The same methods are reachable through the conventional double dispatch of
+ * {@link AcceptVisitor} and through a hand written instanceof chain, which
+ * serve as baselines.
+ *
+ * @author Simon Baird
+ *
+ */
+public class BenchmarkVisitor implements Visitor<Long>, AcceptVisitor {
+
+	private long sum;
+
+	public long sum() {
+		return sum;
+	}
+
+	public void dispatch(SuperClass o) {
+		sum += 1;
+	}
+
+	public void dispatch(SubClass o) {
+		sum += 2;
+	}
+
+	public void dispatch(T00 o) {
+		sum += 3;
+	}
+
+	public void dispatch(T01 o) {
+		sum += 4;
+	}
+
+	public void dispatch(T02 o) {
+		sum += 5;
+	}
+
+	public void dispatch(T03 o) {
+		sum += 6;
+	}
+
+	public void dispatch(T04 o) {
+		sum += 7;
+	}
+
+	public void dispatch(T05 o) {
+		sum += 8;
+	}
+
+	public void dispatch(T06 o) {
+		sum += 9;
+	}
+
+	public void dispatch(T07 o) {
+		sum += 10;
+	}
+
+	public void dispatch(T08 o) {
+		sum += 11;
+	}
+
+	public void dispatch(T09 o) {
+		sum += 12;
+	}
+
+	public void dispatch(T10 o) {
+		sum += 13;
+	}
+
+	public void dispatch(T11 o) {
+		sum += 14;
+	}
+
+	public void dispatch(T12 o) {
+		sum += 15;
+	}
+
+	public void dispatch(T13 o) {
+		sum += 16;
+	}
+
+	public void dispatch(T14 o) {
+		sum += 17;
+	}
+
+	public void dispatch(T15 o) {
+		sum += 18;
+	}
+
+	public void dispatch(T16 o) {
+		sum += 19;
+	}
+
+	public void dispatch(T17 o) {
+		sum += 20;
+	}
+
+	public void dispatch(T18 o) {
+		sum += 21;
+	}
+
+	public void dispatch(T19 o) {
+		sum += 22;
+	}
+
+	public void dispatch(T20 o) {
+		sum += 23;
+	}
+
+	public void dispatch(T21 o) {
+		sum += 24;
+	}
+
+	public void dispatch(T22 o) {
+		sum += 25;
+	}
+
+	public void dispatch(T23 o) {
+		sum += 26;
+	}
+
+	public Long handle(SuperClass o) {
+		return 1L;
+	}
+
+	public Long handle(SubClass o) {
+		return 2L;
+	}
+
+	public Long handle(T00 o) {
+		return 3L;
+	}
+
+	public Long handle(T01 o) {
+		return 4L;
+	}
+
+	public Long handle(T02 o) {
+		return 5L;
+	}
+
+	public Long handle(T03 o) {
+		return 6L;
+	}
+
+	public Long handle(T04 o) {
+		return 7L;
+	}
+
+	public Long handle(T05 o) {
+		return 8L;
+	}
+
+	public Long handle(T06 o) {
+		return 9L;
+	}
+
+	public Long handle(T07 o) {
+		return 10L;
+	}
+
+	public Long handle(T08 o) {
+		return 11L;
+	}
+
+	public Long handle(T09 o) {
+		return 12L;
+	}
+
+	public Long handle(T10 o) {
+		return 13L;
+	}
+
+	public Long handle(T11 o) {
+		return 14L;
+	}
+
+	public Long handle(T12 o) {
+		return 15L;
+	}
+
+	public Long handle(T13 o) {
+		return 16L;
+	}
+
+	public Long handle(T14 o) {
+		return 17L;
+	}
+
+	public Long handle(T15 o) {
+		return 18L;
+	}
+
+	public Long handle(T16 o) {
+		return 19L;
+	}
+
+	public Long handle(T17 o) {
+		return 20L;
+	}
+
+	public Long handle(T18 o) {
+		return 21L;
+	}
+
+	public Long handle(T19 o) {
+		return 22L;
+	}
+
+	public Long handle(T20 o) {
+		return 23L;
+	}
+
+	public Long handle(T21 o) {
+		return 24L;
+	}
+
+	public Long handle(T22 o) {
+		return 25L;
+	}
+
+	public Long handle(T23 o) {
+		return 26L;
+	}
+
+	@Override
+	public long visit(SuperClass o) {
+		return 1;
+	}
+
+	@Override
+	public long visit(SubClass o) {
+		return 2;
+	}
+
+	@Override
+	public long visit(T00 o) {
+		return 3;
+	}
+
+	@Override
+	public long visit(T01 o) {
+		return 4;
+	}
+
+	@Override
+	public long visit(T02 o) {
+		return 5;
+	}
+
+	@Override
+	public long visit(T03 o) {
+		return 6;
+	}
+
+	@Override
+	public long visit(T04 o) {
+		return 7;
+	}
+
+	@Override
+	public long visit(T05 o) {
+		return 8;
+	}
+
+	@Override
+	public long visit(T06 o) {
+		return 9;
+	}
+
+	@Override
+	public long visit(T07 o) {
+		return 10;
+	}
+
+	@Override
+	public long visit(T08 o) {
+		return 11;
+	}
+
+	@Override
+	public long visit(T09 o) {
+		return 12;
+	}
+
+	@Override
+	public long visit(T10 o) {
+		return 13;
+	}
+
+	@Override
+	public long visit(T11 o) {
+		return 14;
+	}
+
+	@Override
+	public long visit(T12 o) {
+		return 15;
+	}
+
+	@Override
+	public long visit(T13 o) {
+		return 16;
+	}
+
+	@Override
+	public long visit(T14 o) {
+		return 17;
+	}
+
+	@Override
+	public long visit(T15 o) {
+		return 18;
+	}
+
+	@Override
+	public long visit(T16 o) {
+		return 19;
+	}
+
+	@Override
+	public long visit(T17 o) {
+		return 20;
+	}
+
+	@Override
+	public long visit(T18 o) {
+		return 21;
+	}
+
+	@Override
+	public long visit(T19 o) {
+		return 22;
+	}
+
+	@Override
+	public long visit(T20 o) {
+		return 23;
+	}
+
+	@Override
+	public long visit(T21 o) {
+		return 24;
+	}
+
+	@Override
+	public long visit(T22 o) {
+		return 25;
+	}
+
+	@Override
+	public long visit(T23 o) {
+		return 26;
+	}
+
+	/**
+	 * Selects the visit method with a chain of instanceof tests, most
+	 * specific class first
+	 *
+	 * @param o
+	 *            the target object
+	 * @return the value returned by the visit method
+	 */
+	public long instanceOf(Object o) {
+
+		if (o instanceof T00) {
+			return visit((T00) o);
+		}
+		if (o instanceof T01) {
+			return visit((T01) o);
+		}
+		if (o instanceof T02) {
+			return visit((T02) o);
+		}
+		if (o instanceof T03) {
+			return visit((T03) o);
+		}
+		if (o instanceof T04) {
+			return visit((T04) o);
+		}
+		if (o instanceof T05) {
+			return visit((T05) o);
+		}
+		if (o instanceof T06) {
+			return visit((T06) o);
+		}
+		if (o instanceof T07) {
+			return visit((T07) o);
+		}
+		if (o instanceof T08) {
+			return visit((T08) o);
+		}
+		if (o instanceof T09) {
+			return visit((T09) o);
+		}
+		if (o instanceof T10) {
+			return visit((T10) o);
+		}
+		if (o instanceof T11) {
+			return visit((T11) o);
+		}
+		if (o instanceof T12) {
+			return visit((T12) o);
+		}
+		if (o instanceof T13) {
+			return visit((T13) o);
+		}
+		if (o instanceof T14) {
+			return visit((T14) o);
+		}
+		if (o instanceof T15) {
+			return visit((T15) o);
+		}
+		if (o instanceof T16) {
+			return visit((T16) o);
+		}
+		if (o instanceof T17) {
+			return visit((T17) o);
+		}
+		if (o instanceof T18) {
+			return visit((T18) o);
+		}
+		if (o instanceof T19) {
+			return visit((T19) o);
+		}
+		if (o instanceof T20) {
+			return visit((T20) o);
+		}
+		if (o instanceof T21) {
+			return visit((T21) o);
+		}
+		if (o instanceof T22) {
+			return visit((T22) o);
+		}
+		if (o instanceof T23) {
+			return visit((T23) o);
+		}
+		if (o instanceof SubClass) {
+			return visit((SubClass) o);
+		}
+		if (o instanceof SuperClass) {
+			return visit((SuperClass) o);
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.bac.dispatcher.DefaultDispatchHandler;
+import com.bac.dispatcher.DispatchHandler;
+import com.bac.dispatcher.DispatchSite;
+import com.bac.dispatcher.LambdaVisitor;
+import com.bac.dispatcher.SpecializedDispatcher;
+import com.bac.dispatcher.Visitor;
+import com.bac.dispatcher.benchmark.Targets.SubClass;
+import com.bac.dispatcher.benchmark.Targets.SuperClass;
+import com.bac.dispatcher.benchmark.Targets.T00;
+import com.bac.dispatcher.benchmark.Targets.T01;
+import com.bac.dispatcher.benchmark.Targets.T02;
+import com.bac.dispatcher.benchmark.Targets.T03;
+import com.bac.dispatcher.benchmark.Targets.T04;
+import com.bac.dispatcher.benchmark.Targets.T05;
+import com.bac.dispatcher.benchmark.Targets.T06;
+import com.bac.dispatcher.benchmark.Targets.T07;
+import com.bac.dispatcher.benchmark.Targets.T08;
+import com.bac.dispatcher.benchmark.Targets.T09;
+import com.bac.dispatcher.benchmark.Targets.T10;
+import com.bac.dispatcher.benchmark.Targets.T11;
+import com.bac.dispatcher.benchmark.Targets.T12;
+import com.bac.dispatcher.benchmark.Targets.T13;
+import com.bac.dispatcher.benchmark.Targets.T14;
+import com.bac.dispatcher.benchmark.Targets.T15;
+import com.bac.dispatcher.benchmark.Targets.T16;
+import com.bac.dispatcher.benchmark.Targets.T17;
+import com.bac.dispatcher.benchmark.Targets.T18;
+import com.bac.dispatcher.benchmark.Targets.T19;
+import com.bac.dispatcher.benchmark.Targets.T20;
+import com.bac.dispatcher.benchmark.Targets.T21;
+import com.bac.dispatcher.benchmark.Targets.T22;
+import com.bac.dispatcher.benchmark.Targets.T23;
+import com.bac.dispatcher.benchmark.Targets.Visitable;
+
+/**
+ * Measures the cost of routing a target to a Visitor method through the
+ * dispatch handler against a conventional accept() double dispatch and an
+ * instanceof chain. Each invocation visits {@value #TARGETS} targets drawn
+ * from the mixture of classes given by the mix parameter, and the results are
+ * reported per target.
+ *
+ * Allocation per operation is reported by running with the GC profiler
+ *
+ * 	java -jar target/benchmarks.jar DispatchBenchmark -prof gc
+ *
+ * @author Simon Baird
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DispatchBenchmark {
+
+	static final int TARGETS = 1024;
+
+	@Param
+	private Mix mix;
+
+	private Object[] targets;
+
+	private BenchmarkVisitor visitor;
+
+	private DefaultDispatchHandler dispatcher;
+
+	private DispatchHandler<Long> handler;
+
+	private SpecializedDispatcher<Long> specialized;
+
+	private LambdaVisitor<Long> lambdaVisitor;
+
+	private DispatchSite<Long> site;
+
+	@Setup
+	public void setUp() {
+
+		targets = mix.targets(TARGETS, 42);
+		visitor = new BenchmarkVisitor();
+		dispatcher = new DefaultDispatchHandler();
+		handler = new DispatchHandler<Long>();
+		specialized = handler.specialize(BenchmarkVisitor.class);
+		lambdaVisitor = lambdas(visitor);
+		site = handler.site(BenchmarkVisitor.class);
+	}
+
+	/*
+	 * A LambdaVisitor calling the same methods as the BenchmarkVisitor
+	 */
+	private static LambdaVisitor<Long> lambdas(BenchmarkVisitor visitor) {
+
+		return Visitor.<Long> builder()
+				.on(SuperClass.class, visitor::dispatch)
+				.on(SubClass.class, visitor::dispatch)
+				.on(T00.class, visitor::dispatch)
+				.on(T01.class, visitor::dispatch)
+				.on(T02.class, visitor::dispatch)
+				.on(T03.class, visitor::dispatch)
+				.on(T04.class, visitor::dispatch)
+				.on(T05.class, visitor::dispatch)
+				.on(T06.class, visitor::dispatch)
+				.on(T07.class, visitor::dispatch)
+				.on(T08.class, visitor::dispatch)
+				.on(T09.class, visitor::dispatch)
+				.on(T10.class, visitor::dispatch)
+				.on(T11.class, visitor::dispatch)
+				.on(T12.class, visitor::dispatch)
+				.on(T13.class, visitor::dispatch)
+				.on(T14.class, visitor::dispatch)
+				.on(T15.class, visitor::dispatch)
+				.on(T16.class, visitor::dispatch)
+				.on(T17.class, visitor::dispatch)
+				.on(T18.class, visitor::dispatch)
+				.on(T19.class, visitor::dispatch)
+				.on(T20.class, visitor::dispatch)
+				.on(T21.class, visitor::dispatch)
+				.on(T22.class, visitor::dispatch)
+				.on(T23.class, visitor::dispatch)
+				.build();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TARGETS)
+	public long defaultDispatch() {
+
+		for (Object target : targets) {
+			dispatcher.dispatch(visitor, target);
+		}
+		return visitor.sum();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TARGETS)
+	public void handle(Blackhole blackhole) {
+
+		for (Object target : targets) {
+			blackhole.consume(handler.handle(visitor, target));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TARGETS)
+	public long specializedDispatch() {
+
+		for (Object target : targets) {
+			specialized.dispatch(visitor, target);
+		}
+		return visitor.sum();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TARGETS)
+	public long siteDispatch() {
+
+		for (Object target : targets) {
+			site.dispatch(visitor, target);
+		}
+		return visitor.sum();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TARGETS)
+	public long lambdaDispatch() {
+
+		for (Object target : targets) {
+			lambdaVisitor.dispatch(target);
+		}
+		return visitor.sum();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TARGETS)
+	public void acceptBaseline(Blackhole blackhole) {
+
+		for (Object target : targets) {
+			blackhole.consume(((Visitable) target).accept(visitor));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TARGETS)
+	public void instanceofBaseline(Blackhole blackhole) {
+
+		for (Object target : targets) {
+			blackhole.consume(visitor.instanceOf(target));
+		}
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bac.dispatcher.DefaultDispatchHandler;
+import com.bac.dispatcher.MessageRouter;
+import com.bac.dispatcher.MessageType;
+import com.bac.dispatcher.MessageView;
+import com.bac.dispatcher.Visitor;
+
+/**
+ * Measures passing a direct buffer of {@value #RECORDS} binary records of
+ * three types to a Visitor through a MessageRouter against decoding each
+ * record to an object and calling DefaultDispatchHandler.dispatch.
+ *
+ * Allocation per record is reported by running with the GC profiler
+ *
+ * 	java -jar target/benchmarks.jar MessageBenchmark -prof gc
+ *
+ * @author Simon Baird
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MessageBenchmark {
+
+	static final int RECORDS = 1024;
+
+	static final int ORDER = 1;
+
+	static final int CANCEL = 2;
+
+	static final int TRADE = 3;
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORDS * (MessageRouter.HEADER_LENGTH + 16));
+
+	private final DefaultDispatchHandler dispatcher = new DefaultDispatchHandler();
+
+	private final ViewVisitor viewVisitor = new ViewVisitor();
+
+	private final DecodedVisitor decodedVisitor = new DecodedVisitor();
+
+	private MessageRouter<Object> router;
+
+	@Setup
+	public void setUp() {
+
+		Random random = new Random(42);
+		for (int i = 0; i < RECORDS; i++) {
+			int type = 1 + random.nextInt(3);
+			buffer.putInt(type == CANCEL ? 8 : 16).putInt(type).putLong(i);
+			if (type != CANCEL) {
+				buffer.putLong(random.nextInt(1000));
+			}
+		}
+		buffer.flip();
+		router = dispatcher.router(viewVisitor);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RECORDS)
+	public long router() {
+
+		router.dispatchAll(buffer);
+		return viewVisitor.total;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RECORDS)
+	public long decoded() {
+
+		ByteBuffer buffer = this.buffer;
+		for (int offset = 0; offset < buffer.limit();) {
+			int length = buffer.getInt(offset);
+			int type = buffer.getInt(offset + 4);
+			int body = offset + MessageRouter.HEADER_LENGTH;
+			long id = buffer.getLong(body);
+			Object record = type == ORDER ? new Order(id, buffer.getLong(body + 8))
+					: type == TRADE ? new Trade(id, buffer.getLong(body + 8)) : new Cancel(id);
+			dispatcher.dispatch(decodedVisitor, record);
+			offset = body + length;
+		}
+		return decodedVisitor.total;
+	}
+
+	public static class RecordView implements MessageView {
+
+		ByteBuffer buffer;
+
+		int offset;
+
+		@Override
+		public void wrap(ByteBuffer buffer, int offset, int length) {
+
+			this.buffer = buffer;
+			this.offset = offset;
+		}
+
+		long id() {
+
+			return buffer.getLong(offset);
+		}
+
+		long value() {
+
+			return buffer.getLong(offset + 8);
+		}
+	}
+
+	public static final class OrderView extends RecordView {
+	}
+
+	public static final class CancelView extends RecordView {
+	}
+
+	public static final class TradeView extends RecordView {
+	}
+
+	public static final class ViewVisitor implements Visitor<Object> {
+
+		long total;
+
+		@MessageType(ORDER)
+		public void dispatch(OrderView order) {
+
+			total += order.value();
+		}
+
+		@MessageType(CANCEL)
+		public void dispatch(CancelView cancel) {
+
+			total -= cancel.id();
+		}
+
+		@MessageType(TRADE)
+		public void dispatch(TradeView trade) {
+
+			total ^= trade.value();
+		}
+	}
+
+	static final class Order {
+
+		final long id;
+
+		final long quantity;
+
+		Order(long id, long quantity) {
+
+			this.id = id;
+			this.quantity = quantity;
+		}
+	}
+
+	static final class Cancel {
+
+		final long id;
+
+		Cancel(long id) {
+
+			this.id = id;
+		}
+	}
+
+	static final class Trade {
+
+		final long id;
+
+		final long price;
+
+		Trade(long id, long price) {
+
+			this.id = id;
+			this.price = price;
+		}
+	}
+
+	public static final class DecodedVisitor implements Visitor<Object> {
+
+		long total;
+
+		public void dispatch(Order order) {
+
+			total += order.quantity;
+		}
+
+		public void dispatch(Cancel cancel) {
+
+			total -= cancel.id;
+		}
+
+		public void dispatch(Trade trade) {
+
+			total ^= trade.price;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher.benchmark;
+
+import java.util.Random;
+
+/**
+ * The mixture of target classes presented to a call site. Targets are drawn
+ * at random, with a fixed seed, from the classes of the mixture so that the
+ * sequence of classes is not predictable by the branch predictor.
+ *
+ * @author Simon Baird
+ *
+ */
+public enum Mix {
+
+	/**
+	 * A single target class
+	 */
+	MONOMORPHIC {
+		@Override
+		Object create(int i) {
+			return new Targets.T00();
+		}
+	},
+
+	/**
+	 * Two unrelated target classes
+	 */
+	BIMORPHIC {
+		@Override
+		Object create(int i) {
+			return i % 2 == 0 ? new Targets.T00() : new Targets.T01();
+		}
+	},
+
+	/**
+	 * Twenty four unrelated target classes
+	 */
+	MEGAMORPHIC {
+		@Override
+		Object create(int i) {
+			return MEGAMORPHIC_TARGETS[i % MEGAMORPHIC_TARGETS.length];
+		}
+	},
+
+	/**
+	 * The SuperClass, SubClass and FinalClass hierarchy where FinalClass is
+	 * routed to the SubClass method
+	 */
+	HIERARCHY {
+		@Override
+		Object create(int i) {
+			switch (i % 3) {
+			case 0:
+				return new Targets.SuperClass();
+			case 1:
+				return new Targets.SubClass();
+			default:
+				return new Targets.FinalClass();
+			}
+		}
+	};
+
+	private static final Object[] MEGAMORPHIC_TARGETS = { new Targets.T00(), new Targets.T01(), new Targets.T02(),
+			new Targets.T03(), new Targets.T04(), new Targets.T05(), new Targets.T06(), new Targets.T07(),
+			new Targets.T08(), new Targets.T09(), new Targets.T10(), new Targets.T11(), new Targets.T12(),
+			new Targets.T13(), new Targets.T14(), new Targets.T15(), new Targets.T16(), new Targets.T17(),
+			new Targets.T18(), new Targets.T19(), new Targets.T20(), new Targets.T21(), new Targets.T22(),
+			new Targets.T23() };
+
+	abstract Object create(int i);
+
+	/**
+	 * Returns a shuffled array of targets drawn from this mixture
+	 *
+	 * @param size
+	 *            the number of targets
+	 * @param seed
+	 *            the seed for the shuffle
+	 * @return the targets
+	 */
+	public Object[] targets(int size, long seed) {
+
+		Object[] targets = new Object[size];
+		for (int i = 0; i < size; i++) {
+			targets[i] = create(i);
+		}
+		Random random = new Random(seed);
+		for (int i = size - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			Object t = targets[i];
+			targets[i] = targets[j];
+			targets[j] = t;
+		}
+		return targets;
+	}
+}
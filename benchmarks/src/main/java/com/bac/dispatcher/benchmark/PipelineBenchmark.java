@@ -0,0 +1,306 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher.benchmark;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bac.dispatcher.DefaultDispatchHandler;
+import com.bac.dispatcher.EventPipeline;
+import com.bac.dispatcher.EventPipeline.WaitStrategy;
+
+/**
+ * Measures the rate at which events pass from a producer to a Visitor on a
+ * consumer thread through an EventPipeline against a LinkedBlockingQueue
+ * drained by a thread calling DefaultDispatchHandler.dispatch. Each
+ * invocation publishes {@value #EVENTS} events followed by a marker, and
+ * waits for the consumer to reach the marker, so the results are the end to
+ * end throughput per event.
+ *
+ * The multiProducer groups instead publish from {@value #PRODUCERS} threads at
+ * once to a single consumer, through a pipeline built with multiProducer() or
+ * a shared LinkedBlockingQueue, so that the producers contend to claim each
+ * slot. The results are the total rate at which the producers publish, which
+ * the consumer limits once the buffer is full.
+ *
+ * Allocation per event on the producer side is reported by running with the
+ * GC profiler
+ *
+ * 	java -jar target/benchmarks.jar PipelineBenchmark -prof gc
+ *
+ * @author Simon Baird
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PipelineBenchmark {
+
+	static final int EVENTS = 4096;
+
+	static final int PRODUCERS = 4;
+
+	@State(Scope.Benchmark)
+	public static class Pipeline {
+
+		@Param({ "MONOMORPHIC", "MEGAMORPHIC" })
+		private Mix mix;
+
+		@Param
+		private WaitStrategy waitStrategy;
+
+		private Object[] targets;
+
+		private final Marker marker = new Marker();
+
+		private EventPipeline pipeline;
+
+		@Setup
+		public void setUp() {
+
+			targets = mix.targets(EVENTS, 42);
+			pipeline = EventPipeline.builder().capacity(1024).waitStrategy(waitStrategy)
+					.consumer(new PipelineVisitor()).start();
+		}
+
+		@TearDown
+		public void tearDown() {
+
+			pipeline.close();
+		}
+	}
+
+	@State(Scope.Group)
+	public static class SharedPipeline {
+
+		@Param({ "MONOMORPHIC", "MEGAMORPHIC" })
+		private Mix mix;
+
+		@Param
+		private WaitStrategy waitStrategy;
+
+		private Object[] targets;
+
+		private EventPipeline pipeline;
+
+		@Setup
+		public void setUp() {
+
+			targets = mix.targets(EVENTS, 42);
+			pipeline = EventPipeline.builder().capacity(1024).waitStrategy(waitStrategy).multiProducer()
+					.consumer(new PipelineVisitor()).start();
+		}
+
+		@TearDown
+		public void tearDown() {
+
+			pipeline.close();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Queue {
+
+		@Param({ "MONOMORPHIC", "MEGAMORPHIC" })
+		private Mix mix;
+
+		private Object[] targets;
+
+		private final Marker marker = new Marker();
+
+		private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>(1024);
+
+		private final Object stop = new Object();
+
+		private Thread consumer;
+
+		@Setup
+		public void setUp() {
+
+			targets = mix.targets(EVENTS, 42);
+			DefaultDispatchHandler dispatcher = new DefaultDispatchHandler();
+			PipelineVisitor visitor = new PipelineVisitor();
+			consumer = new Thread(() -> {
+				try {
+					for (Object o = queue.take(); o != stop; o = queue.take()) {
+						dispatcher.dispatch(visitor, o);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			consumer.setDaemon(true);
+			consumer.start();
+		}
+
+		@TearDown
+		public void tearDown() throws InterruptedException {
+
+			queue.put(stop);
+			consumer.join();
+		}
+	}
+
+	@State(Scope.Group)
+	public static class SharedQueue {
+
+		@Param({ "MONOMORPHIC", "MEGAMORPHIC" })
+		private Mix mix;
+
+		private Object[] targets;
+
+		private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>(1024);
+
+		private final Object stop = new Object();
+
+		private Thread consumer;
+
+		@Setup
+		public void setUp() {
+
+			targets = mix.targets(EVENTS, 42);
+			DefaultDispatchHandler dispatcher = new DefaultDispatchHandler();
+			PipelineVisitor visitor = new PipelineVisitor();
+			consumer = new Thread(() -> {
+				try {
+					for (Object o = queue.take(); o != stop; o = queue.take()) {
+						dispatcher.dispatch(visitor, o);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			consumer.setDaemon(true);
+			consumer.start();
+		}
+
+		@TearDown
+		public void tearDown() throws InterruptedException {
+
+			queue.put(stop);
+			consumer.join();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(EVENTS)
+	public long pipeline(Pipeline state) {
+
+		for (Object target : state.targets) {
+			state.pipeline.publish(target);
+		}
+		state.pipeline.publish(state.marker);
+		return state.marker.await();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(EVENTS)
+	public long linkedBlockingQueue(Queue state) throws InterruptedException {
+
+		for (Object target : state.targets) {
+			state.queue.put(target);
+		}
+		state.queue.put(state.marker);
+		return state.marker.await();
+	}
+
+	@Benchmark
+	@Group("multiProducerPipeline")
+	@GroupThreads(PRODUCERS)
+	@OperationsPerInvocation(EVENTS)
+	public void multiProducerPipeline(SharedPipeline state) {
+
+		for (Object target : state.targets) {
+			state.pipeline.publish(target);
+		}
+	}
+
+	@Benchmark
+	@Group("multiProducerQueue")
+	@GroupThreads(PRODUCERS)
+	@OperationsPerInvocation(EVENTS)
+	public void multiProducerQueue(SharedQueue state) throws InterruptedException {
+
+		for (Object target : state.targets) {
+			state.queue.put(target);
+		}
+	}
+
+	/**
+	 * Published after each batch of events so that the producer can wait for
+	 * the consumer to dispatch the whole batch
+	 */
+	public static final class Marker {
+
+		private volatile long reached;
+
+		private long expected;
+
+		long await() {
+
+			expected++;
+			while (reached < expected) {
+				Thread.yield();
+			}
+			return expected;
+		}
+	}
+
+	/**
+	 * The BenchmarkVisitor with a method recording each marker reached
+	 */
+	public static class PipelineVisitor extends BenchmarkVisitor {
+
+		public void dispatch(Marker o) {
+			o.reached++;
+		}
+	}
+}
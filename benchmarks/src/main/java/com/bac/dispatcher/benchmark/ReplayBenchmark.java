@@ -0,0 +1,209 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bac.dispatcher.DefaultDispatchHandler;
+import com.bac.dispatcher.JournalReplay;
+import com.bac.dispatcher.MessageRouter;
+import com.bac.dispatcher.ReplayProgress;
+import com.bac.dispatcher.Visitor;
+
+/**
+ * Measures the time to replay a journal of {@value #RECORDS} records through
+ * a Visitor with a JournalReplay, for a number of decoding threads, against
+ * reading, decoding and dispatching each record in turn on a single thread.
+ * The records are decoded to objects with a String field so that decoding
+ * costs more than dispatching, as it does for most journals.
+ *
+ * The journal is written to the temporary directory and is read from the
+ * page cache, so the results show the cost of decoding and dispatch rather
+ * than of the disk.
+ *
+ * @author Simon Baird
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReplayBenchmark {
+
+	static final int RECORDS = 1 << 20;
+
+	static final int ACCOUNT = 1;
+
+	static final int TRANSFER = 2;
+
+	@Param({ "1", "2", "4" })
+	private int decoders;
+
+	private Path journal;
+
+	private JournalReplay replay;
+
+	private final DefaultDispatchHandler dispatcher = new DefaultDispatchHandler();
+
+	@Setup
+	public void setUp() throws IOException {
+
+		journal = Files.createTempFile("replay", ".journal");
+		Random random = new Random(42);
+		ByteBuffer buffer = ByteBuffer.allocate(RECORDS * (MessageRouter.HEADER_LENGTH + 32));
+		for (int i = 0; i < RECORDS; i++) {
+			if (random.nextInt(8) == 0) {
+				buffer.putInt(24).putInt(ACCOUNT).putLong(random.nextInt(1000)).put("ACCOUNT-".getBytes())
+						.putLong(i);
+			} else {
+				buffer.putInt(24).putInt(TRANSFER).putLong(random.nextInt(1000)).putLong(random.nextInt(1000))
+						.putLong(random.nextInt(100_000));
+			}
+		}
+		buffer.flip();
+		try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		replay = JournalReplay.builder().decoder(ReplayBenchmark::decode).decoders(decoders).build();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+
+		Files.delete(journal);
+	}
+
+	@Benchmark
+	public long replay() throws IOException {
+
+		LedgerVisitor visitor = new LedgerVisitor();
+		ReplayProgress progress = replay.replay(journal, visitor);
+		return visitor.balance + progress.records();
+	}
+
+	@Benchmark
+	public long singleThread() throws IOException {
+
+		LedgerVisitor visitor = new LedgerVisitor();
+		try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			for (int offset = 0; offset < buffer.limit();) {
+				int length = buffer.getInt(offset);
+				Object record = decode(buffer.getInt(offset + 4), buffer, offset + MessageRouter.HEADER_LENGTH, length);
+				dispatcher.dispatch(visitor, record);
+				offset += MessageRouter.HEADER_LENGTH + length;
+			}
+		}
+		return visitor.balance;
+	}
+
+	static Object decode(int typeId, ByteBuffer buffer, int offset, int length) {
+
+		if (typeId == ACCOUNT) {
+			byte[] name = new byte[16];
+			for (int i = 0; i < name.length; i++) {
+				name[i] = buffer.get(offset + 8 + i);
+			}
+			return new Account(buffer.getLong(offset), new String(name));
+		}
+		return new Transfer(buffer.getLong(offset), buffer.getLong(offset + 8), buffer.getLong(offset + 16));
+	}
+
+	static final class Account {
+
+		final long id;
+
+		final String name;
+
+		Account(long id, String name) {
+
+			this.id = id;
+			this.name = name;
+		}
+	}
+
+	static final class Transfer {
+
+		final long from;
+
+		final long to;
+
+		final long amount;
+
+		Transfer(long from, long to, long amount) {
+
+			this.from = from;
+			this.to = to;
+			this.amount = amount;
+		}
+	}
+
+	public static final class LedgerVisitor implements Visitor<Object> {
+
+		long balance;
+
+		public void dispatch(Account account) {
+
+			balance += account.name.length();
+		}
+
+		public void dispatch(Transfer transfer) {
+
+			balance += transfer.from - transfer.to + transfer.amount;
+		}
+	}
+}
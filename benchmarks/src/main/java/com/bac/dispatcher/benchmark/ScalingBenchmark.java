@@ -0,0 +1,117 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.bac.dispatcher.DispatchHandler;
+
+/**
+ * Measures how the throughput of calls with already resolved target classes
+ * scales with the number of calling threads. Every thread shares the
+ * handler and the method tables, and has its own Visitor and targets, so any
+ * contention is in the dispatch path itself. Throughput per thread should
+ * remain constant as threads are added, up to the number of processors.
+ *
+ * The thread count is given on the command line, e.g.
+ *
+ * 	for t in 1 2 4 8 16 32 64; do java -jar target/benchmarks.jar ScalingBenchmark -t $t; done
+ *
+ * @author Simon Baird
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ScalingBenchmark {
+
+	static final int TARGETS = 1024;
+
+	@State(Scope.Benchmark)
+	public static class Shared {
+
+		private final DispatchHandler<Long> handler = new DispatchHandler<Long>();
+	}
+
+	@State(Scope.Thread)
+	public static class Caller {
+
+		@Param({ "MONOMORPHIC", "MEGAMORPHIC" })
+		private Mix mix;
+
+		private Object[] targets;
+
+		private BenchmarkVisitor visitor;
+
+		@Setup
+		public void setUp() {
+
+			targets = mix.targets(TARGETS, Thread.currentThread().getId());
+			visitor = new BenchmarkVisitor();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TARGETS)
+	public long dispatch(Shared shared, Caller caller) {
+
+		for (Object target : caller.targets) {
+			shared.handler.dispatch(caller.visitor, target);
+		}
+		return caller.visitor.sum();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TARGETS)
+	public void handle(Shared shared, Caller caller, Blackhole blackhole) {
+
+		for (Object target : caller.targets) {
+			blackhole.consume(shared.handler.handle(caller.visitor, target));
+		}
+	}
+}
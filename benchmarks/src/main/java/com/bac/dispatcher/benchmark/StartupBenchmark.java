@@ -0,0 +1,81 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bac.dispatcher.DefaultDispatchHandler;
+import com.bac.dispatcher.groovy.DefaultGroovyDispatchHandler;
+
+/**
+ * Measures the time to the first dispatch in a new JVM, including loading
+ * and initialising the handler classes and resolving the first Visitor
+ * method, for the core handler and the Groovy handler. Each measurement is a
+ * single call in a fresh fork, so nothing has been loaded by an earlier
+ * measurement.
+ *
+ * 	java -jar target/benchmarks.jar StartupBenchmark
+ *
+ * @author Simon Baird
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+
+	@Benchmark
+	public long coreFirstDispatch() {
+
+		BenchmarkVisitor visitor = new BenchmarkVisitor();
+		new DefaultDispatchHandler().dispatch(visitor, new Targets.T00());
+		return visitor.sum();
+	}
+
+	@Benchmark
+	public long groovyFirstDispatch() {
+
+		BenchmarkVisitor visitor = new BenchmarkVisitor();
+		new DefaultGroovyDispatchHandler().dispatch(visitor, new Targets.T00());
+		return visitor.sum();
+	}
+}
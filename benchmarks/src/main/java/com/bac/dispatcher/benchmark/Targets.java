@@ -0,0 +1,328 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher.benchmark;
+
+/**
+ * The target classes used by the benchmarks. Each class implements Visitable
+ * so that a hand written double dispatch can be measured as a baseline.
+ *
+ * SuperClass, SubClass and FinalClass form a hierarchy in which FinalClass has
+ * no method of its own and so is routed to the SubClass method. The T classes
+ * are unrelated to each other and provide enough distinct types to make a
+ * call site megamorphic.
+ *
+ * @author Simon Baird
+ *
+ */
+public final class Targets {
+
+	private Targets() {
+	}
+
+	/**
+	 * The element side of a conventional Visitor pattern
+	 */
+	public interface Visitable {
+
+		long accept(AcceptVisitor v);
+	}
+
+	/**
+	 * The Visitor side of a conventional Visitor pattern
+	 */
+	public interface AcceptVisitor {
+
+		long visit(SuperClass o);
+
+		long visit(SubClass o);
+
+		long visit(T00 o);
+
+		long visit(T01 o);
+
+		long visit(T02 o);
+
+		long visit(T03 o);
+
+		long visit(T04 o);
+
+		long visit(T05 o);
+
+		long visit(T06 o);
+
+		long visit(T07 o);
+
+		long visit(T08 o);
+
+		long visit(T09 o);
+
+		long visit(T10 o);
+
+		long visit(T11 o);
+
+		long visit(T12 o);
+
+		long visit(T13 o);
+
+		long visit(T14 o);
+
+		long visit(T15 o);
+
+		long visit(T16 o);
+
+		long visit(T17 o);
+
+		long visit(T18 o);
+
+		long visit(T19 o);
+
+		long visit(T20 o);
+
+		long visit(T21 o);
+
+		long visit(T22 o);
+
+		long visit(T23 o);
+	}
+
+	public static class SuperClass implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static class SubClass extends SuperClass {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class FinalClass extends SubClass {
+
+	}
+
+	public static final class T00 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T01 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T02 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T03 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T04 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T05 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T06 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T07 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T08 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T09 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T10 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T11 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T12 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T13 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T14 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T15 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T16 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T17 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T18 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T19 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T20 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T21 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T22 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+
+	public static final class T23 implements Visitable {
+
+		@Override
+		public long accept(AcceptVisitor v) {
+			return v.visit(this);
+		}
+	}
+}
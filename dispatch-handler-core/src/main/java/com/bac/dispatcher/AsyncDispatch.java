@@ -0,0 +1,184 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Dispatches a target to a Visitor asynchronously, completing a
+ * CompletableFuture with the result.
+ *
+ * Unless an Executor is supplied the Visitor is called on a new virtual thread
+ * where the runtime supports them, i.e. JDK 21 or later, so that a Visitor
+ * method blocking on I/O holds no platform thread. On earlier runtimes the
+ * common ForkJoinPool is used, to which blocking Visitors should not be
+ * submitted in number; supply a dedicated Executor for those.
+ *
+ * @author Simon Baird
+ *
+ */
+final class AsyncDispatch {
+
+	private AsyncDispatch() {
+	}
+
+	/**
+	 * Invoke the dispatch method of the Visitor on the Executor
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param o
+	 *            the target object, may be null
+	 * @param executor
+	 *            runs the Visitor
+	 * @return a future completed when the Visitor returns, or exceptionally
+	 *         with a CompletionException wrapping the exception it throws
+	 */
+	static CompletableFuture<Void> dispatch(Visitor<?> v, Object o, Executor executor) {
+
+		return submit(() -> {
+			DispatchEngine.dispatch(v, o);
+			return null;
+		}, executor);
+	}
+
+	/**
+	 * Invoke the handle method of the Visitor on the Executor
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param o
+	 *            the target object, may be null
+	 * @param executor
+	 *            runs the Visitor
+	 * @return a future completed with the value returned by the Visitor, or
+	 *         exceptionally with a CompletionException wrapping the exception
+	 *         it throws
+	 */
+	static CompletableFuture<Object> handle(Visitor<?> v, Object o, Executor executor) {
+
+		return submit(() -> DispatchEngine.handle(v, o), executor);
+	}
+
+	private static <R> CompletableFuture<R> submit(Supplier<R> call, Executor executor) {
+
+		Task<R> task = new Task<>(call);
+		executor.execute(task);
+		return task.future;
+	}
+
+	/**
+	 * Returns the Executor used when none is supplied
+	 */
+	static Executor defaultExecutor() {
+
+		return DefaultExecutor.INSTANCE;
+	}
+
+	/**
+	 * Returns an Executor running no more than the given number of tasks on
+	 * the underlying Executor at once. Further tasks are queued without
+	 * blocking the submitting thread.
+	 *
+	 * @param executor
+	 *            the underlying Executor
+	 * @param maxConcurrent
+	 *            the maximum number of tasks running at once
+	 * @return the limited Executor
+	 * @throws IllegalArgumentException
+	 *             if maxConcurrent is less than one
+	 */
+	static Executor limited(Executor executor, int maxConcurrent) {
+
+		return new LimitedExecutor(executor, maxConcurrent);
+	}
+
+	/**
+	 * Completes a future with the result of a Visitor method, or exceptionally
+	 * with a CompletionException wrapping the exception thrown by the method
+	 * or the rejection of a limited Executor
+	 */
+	private static final class Task<R> implements LimitedExecutor.Rejectable {
+
+		private final CompletableFuture<R> future = new CompletableFuture<>();
+
+		private final Supplier<R> call;
+
+		Task(Supplier<R> call) {
+
+			this.call = call;
+		}
+
+		@Override
+		public void run() {
+
+			if (future.isDone()) {
+				return;
+			}
+			try {
+				future.complete(call.get());
+			} catch (Throwable t) {
+				future.completeExceptionally(t instanceof CompletionException ? t : new CompletionException(t));
+			}
+		}
+
+		@Override
+		public void reject(RejectedExecutionException e) {
+
+			future.completeExceptionally(new CompletionException(e));
+		}
+	}
+
+	/**
+	 * Creates the default Executor on first use
+	 */
+	private static final class DefaultExecutor {
+
+		private static final Executor INSTANCE = create();
+
+		private static Executor create() {
+
+			try {
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (ReflectiveOperationException e) {
+				return ForkJoinPool.commonPool();
+			}
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dispatches a collection of targets to a single Visitor.
+ *
+ * The method table of the Visitor is obtained once per batch and each
+ * distinct target class is looked up once per run of targets of that class.
+ * Optionally the targets may be grouped by class so that each Visitor method
+ * is invoked for all of its targets in turn, which keeps the call monomorphic
+ * for the JIT compiler where the targets are thoroughly mixed.
+ *
+ * @author Simon Baird
+ *
+ */
+final class BatchDispatch {
+
+	private BatchDispatch() {
+	}
+
+	/**
+	 * Invoke the dispatch method of the Visitor for each target
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param targets
+	 *            the targets, which may include null
+	 * @param grouped
+	 *            if true targets are dispatched grouped by class, in order of
+	 *            the first occurrence of each class, rather than in iteration
+	 *            order
+	 */
+	static void dispatchAll(Visitor<?> v, Iterable<?> targets, boolean grouped) {
+
+		MethodTable table = DispatchEngine.dispatchTable(v.getClass());
+		if (grouped) {
+			dispatchGrouped(v, table, toArray(targets));
+			return;
+		}
+		Class<?> lastClass = null;
+		MethodHandle handle = null;
+		try {
+			for (Object o : targets) {
+
+				Class<?> c = DispatchEngine.targetClass(o);
+				if (c != lastClass) {
+					handle = table.lookup(c);
+					lastClass = c;
+				}
+				handle.invokeExact(v, o);
+			}
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	/**
+	 * Returns the results of invoking the handle method of the Visitor for
+	 * each target
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param targets
+	 *            the targets, which may include null
+	 * @param grouped
+	 *            if true targets are handled grouped by class, in order of the
+	 *            first occurrence of each class
+	 * @return the results in the order of the targets, regardless of grouping
+	 */
+	static List<Object> handleAll(Visitor<?> v, List<?> targets, boolean grouped) {
+
+		MethodTable table = DispatchEngine.handleTable(v.getClass());
+		Object[] array = targets.toArray();
+		Object[] results = new Object[array.length];
+		try {
+			if (grouped) {
+				int[] order = groupByClass(array);
+				for (int start = 0; start < order.length;) {
+
+					Class<?> c = DispatchEngine.targetClass(array[order[start]]);
+					MethodHandle handle = table.lookup(c);
+					int i = start;
+					for (; i < order.length && DispatchEngine.targetClass(array[order[i]]) == c; i++) {
+						results[order[i]] = (Object) handle.invokeExact(v, array[order[i]]);
+					}
+					start = i;
+				}
+			} else {
+				Class<?> lastClass = null;
+				MethodHandle handle = null;
+				for (int i = 0; i < array.length; i++) {
+
+					Class<?> c = DispatchEngine.targetClass(array[i]);
+					if (c != lastClass) {
+						handle = table.lookup(c);
+						lastClass = c;
+					}
+					results[i] = (Object) handle.invokeExact(v, array[i]);
+				}
+			}
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+		return Arrays.asList(results);
+	}
+
+	private static void dispatchGrouped(Visitor<?> v, MethodTable table, Object[] array) {
+
+		int[] order = groupByClass(array);
+		try {
+			for (int start = 0; start < order.length;) {
+
+				Class<?> c = DispatchEngine.targetClass(array[order[start]]);
+				MethodHandle handle = table.lookup(c);
+				int i = start;
+				for (; i < order.length && DispatchEngine.targetClass(array[order[i]]) == c; i++) {
+					handle.invokeExact(v, array[order[i]]);
+				}
+				start = i;
+			}
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	/*
+	 * Returns the indices of the targets stably sorted by class, with the
+	 * classes in order of first occurrence
+	 */
+	private static int[] groupByClass(Object[] targets) {
+
+		Map<Class<?>, Integer> groups = new IdentityHashMap<>();
+		int[] groupOf = new int[targets.length];
+		int[] counts = new int[8];
+		Class<?> lastClass = null;
+		int lastGroup = -1;
+		for (int i = 0; i < targets.length; i++) {
+
+			Class<?> c = DispatchEngine.targetClass(targets[i]);
+			if (c != lastClass) {
+				Integer group = groups.get(c);
+				if (group == null) {
+					group = groups.size();
+					groups.put(c, group);
+					if (group == counts.length) {
+						counts = Arrays.copyOf(counts, group * 2);
+					}
+				}
+				lastClass = c;
+				lastGroup = group;
+			}
+			groupOf[i] = lastGroup;
+			counts[lastGroup]++;
+		}
+		// Counting sort, converting the counts to the start of each group
+		for (int g = 0, start = 0; g < groups.size(); g++) {
+			int count = counts[g];
+			counts[g] = start;
+			start += count;
+		}
+		int[] order = new int[targets.length];
+		for (int i = 0; i < targets.length; i++) {
+			order[counts[groupOf[i]]++] = i;
+		}
+		return order;
+	}
+
+	private static Object[] toArray(Iterable<?> targets) {
+
+		if (targets instanceof Collection) {
+			return ((Collection<?>) targets).toArray();
+		}
+		List<Object> list = new ArrayList<>();
+		for (Object o : targets) {
+			list.add(o);
+		}
+		return list.toArray();
+	}
+}
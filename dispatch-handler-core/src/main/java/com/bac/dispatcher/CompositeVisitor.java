@@ -0,0 +1,177 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A Visitor that forwards each target to a fixed list of member Visitors, in
+ * the order given.
+ *
+ * The target class is resolved once against every member and the result
+ * recorded as a route: a flat array of only the members having a method of
+ * their own for the target, with the handle of that method. Members that would
+ * be passed the target by the default Object method of the Visitor interface
+ * are left out of the route, so a target of interest to two members out of
+ * twelve costs one map lookup and two invocations. Routes for target classes
+ * not visible from the class loader of every member are held against the
+ * target class instead, so the CompositeVisitor does not retain a class loader
+ * of a redeployed application.
+ *
+ * A CompositeVisitor is itself a Visitor and so may be passed to any method
+ * of the DispatchHandler, to an {@link EventPipeline} or to a
+ * {@link GraphWalker}. Only dispatch is forwarded; handle returns null. An
+ * exception thrown by a member propagates unchanged and the remaining members
+ * are not called for that target. The routes are held by the instance, so a
+ * CompositeVisitor should be created once and reused.
+ *
+ * @author Simon Baird
+ *
+ */
+public final class CompositeVisitor implements Visitor<Object> {
+
+	private static final Route EMPTY = new Route(new Visitor<?>[0], new MethodHandle[0]);
+
+	private final Visitor<?>[] members;
+
+	private final MethodTable[] tables;
+
+	private final ConcurrentHashMap<Class<?>, Route> routes = new ConcurrentHashMap<>();
+
+	/**
+	 * The routes for target classes not visible from the class loader of every
+	 * member
+	 */
+	private final ClassValue<Route> foreignRoutes = new ClassValue<Route>() {
+
+		@Override
+		protected Route computeValue(Class<?> target) {
+
+			return build(target);
+		}
+	};
+
+	/**
+	 * @param members
+	 *            the Visitors to which each target is forwarded, in order
+	 */
+	public CompositeVisitor(Visitor<?>... members) {
+
+		this.members = members.clone();
+		this.tables = new MethodTable[members.length];
+		for (int i = 0; i < members.length; i++) {
+			tables[i] = DispatchEngine.dispatchTable(Objects.requireNonNull(this.members[i]).getClass());
+		}
+	}
+
+	/**
+	 * Forward the target to each member Visitor having a dispatch method of
+	 * its own for it
+	 *
+	 * @param o
+	 *            the target object, may be null
+	 */
+	@Override
+	public void dispatch(Object o) {
+
+		Class<?> c = DispatchEngine.targetClass(o);
+		Route route = routes.get(c);
+		if (route == null) {
+			route = resolve(c);
+		}
+		Visitor<?>[] visitors = route.visitors;
+		MethodHandle[] handles = route.handles;
+		try {
+			for (int i = 0; i < handles.length; i++) {
+				handles[i].invokeExact(visitors[i], o);
+			}
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	/**
+	 * Returns the members to which a target of the given class is forwarded,
+	 * in order
+	 */
+	Visitor<?>[] route(Class<?> target) {
+
+		Route route = routes.get(target);
+		return (route == null ? resolve(target) : route).visitors.clone();
+	}
+
+	private Route resolve(Class<?> target) {
+
+		for (Visitor<?> member : members) {
+			if (!MethodTable.isVisible(target, member.getClass().getClassLoader())) {
+				return foreignRoutes.get(target);
+			}
+		}
+		Route route = build(target);
+		Route previous = routes.putIfAbsent(target, route);
+		return previous == null ? route : previous;
+	}
+
+	private Route build(Class<?> target) {
+
+		Visitor<?>[] visitors = new Visitor<?>[members.length];
+		MethodHandle[] handles = new MethodHandle[members.length];
+		int count = 0;
+		for (int i = 0; i < members.length; i++) {
+
+			if (tables[i].hasMethod(target)) {
+				visitors[count] = members[i];
+				handles[count++] = tables[i].lookup(target);
+			}
+		}
+		return count == 0 ? EMPTY : new Route(Arrays.copyOf(visitors, count), Arrays.copyOf(handles, count));
+	}
+
+	/**
+	 * The members having a method for one target class, with their handles
+	 */
+	private static final class Route {
+
+		private final Visitor<?>[] visitors;
+
+		private final MethodHandle[] handles;
+
+		Route(Visitor<?>[] visitors, MethodHandle[] handles) {
+
+			this.visitors = visitors;
+			this.handles = handles;
+		}
+	}
+}
@@ -29,7 +29,6 @@
  *
  */
 
-
 package com.bac.dispatcher;
 
 /**
@@ -58,6 +57,7 @@ package com.bac.dispatcher;
  * @author Simon Baird
  *
  */
-class DefaultDispatchHandler extends DispatchHandler<Object>   {
+public class DefaultDispatchHandler extends DispatchHandler<Object> {
+
 }
 
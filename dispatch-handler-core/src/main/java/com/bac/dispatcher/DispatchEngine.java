@@ -0,0 +1,266 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Routes a target object to the most appropriate dispatch or handle method of
+ * a Visitor without the Groovy runtime.
+ *
+ * The overloaded methods of each concrete Visitor class are resolved once per
+ * target class and invoked through a MethodHandle thereafter. A null target is
+ * routed to the Object method, which is the Visitor default unless
+ * overridden.
+ *
+ * The resolved methods are held against each Visitor class in a ClassValue
+ * and are shared by every DispatchHandler. They are released with the Visitor
+ * class so that redeploying an application does not retain its class loader.
+ * Once a Visitor and target class pair has been resolved a call costs a
+ * ClassValue lookup, a map lookup and the MethodHandle invocation, plus a
+ * read of the {@link DispatchMetrics} recorder, which is null unless metrics
+ * are enabled.
+ *
+ * @author Simon Baird
+ *
+ */
+final class DispatchEngine {
+
+	/**
+	 * The Visitor classes for which tables have been created, held weakly
+	 */
+	private static final Map<Class<?>, Boolean> VISITOR_CLASSES = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private static final ClassValue<MethodTable> DISPATCH_TABLES = new ClassValue<MethodTable>() {
+
+		@Override
+		protected MethodTable computeValue(Class<?> visitorClass) {
+
+			VISITOR_CLASSES.put(visitorClass, Boolean.TRUE);
+			return new MethodTable(visitorClass, "dispatch", MethodTable.DISPATCH_TYPE);
+		}
+	};
+
+	private static final ClassValue<MethodTable> HANDLE_TABLES = new ClassValue<MethodTable>() {
+
+		@Override
+		protected MethodTable computeValue(Class<?> visitorClass) {
+
+			VISITOR_CLASSES.put(visitorClass, Boolean.TRUE);
+			return new MethodTable(visitorClass, "handle", MethodTable.HANDLE_TYPE);
+		}
+	};
+
+	private DispatchEngine() {
+	}
+
+	/**
+	 * Invoke the dispatch method of the Visitor most appropriate to the target
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param o
+	 *            the target object, may be null
+	 */
+	static void dispatch(Visitor<?> v, Object o) {
+
+		DispatchMetrics.Recorder recorder = DispatchMetrics.recorder;
+		if (recorder != null) {
+			dispatch(recorder, v, o);
+			return;
+		}
+		MethodHandle handle = dispatchTable(v.getClass()).lookup(targetClass(o));
+		try {
+			handle.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Invoke the handle method of the Visitor most appropriate to the target
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param o
+	 *            the target object, may be null
+	 * @return the value returned by the Visitor
+	 */
+	static Object handle(Visitor<?> v, Object o) {
+
+		DispatchMetrics.Recorder recorder = DispatchMetrics.recorder;
+		if (recorder != null) {
+			return handle(recorder, v, o);
+		}
+		MethodHandle handle = handleTable(v.getClass()).lookup(targetClass(o));
+		try {
+			return (Object) handle.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Invoke the dispatch method of the Visitor resolved for the target class
+	 * at run time, bypassing any generated dispatcher
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param o
+	 *            the target object, may be null
+	 */
+	static void dispatchResolved(Visitor<?> v, Object o) {
+
+		MethodHandle handle = dispatchTable(v.getClass()).resolved(targetClass(o));
+		try {
+			handle.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Invoke the handle method of the Visitor resolved for the target class at
+	 * run time, bypassing any generated dispatcher
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param o
+	 *            the target object, may be null
+	 * @return the value returned by the Visitor
+	 */
+	static Object handleResolved(Visitor<?> v, Object o) {
+
+		MethodHandle handle = handleTable(v.getClass()).resolved(targetClass(o));
+		try {
+			return (Object) handle.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/*
+	 * The dispatch method while metrics are enabled, timing the lookup and
+	 * the invocation
+	 */
+	private static void dispatch(DispatchMetrics.Recorder recorder, Visitor<?> v, Object o) {
+
+		Class<?> c = targetClass(o);
+		MethodTable table = dispatchTable(v.getClass());
+		long start = System.nanoTime();
+		MethodHandle handle = table.lookup(c);
+		long invoked = System.nanoTime();
+		try {
+			handle.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		} finally {
+			recorder.invoked(v.getClass(), c, false, table.isFallback(handle), start, invoked, System.nanoTime());
+		}
+	}
+
+	/*
+	 * The handle method while metrics are enabled, timing the lookup and the
+	 * invocation
+	 */
+	private static Object handle(DispatchMetrics.Recorder recorder, Visitor<?> v, Object o) {
+
+		Class<?> c = targetClass(o);
+		MethodTable table = handleTable(v.getClass());
+		long start = System.nanoTime();
+		MethodHandle handle = table.lookup(c);
+		long invoked = System.nanoTime();
+		try {
+			return (Object) handle.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		} finally {
+			recorder.invoked(v.getClass(), c, true, table.isFallback(handle), start, invoked, System.nanoTime());
+		}
+	}
+
+	/**
+	 * Returns the shared table of dispatch methods for a Visitor class
+	 */
+	static MethodTable dispatchTable(Class<?> visitorClass) {
+
+		return DISPATCH_TABLES.get(visitorClass);
+	}
+
+	/**
+	 * Returns the shared table of handle methods for a Visitor class
+	 */
+	static MethodTable handleTable(Class<?> visitorClass) {
+
+		return HANDLE_TABLES.get(visitorClass);
+	}
+
+	/**
+	 * Returns the Visitor classes for which a dispatch or handle table has
+	 * been created and not yet collected
+	 */
+	static List<Class<?>> visitorClasses() {
+
+		synchronized (VISITOR_CLASSES) {
+			return new ArrayList<>(VISITOR_CLASSES.keySet());
+		}
+	}
+
+	static Class<?> targetClass(Object o) {
+
+		return o == null ? Object.class : o.getClass();
+	}
+
+	/**
+	 * Propagate any exception thrown by a Visitor method unchanged, as the
+	 * Groovy runtime does, including checked exceptions
+	 *
+	 * @param t
+	 *            the exception thrown by the Visitor
+	 * @return nothing, the exception is always thrown
+	 */
+	static RuntimeException rethrow(Throwable t) {
+
+		return DispatchEngine.<RuntimeException> sneakyThrow(t);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E extends Throwable> E sneakyThrow(Throwable t) throws E {
+
+		throw (E) t;
+	}
+}
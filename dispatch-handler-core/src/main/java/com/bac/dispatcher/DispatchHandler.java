@@ -0,0 +1,771 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * The dispatch handler dynamically routes calls to the Visitor. This 
+ * circumvents double-dispatch required when implementing the Visitor 
+ * pattern and thus removes the need for target object to implement any 
+ * interfaces.
+ * 
+ * Typically an extension of this class will specify Object as a return type
+ * parameter. If an specialisation of this is required to enforce static 
+ * typing then it may be supplied in the class parameter.
+ * 
+ * DispatchHandler stringDispatcher = new DispatchHandler<String>();
+ * 
+ * String result = stringDispatcher.handle(v, o);
+ * 
+ * The overloaded Visitor methods are resolved by the DispatchEngine once for
+ * each Visitor and target class and then invoked directly through a
+ * MethodHandle. Resolved methods are shared by all instances so a newly
+ * created handler is not cold. This class is plain Java and neither depends
+ * on nor initialises the Groovy runtime; a handler selecting methods with
+ * the Groovy runtime is provided by the optional dispatch-handler-groovy
+ * module.
+ * 
+ * @author Simon Baird
+ *
+ * @param <T> the return type from the Visitor implementation
+ */
+public class DispatchHandler<T> {
+
+	/**
+	 * Forward the Object under extension to the supplied Visitor. 
+	 * 
+	 * @param v a Visitor object that dynamically extends the Object o
+	 * @param o any Object requiring dynamic extension
+	 */
+	public void dispatch(Visitor<?> v, Object o) {
+
+		DispatchEngine.dispatch(v, o);
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the
+	 * supplied Vistor. The return type is enforceable by parameter
+	 * 
+	 * @param v a Visitor object that dynamically extends the Object o
+	 * @param o o any Object requiring dynamic extension
+	 * @return an Object of type T returned from the Visitor method
+	 */
+	@SuppressWarnings("unchecked")
+	public T handle(Visitor<?> v, Object o) {
+
+		return (T) DispatchEngine.handle(v, o);
+	}
+
+	/**
+	 * Forward a pair of Objects under extension to the supplied Visitor. The
+	 * two argument dispatch method is selected that most closely matches both
+	 * Objects taken together, e.g. dispatch(Circle, Square).
+	 * 
+	 * @param v a Visitor object that dynamically extends the Objects a and b
+	 * @param a the first Object requiring dynamic extension
+	 * @param b the second Object requiring dynamic extension
+	 */
+	public void dispatch(Visitor<?> v, Object a, Object b) {
+
+		MultipleDispatch.dispatch(v, a, b);
+	}
+
+	/**
+	 * Returns the output from calling the two argument method on the supplied
+	 * Visitor that most closely matches both Objects taken together, e.g.
+	 * handle(Circle, Square).
+	 * 
+	 * @param v a Visitor object that dynamically extends the Objects a and b
+	 * @param a the first Object requiring dynamic extension
+	 * @param b the second Object requiring dynamic extension
+	 * @return an Object of type T returned from the Visitor method
+	 */
+	@SuppressWarnings("unchecked")
+	public T handle(Visitor<?> v, Object a, Object b) {
+
+		return (T) MultipleDispatch.handle(v, a, b);
+	}
+
+	/**
+	 * Forward a primitive int to the supplied Visitor without boxing where the
+	 * Visitor has a method accepting an int, otherwise as an Integer.
+	 * 
+	 * Unlike dispatch, the method is taken from a table of primitive methods
+	 * which is not recorded by the metrics, nor prepared by a snapshot, and
+	 * does not evaluate guards or use a generated dispatcher.
+	 * 
+	 * @param v a Visitor object that dynamically extends the value
+	 * @param o any int requiring dynamic extension
+	 */
+	public void dispatchInt(Visitor<?> v, int o) {
+
+		PrimitiveDispatch.dispatchInt(v, o);
+	}
+
+	/**
+	 * Forward a primitive long to the supplied Visitor without boxing where
+	 * the Visitor has a method accepting a long, otherwise as a Long.
+	 * 
+	 * @param v a Visitor object that dynamically extends the value
+	 * @param o any long requiring dynamic extension
+	 * @see #dispatchInt(Visitor, int)
+	 */
+	public void dispatchLong(Visitor<?> v, long o) {
+
+		PrimitiveDispatch.dispatchLong(v, o);
+	}
+
+	/**
+	 * Forward a primitive double to the supplied Visitor without boxing where
+	 * the Visitor has a method accepting a double, otherwise as a Double.
+	 * 
+	 * @param v a Visitor object that dynamically extends the value
+	 * @param o any double requiring dynamic extension
+	 * @see #dispatchInt(Visitor, int)
+	 */
+	public void dispatchDouble(Visitor<?> v, double o) {
+
+		PrimitiveDispatch.dispatchDouble(v, o);
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the supplied
+	 * Visitor as a long. A primitive return value is widened without boxing
+	 * while a wrapper is unboxed.
+	 * 
+	 * @param v a Visitor object that dynamically extends the Object o
+	 * @param o any Object requiring dynamic extension
+	 * @return the value returned from the Visitor method
+	 * @throws NullPointerException if the Visitor method returns null
+	 * @throws ClassCastException if the Visitor method returns a value that
+	 * cannot be converted to a long
+	 */
+	public long handleAsLong(Visitor<?> v, Object o) {
+
+		return PrimitiveDispatch.handleAsLong(v, o);
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the supplied
+	 * Visitor for a primitive int as a long, without boxing where the Visitor
+	 * has a method accepting an int and returning a primitive.
+	 * 
+	 * @param v a Visitor object that dynamically extends the value
+	 * @param o any int requiring dynamic extension
+	 * @return the value returned from the Visitor method
+	 */
+	public long handleAsLong(Visitor<?> v, int o) {
+
+		return PrimitiveDispatch.handleAsLong(v, o);
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the supplied
+	 * Visitor for a primitive long as a long, without boxing where the Visitor
+	 * has a method accepting a long and returning a primitive.
+	 * 
+	 * @param v a Visitor object that dynamically extends the value
+	 * @param o any long requiring dynamic extension
+	 * @return the value returned from the Visitor method
+	 */
+	public long handleAsLong(Visitor<?> v, long o) {
+
+		return PrimitiveDispatch.handleAsLong(v, o);
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the supplied
+	 * Visitor for a primitive double as a long, without boxing where the
+	 * Visitor has a method accepting a double and returning a primitive.
+	 * 
+	 * @param v a Visitor object that dynamically extends the value
+	 * @param o any double requiring dynamic extension
+	 * @return the value returned from the Visitor method
+	 */
+	public long handleAsLong(Visitor<?> v, double o) {
+
+		return PrimitiveDispatch.handleAsLong(v, o);
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the supplied
+	 * Visitor as a double. A primitive return value is widened without boxing
+	 * while a wrapper is unboxed.
+	 * 
+	 * @param v a Visitor object that dynamically extends the Object o
+	 * @param o any Object requiring dynamic extension
+	 * @return the value returned from the Visitor method
+	 * @throws NullPointerException if the Visitor method returns null
+	 * @throws ClassCastException if the Visitor method returns a value that
+	 * cannot be converted to a double
+	 */
+	public double handleAsDouble(Visitor<?> v, Object o) {
+
+		return PrimitiveDispatch.handleAsDouble(v, o);
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the supplied
+	 * Visitor for a primitive int as a double, without boxing where the
+	 * Visitor has a method accepting an int and returning a primitive.
+	 * 
+	 * @param v a Visitor object that dynamically extends the value
+	 * @param o any int requiring dynamic extension
+	 * @return the value returned from the Visitor method
+	 */
+	public double handleAsDouble(Visitor<?> v, int o) {
+
+		return PrimitiveDispatch.handleAsDouble(v, o);
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the supplied
+	 * Visitor for a primitive long as a double, without boxing where the
+	 * Visitor has a method accepting a long and returning a primitive.
+	 * 
+	 * @param v a Visitor object that dynamically extends the value
+	 * @param o any long requiring dynamic extension
+	 * @return the value returned from the Visitor method
+	 */
+	public double handleAsDouble(Visitor<?> v, long o) {
+
+		return PrimitiveDispatch.handleAsDouble(v, o);
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the supplied
+	 * Visitor for a primitive double as a double, without boxing where the
+	 * Visitor has a method accepting a double and returning a primitive.
+	 * 
+	 * @param v a Visitor object that dynamically extends the value
+	 * @param o any double requiring dynamic extension
+	 * @return the value returned from the Visitor method
+	 */
+	public double handleAsDouble(Visitor<?> v, double o) {
+
+		return PrimitiveDispatch.handleAsDouble(v, o);
+	}
+
+	/**
+	 * Forward the Object under extension to the supplied Visitor on a virtual
+	 * thread where the runtime supports them, or else the common ForkJoinPool.
+	 * 
+	 * @param v a Visitor object that dynamically extends the Object o
+	 * @param o any Object requiring dynamic extension
+	 * @return a future completed when the Visitor method returns
+	 */
+	public CompletableFuture<Void> dispatchAsync(Visitor<?> v, Object o) {
+
+		return AsyncDispatch.dispatch(v, o, AsyncDispatch.defaultExecutor());
+	}
+
+	/**
+	 * Forward the Object under extension to the supplied Visitor using the
+	 * given Executor.
+	 * 
+	 * @param v a Visitor object that dynamically extends the Object o
+	 * @param o any Object requiring dynamic extension
+	 * @param executor runs the Visitor method
+	 * @return a future completed when the Visitor method returns
+	 */
+	public CompletableFuture<Void> dispatchAsync(Visitor<?> v, Object o, Executor executor) {
+
+		return AsyncDispatch.dispatch(v, o, executor);
+	}
+
+	/**
+	 * Returns a future of the output from calling the appropriate method on
+	 * the supplied Visitor on a virtual thread where the runtime supports
+	 * them, or else the common ForkJoinPool.
+	 * 
+	 * @param v a Visitor object that dynamically extends the Object o
+	 * @param o any Object requiring dynamic extension
+	 * @return a future of the Object of type T returned from the Visitor method
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<T> handleAsync(Visitor<?> v, Object o) {
+
+		return (CompletableFuture<T>) AsyncDispatch.handle(v, o, AsyncDispatch.defaultExecutor());
+	}
+
+	/**
+	 * Returns a future of the output from calling the appropriate method on
+	 * the supplied Visitor using the given Executor.
+	 * 
+	 * @param v a Visitor object that dynamically extends the Object o
+	 * @param o any Object requiring dynamic extension
+	 * @param executor runs the Visitor method
+	 * @return a future of the Object of type T returned from the Visitor method
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<T> handleAsync(Visitor<?> v, Object o, Executor executor) {
+
+		return (CompletableFuture<T>) AsyncDispatch.handle(v, o, executor);
+	}
+
+	/**
+	 * Returns an Executor for the asynchronous methods that runs no more than
+	 * maxConcurrent Visitor methods at once on the default executor. Further
+	 * calls are queued without blocking the caller.
+	 * 
+	 * @param maxConcurrent the maximum number of Visitor methods running at once
+	 * @return the limited Executor
+	 */
+	public static Executor limited(int maxConcurrent) {
+
+		return AsyncDispatch.limited(AsyncDispatch.defaultExecutor(), maxConcurrent);
+	}
+
+	/**
+	 * Returns an Executor for the asynchronous methods that runs no more than
+	 * maxConcurrent Visitor methods at once on the given Executor. Further
+	 * calls are queued without blocking the caller.
+	 * 
+	 * @param executor the underlying Executor
+	 * @param maxConcurrent the maximum number of Visitor methods running at once
+	 * @return the limited Executor
+	 */
+	public static Executor limited(Executor executor, int maxConcurrent) {
+
+		return AsyncDispatch.limited(executor, maxConcurrent);
+	}
+
+	/**
+	 * Forward each Object in a collection to the supplied Visitor, in
+	 * iteration order. The Visitor method for each class of Object is looked
+	 * up once for each run of Objects of that class.
+	 * 
+	 * @param v a Visitor object that dynamically extends the Objects
+	 * @param targets any Objects requiring dynamic extension
+	 */
+	public void dispatchAll(Visitor<?> v, Iterable<?> targets) {
+
+		BatchDispatch.dispatchAll(v, targets, false);
+	}
+
+	/**
+	 * Forward each Object in a collection to the supplied Visitor. If grouped
+	 * then the Objects are forwarded grouped by class, in order of the first
+	 * occurrence of each class, so that each Visitor method is invoked for all
+	 * of its Objects in turn.
+	 * 
+	 * @param v a Visitor object that dynamically extends the Objects
+	 * @param targets any Objects requiring dynamic extension
+	 * @param grouped true if the Objects are to be grouped by class
+	 */
+	public void dispatchAll(Visitor<?> v, Iterable<?> targets, boolean grouped) {
+
+		BatchDispatch.dispatchAll(v, targets, grouped);
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the supplied
+	 * Visitor for each Object in a list.
+	 * 
+	 * @param v a Visitor object that dynamically extends the Objects
+	 * @param targets any Objects requiring dynamic extension
+	 * @return the Objects of type T returned from the Visitor in the order of
+	 * the targets
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> handleAll(Visitor<?> v, List<?> targets) {
+
+		return (List<T>) BatchDispatch.handleAll(v, targets, false);
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the supplied
+	 * Visitor for each Object in a list. If grouped then the Visitor is called
+	 * for the Objects grouped by class but the results remain in the order
+	 * of the targets.
+	 * 
+	 * @param v a Visitor object that dynamically extends the Objects
+	 * @param targets any Objects requiring dynamic extension
+	 * @param grouped true if the Objects are to be grouped by class
+	 * @return the Objects of type T returned from the Visitor in the order of
+	 * the targets
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> handleAll(Visitor<?> v, List<?> targets, boolean grouped) {
+
+		return (List<T>) BatchDispatch.handleAll(v, targets, grouped);
+	}
+
+	/**
+	 * Forward each Object of a Spliterator to the supplied Visitor in
+	 * parallel using the common ForkJoinPool. The Visitor class must be
+	 * annotated with ThreadSafeVisitor.
+	 * 
+	 * @param v a thread safe Visitor object that dynamically extends the Objects
+	 * @param targets any Objects requiring dynamic extension
+	 */
+	public void parallelDispatch(Visitor<?> v, Spliterator<?> targets) {
+
+		parallelDispatch(v, targets, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Forward each Object of a Spliterator to the supplied Visitor in
+	 * parallel using the given ForkJoinPool. The Visitor class must be
+	 * annotated with ThreadSafeVisitor.
+	 * 
+	 * @param v a thread safe Visitor object that dynamically extends the Objects
+	 * @param targets any Objects requiring dynamic extension
+	 * @param pool the pool in which to execute the dispatch
+	 */
+	public void parallelDispatch(Visitor<?> v, Spliterator<?> targets, ForkJoinPool pool) {
+
+		ParallelDispatch.dispatch(ParallelDispatch.shared(v), targets, pool);
+	}
+
+	/**
+	 * Forward each Object of a Spliterator in parallel using the common
+	 * ForkJoinPool to a Visitor obtained from the supplier for each worker
+	 * task, so that no Visitor is called concurrently.
+	 * 
+	 * @param visitors supplies a new Visitor for each worker task
+	 * @param targets any Objects requiring dynamic extension
+	 */
+	public void parallelDispatch(Supplier<? extends Visitor<?>> visitors, Spliterator<?> targets) {
+
+		parallelDispatch(visitors, targets, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Forward each Object of a Spliterator in parallel using the given
+	 * ForkJoinPool to a Visitor obtained from the supplier for each worker
+	 * task, so that no Visitor is called concurrently.
+	 * 
+	 * @param visitors supplies a new Visitor for each worker task
+	 * @param targets any Objects requiring dynamic extension
+	 * @param pool the pool in which to execute the dispatch
+	 */
+	public void parallelDispatch(Supplier<? extends Visitor<?>> visitors, Spliterator<?> targets, ForkJoinPool pool) {
+
+		ParallelDispatch.dispatch(visitors, targets, pool);
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the supplied
+	 * Visitor for each Object of a Spliterator in parallel using the common
+	 * ForkJoinPool, collected by the given Collector. The Visitor class must
+	 * be annotated with ThreadSafeVisitor.
+	 * 
+	 * @param v a thread safe Visitor object that dynamically extends the Objects
+	 * @param targets any Objects requiring dynamic extension
+	 * @param collector collects the Objects of type T returned from the Visitor
+	 * @return the result of the Collector
+	 */
+	public <R> R parallelHandle(Visitor<?> v, Spliterator<?> targets, Collector<? super T, ?, R> collector) {
+
+		return parallelHandle(v, targets, collector, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the supplied
+	 * Visitor for each Object of a Spliterator in parallel using the given
+	 * ForkJoinPool, collected by the given Collector. The Visitor class must
+	 * be annotated with ThreadSafeVisitor.
+	 * 
+	 * @param v a thread safe Visitor object that dynamically extends the Objects
+	 * @param targets any Objects requiring dynamic extension
+	 * @param collector collects the Objects of type T returned from the Visitor
+	 * @param pool the pool in which to execute the dispatch
+	 * @return the result of the Collector
+	 */
+	public <R> R parallelHandle(Visitor<?> v, Spliterator<?> targets, Collector<? super T, ?, R> collector,
+			ForkJoinPool pool) {
+
+		return ParallelDispatch.handle(ParallelDispatch.shared(v), targets, objects(collector), pool);
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method for each Object
+	 * of a Spliterator in parallel using the common ForkJoinPool, collected by
+	 * the given Collector. Each worker task calls a Visitor obtained from the
+	 * supplier, so that no Visitor is called concurrently.
+	 * 
+	 * @param visitors supplies a new Visitor for each worker task
+	 * @param targets any Objects requiring dynamic extension
+	 * @param collector collects the Objects of type T returned from the Visitor
+	 * @return the result of the Collector
+	 */
+	public <R> R parallelHandle(Supplier<? extends Visitor<?>> visitors, Spliterator<?> targets,
+			Collector<? super T, ?, R> collector) {
+
+		return parallelHandle(visitors, targets, collector, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method for each Object
+	 * of a Spliterator in parallel using the given ForkJoinPool, collected by
+	 * the given Collector. Each worker task calls a Visitor obtained from the
+	 * supplier, so that no Visitor is called concurrently.
+	 * 
+	 * @param visitors supplies a new Visitor for each worker task
+	 * @param targets any Objects requiring dynamic extension
+	 * @param collector collects the Objects of type T returned from the Visitor
+	 * @param pool the pool in which to execute the dispatch
+	 * @return the result of the Collector
+	 */
+	public <R> R parallelHandle(Supplier<? extends Visitor<?>> visitors, Spliterator<?> targets,
+			Collector<? super T, ?, R> collector, ForkJoinPool pool) {
+
+		return ParallelDispatch.handle(visitors, targets, objects(collector), pool);
+	}
+
+	/**
+	 * Returns a Function that calls the appropriate handle method on the
+	 * supplied Visitor for its argument. The Visitor methods are looked up in
+	 * the table resolved for the Visitor class, so the Function may be used
+	 * in a Stream pipeline in place of a lambda calling handle.
+	 * 
+	 * @param v a Visitor object that dynamically extends the Objects
+	 * @return a Function returning the Object of type T returned from the Visitor
+	 */
+	@SuppressWarnings("unchecked")
+	public Function<Object, T> mapping(Visitor<?> v) {
+
+		return (Function<Object, T>) StreamDispatch.mapping(v);
+	}
+
+	/**
+	 * Returns a lazy Stream of the output from calling the appropriate method
+	 * on the supplied Visitor for each Object of a Stream. The size and
+	 * encounter order of the targets are retained so that a parallel Stream
+	 * splits as the targets do.
+	 * 
+	 * @param v a Visitor object that dynamically extends the Objects
+	 * @param targets any Objects requiring dynamic extension
+	 * @return a Stream of the Objects of type T returned from the Visitor
+	 */
+	@SuppressWarnings("unchecked")
+	public Stream<T> map(Visitor<?> v, Stream<?> targets) {
+
+		return (Stream<T>) StreamDispatch.map(v, targets);
+	}
+
+	/**
+	 * Returns a lazy Spliterator of the output from calling the appropriate
+	 * method on the supplied Visitor for each Object of a Spliterator,
+	 * reporting the SIZED, SUBSIZED and ORDERED characteristics of the targets.
+	 * 
+	 * @param v a Visitor object that dynamically extends the Objects
+	 * @param targets any Objects requiring dynamic extension
+	 * @return a Spliterator of the Objects of type T returned from the Visitor
+	 */
+	@SuppressWarnings("unchecked")
+	public Spliterator<T> map(Visitor<?> v, Spliterator<?> targets) {
+
+		return (Spliterator<T>) StreamDispatch.mapping(v, targets);
+	}
+
+	/**
+	 * Returns a Collector of Objects that collects the output from calling the
+	 * appropriate method on the supplied Visitor for each Object with the
+	 * downstream Collector.
+	 * 
+	 * @param v a Visitor object that dynamically extends the Objects
+	 * @param downstream collects the Objects of type T returned from the Visitor
+	 * @return a Collector of any Objects requiring dynamic extension
+	 */
+	public <R> Collector<Object, ?, R> handling(Visitor<?> v, Collector<? super T, ?, R> downstream) {
+
+		return StreamDispatch.collecting(v, objects(downstream));
+	}
+
+	/**
+	 * Walk a graph of Objects from the root, forwarding each Object reached
+	 * to the supplied Visitor. The order of the walk, pruning and cycle
+	 * detection are configured by the walker.
+	 * 
+	 * @param root the first Object of the graph
+	 * @param walker obtains the children of each Object
+	 * @param v a Visitor object that dynamically extends the Objects
+	 */
+	public <N> void walk(N root, GraphWalker<N> walker, Visitor<?> v) {
+
+		walker.walk(root, v);
+	}
+
+	/**
+	 * Returns a Visitor forwarding each Object dispatched to it to every one
+	 * of the supplied Visitors having a dispatch method of its own for the
+	 * Object, in order. Each class of Object is resolved once against all of
+	 * the Visitors, and Visitors that would ignore it are skipped.
+	 *
+	 * @param visitors the Visitor objects to which each Object is forwarded
+	 * @return a Visitor to be reused for every Object
+	 */
+	public CompositeVisitor fanOut(Visitor<?>... visitors) {
+
+		return new CompositeVisitor(visitors);
+	}
+
+	/**
+	 * Returns a router passing type tagged binary records read from a
+	 * ByteBuffer to the supplied Visitor, each wrapped by the reusable
+	 * MessageView declared for its type id with {@link MessageType}, without
+	 * decoding the records to objects.
+	 *
+	 * @param v a Visitor object with methods accepting MessageViews
+	 * @return a router confined to the calling thread, to be reused for every record
+	 */
+	public MessageRouter<T> router(Visitor<?> v) {
+
+		return new MessageRouter<>(v);
+	}
+
+	/**
+	 * Resolve the dispatch and handle methods of a Visitor class for each of
+	 * the target classes so that the first calls with those targets are not
+	 * delayed by resolution.
+	 * 
+	 * @param visitorClass the class of the Visitor objects to be called
+	 * @param targets the classes of the Objects that will be extended
+	 */
+	public void prepare(Class<? extends Visitor<?>> visitorClass, Class<?>... targets) {
+
+		MethodTable dispatchTable = DispatchEngine.dispatchTable(visitorClass);
+		MethodTable handleTable = DispatchEngine.handleTable(visitorClass);
+		for (Class<?> target : targets) {
+			dispatchTable.lookup(target);
+			handleTable.lookup(target);
+		}
+	}
+
+	/**
+	 * Write the methods resolved so far for every Visitor class to a compact
+	 * binary snapshot, e.g. at the end of a training run, which may be read at
+	 * startup by readResolutions.
+	 * 
+	 * @param output the stream to which the snapshot is written, which is not closed
+	 * @return the number of resolved methods written
+	 */
+	public int writeResolutions(OutputStream output) throws IOException {
+
+		return ResolutionSnapshot.write(output);
+	}
+
+	/**
+	 * Resolve the methods of a snapshot written by writeResolutions, loading
+	 * the classes with the context class loader. Entries whose classes cannot
+	 * be loaded or which would now resolve to a different method are dropped.
+	 * 
+	 * @param input the stream from which the snapshot is read, which is not closed
+	 * @return the number of methods resolved
+	 */
+	public int readResolutions(InputStream input) throws IOException {
+
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		return readResolutions(input, loader != null ? loader : DispatchHandler.class.getClassLoader());
+	}
+
+	/**
+	 * Resolve the methods of a snapshot written by writeResolutions, loading
+	 * the classes with the given class loader. Entries whose classes cannot
+	 * be loaded or which would now resolve to a different method are dropped.
+	 * 
+	 * @param input the stream from which the snapshot is read, which is not closed
+	 * @param loader loads the Visitor and target classes
+	 * @return the number of methods resolved
+	 */
+	public int readResolutions(InputStream input, ClassLoader loader) throws IOException {
+
+		return ResolutionSnapshot.read(input, loader);
+	}
+
+	/**
+	 * Returns a dispatcher specialised for a single Visitor class. Calls made
+	 * through the specialised dispatcher avoid the shared method tables and
+	 * allow the JIT compiler to inline the selected Visitor method, so it is
+	 * intended for the most frequently used Visitors.
+	 * 
+	 * @param visitorClass the concrete class of the Visitors to be dispatched
+	 * @return a dispatcher shared by all handlers for the Visitor class
+	 */
+	@SuppressWarnings("unchecked")
+	public SpecializedDispatcher<T> specialize(Class<? extends Visitor<?>> visitorClass) {
+
+		return (SpecializedDispatcher<T>) SpecializedDispatcher.of(visitorClass);
+	}
+
+	/**
+	 * Returns a new call site for a Visitor class, to be held by a single
+	 * caller and reused for each call it makes. The site caches the methods
+	 * for only the target classes it sees, comparing up to
+	 * {@value DispatchSite#DEFAULT_LIMIT} classes by identity before becoming
+	 * a hash table, so that each hot loop has a cache of its own.
+	 * 
+	 * @param visitorClass the concrete class of the Visitors to be dispatched
+	 * @return a new site
+	 */
+	public DispatchSite<T> site(Class<? extends Visitor<?>> visitorClass) {
+
+		return new DispatchSite<>(visitorClass, DispatchSite.DEFAULT_LIMIT);
+	}
+
+	/**
+	 * Returns a new call site for a Visitor class, comparing up to the given
+	 * number of target classes by identity before becoming a hash table.
+	 * 
+	 * @param visitorClass the concrete class of the Visitors to be dispatched
+	 * @param limit the number of classes compared while polymorphic
+	 * @return a new site
+	 */
+	public DispatchSite<T> site(Class<? extends Visitor<?>> visitorClass, int limit) {
+
+		return new DispatchSite<>(visitorClass, limit);
+	}
+
+	/*
+	 * The collectors accept the values of type T returned by the Visitor,
+	 * which the dispatch engine knows only as Objects
+	 */
+	@SuppressWarnings("unchecked")
+	private static <R> Collector<Object, Object, R> objects(Collector<?, ?, R> collector) {
+
+		return (Collector<Object, Object, R>) collector;
+	}
+}
@@ -0,0 +1,322 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the dispatch handler, recorded while enabled.
+ *
+ * For each Visitor class the number of method table lookups that found a
+ * resolved method and that required resolution, and the number of calls
+ * routed to the default Object method of the Visitor interface, are counted.
+ * For each target class the number of Visitor method invocations is counted.
+ * The time taken to look up the method and to invoke it are recorded in
+ * histograms so that the overhead of the dispatch handler can be compared
+ * with the time spent in the Visitor methods. Where Java Flight Recorder is
+ * available each call and each resolution is also emitted as a JFR event,
+ * subject to the settings of the recording.
+ *
+ * Invocations are counted for the single dispatch and handle methods of a
+ * DispatchHandler taking an Object target; calls with primitive targets are
+ * not recorded and the batch, parallel and stream methods look up each
+ * target class once for a run of targets and only their lookups are counted.
+ * No fallbacks are counted for a Visitor having a {@link GeneratedDispatcher}.
+ *
+ * Metrics are disabled by default. When disabled the dispatch path reads a
+ * single volatile field and records nothing. Classes are identified by name
+ * so that the metrics do not retain any class loader.
+ *
+ * <pre>
+ * DispatchMetrics.enable();
+ * ...
+ * DispatchMetrics metrics = DispatchMetrics.snapshot();
+ * metrics.invocationLatency().percentile(0.99);
+ * </pre>
+ *
+ * @author Simon Baird
+ *
+ */
+public final class DispatchMetrics {
+
+	/**
+	 * The active recorder, null while metrics are disabled
+	 */
+	static volatile Recorder recorder;
+
+	private final Map<String, Long> cacheHits;
+
+	private final Map<String, Long> cacheMisses;
+
+	private final Map<String, Long> fallbacks;
+
+	private final Map<String, Long> invocations;
+
+	private final LatencyHistogram resolutionLatency;
+
+	private final LatencyHistogram invocationLatency;
+
+	private DispatchMetrics(Recorder r) {
+
+		Map<String, Long> hits = new TreeMap<>();
+		Map<String, Long> misses = sum(r.misses);
+		for (Map.Entry<String, Long> lookups : sum(r.lookups).entrySet()) {
+
+			Long missed = misses.get(lookups.getKey());
+			hits.put(lookups.getKey(), Math.max(0, lookups.getValue() - (missed == null ? 0 : missed)));
+		}
+		this.cacheHits = Collections.unmodifiableMap(hits);
+		this.cacheMisses = Collections.unmodifiableMap(misses);
+		this.fallbacks = Collections.unmodifiableMap(sum(r.fallbacks));
+		this.invocations = Collections.unmodifiableMap(sum(r.invocations));
+		this.resolutionLatency = r.resolution.snapshot();
+		this.invocationLatency = r.invocation.snapshot();
+	}
+
+	/**
+	 * Start recording metrics, continuing from any metrics already recorded
+	 */
+	public static synchronized void enable() {
+
+		if (recorder == null) {
+			recorder = new Recorder();
+		}
+	}
+
+	/**
+	 * Stop recording metrics and discard those recorded
+	 */
+	public static synchronized void disable() {
+
+		recorder = null;
+	}
+
+	/**
+	 * Returns true if metrics are being recorded
+	 */
+	public static boolean isEnabled() {
+
+		return recorder != null;
+	}
+
+	/**
+	 * Discard the metrics recorded so far, continuing to record if enabled
+	 */
+	public static synchronized void reset() {
+
+		if (recorder != null) {
+			recorder = new Recorder();
+		}
+	}
+
+	/**
+	 * Returns a copy of the metrics recorded so far, which is empty if metrics
+	 * are disabled. Calls in progress may or may not be included.
+	 */
+	public static DispatchMetrics snapshot() {
+
+		Recorder r = recorder;
+		return new DispatchMetrics(r == null ? new Recorder() : r);
+	}
+
+	/**
+	 * Returns the number of lookups of a target class that found an already
+	 * resolved method, by Visitor class name
+	 */
+	public Map<String, Long> cacheHits() {
+
+		return cacheHits;
+	}
+
+	/**
+	 * Returns the number of lookups of a target class that required the
+	 * method to be resolved, by Visitor class name
+	 */
+	public Map<String, Long> cacheMisses() {
+
+		return cacheMisses;
+	}
+
+	/**
+	 * Returns the number of calls routed to the default Object method of the
+	 * Visitor interface, by Visitor class name
+	 */
+	public Map<String, Long> fallbacks() {
+
+		return fallbacks;
+	}
+
+	/**
+	 * Returns the number of Visitor method invocations, by target class name.
+	 * A null target is counted against java.lang.Object.
+	 */
+	public Map<String, Long> invocations() {
+
+		return invocations;
+	}
+
+	/**
+	 * Returns the time taken to look up the Visitor method for a target,
+	 * including any resolution
+	 */
+	public LatencyHistogram resolutionLatency() {
+
+		return resolutionLatency;
+	}
+
+	/**
+	 * Returns the time taken to invoke the Visitor method, including the
+	 * method body
+	 */
+	public LatencyHistogram invocationLatency() {
+
+		return invocationLatency;
+	}
+
+	@Override
+	public String toString() {
+
+		return "DispatchMetrics [cacheHits=" + cacheHits + ", cacheMisses=" + cacheMisses + ", fallbacks="
+				+ fallbacks + ", invocations=" + invocations + ", resolutionLatency=" + resolutionLatency
+				+ ", invocationLatency=" + invocationLatency + "]";
+	}
+
+	private static Map<String, Long> sum(Map<String, LongAdder> counters) {
+
+		Map<String, Long> sums = new TreeMap<>();
+		counters.forEach((name, counter) -> sums.put(name, counter.sum()));
+		return sums;
+	}
+
+	/**
+	 * Receives the metrics of each call while enabled
+	 */
+	static final class Recorder {
+
+		private final Map<String, LongAdder> lookups = new ConcurrentHashMap<>();
+
+		private final Map<String, LongAdder> misses = new ConcurrentHashMap<>();
+
+		private final Map<String, LongAdder> fallbacks = new ConcurrentHashMap<>();
+
+		private final Map<String, LongAdder> invocations = new ConcurrentHashMap<>();
+
+		private final LatencyHistogram.Recorder resolution = new LatencyHistogram.Recorder();
+
+		private final LatencyHistogram.Recorder invocation = new LatencyHistogram.Recorder();
+
+		private final EventSink events = EventSink.create();
+
+		/**
+		 * Record a lookup in the method table of a Visitor class
+		 */
+		void lookup(Class<?> visitorClass) {
+
+			counter(lookups, visitorClass).increment();
+		}
+
+		/**
+		 * Record the resolution of a method following a lookup
+		 */
+		void resolved(Class<?> visitorClass, Class<?> target, long nanos) {
+
+			counter(misses, visitorClass).increment();
+			if (events != null) {
+				events.resolved(visitorClass, target, nanos);
+			}
+		}
+
+		/**
+		 * Record a single dispatch or handle call
+		 *
+		 * @param start
+		 *            the time at which the lookup started
+		 * @param invoked
+		 *            the time at which the lookup ended and the invocation
+		 *            started
+		 * @param end
+		 *            the time at which the invocation ended
+		 */
+		void invoked(Class<?> visitorClass, Class<?> target, boolean handle, boolean fallback, long start,
+				long invoked, long end) {
+
+			counter(invocations, target).increment();
+			if (fallback) {
+				counter(fallbacks, visitorClass).increment();
+			}
+			resolution.record(invoked - start);
+			invocation.record(end - invoked);
+			if (events != null) {
+				events.invoked(visitorClass, target, handle, fallback, invoked - start, end - invoked);
+			}
+		}
+
+		private static LongAdder counter(Map<String, LongAdder> counters, Class<?> c) {
+
+			LongAdder counter = counters.get(c.getName());
+			if (counter == null) {
+				counter = counters.computeIfAbsent(c.getName(), name -> new LongAdder());
+			}
+			return counter;
+		}
+	}
+
+	/**
+	 * Emits the metrics of each call as events, isolating the classes of Java
+	 * Flight Recorder from a runtime that lacks it
+	 */
+	interface EventSink {
+
+		void resolved(Class<?> visitorClass, Class<?> target, long nanos);
+
+		void invoked(Class<?> visitorClass, Class<?> target, boolean handle, boolean fallback, long resolutionNanos,
+				long invocationNanos);
+
+		/**
+		 * Returns the JFR sink, or null if JFR is not available
+		 */
+		static EventSink create() {
+
+			try {
+				Class.forName("jdk.jfr.Event", false, EventSink.class.getClassLoader());
+				return (EventSink) Class.forName(EventSink.class.getPackage().getName() + ".JfrEventSink")
+						.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				return null;
+			}
+		}
+	}
+}
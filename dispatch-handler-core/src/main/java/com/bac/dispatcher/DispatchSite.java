@@ -0,0 +1,305 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of the Visitor methods selected at a single call site, created by
+ * the caller and reused for every call made there.
+ *
+ * Each DispatchHandler call looks up the shared method table of the Visitor
+ * class, which holds every target class seen anywhere in the application.
+ * A DispatchSite instead records only the target classes seen at its own call
+ * site, in the manner of an inline cache, passing through three states as it
+ * sees more classes:
+ *
+ * 	monomorphic, a single class compared by identity
+ * 	polymorphic, up to a limit of classes compared in turn
+ * 	megamorphic, a hash table of classes
+ *
+ * so that a site seeing one or two classes costs one or two comparisons
+ * however many classes other sites see, and a site seeing many classes slows
+ * down only itself. The methods are resolved by the shared method tables
+ * when a class is first seen at the site, so the resolution is shared while
+ * the cache is not.
+ *
+ * 	DispatchSite&lt;Object&gt; site = handler.site(HotVisitor.class);
+ * 	for (Object o : batch) {
+ * 		site.dispatch(v, o);
+ * 	}
+ *
+ * A site holds separate caches for dispatch and handle. It may be shared
+ * between threads, although it is intended to be held by a single caller.
+ *
+ * @author Simon Baird
+ *
+ * @param <T>
+ *            the return type from the Visitor implementation
+ */
+public final class DispatchSite<T> {
+
+	/**
+	 * The number of classes compared by a polymorphic site unless another
+	 * limit is given
+	 */
+	public static final int DEFAULT_LIMIT = 4;
+
+	/**
+	 * The states of the cache of a site
+	 */
+	public enum State {
+
+		/**
+		 * No class has been seen
+		 */
+		UNINITIALIZED,
+
+		/**
+		 * A single class has been seen
+		 */
+		MONOMORPHIC,
+
+		/**
+		 * No more classes have been seen than the limit of the site
+		 */
+		POLYMORPHIC,
+
+		/**
+		 * More classes have been seen than the limit of the site
+		 */
+		MEGAMORPHIC
+	}
+
+	private final Class<?> visitorClass;
+
+	private final MethodTable dispatchTable;
+
+	private final MethodTable handleTable;
+
+	private final int limit;
+
+	private volatile Cache dispatchCache = Cache.EMPTY;
+
+	private volatile Cache handleCache = Cache.EMPTY;
+
+	/**
+	 * @param visitorClass
+	 *            the concrete Visitor class
+	 * @param limit
+	 *            the greatest number of classes compared before the site
+	 *            becomes megamorphic
+	 * @throws IllegalArgumentException
+	 *             if the class is not a concrete Visitor class or the limit is
+	 *             less than one
+	 */
+	DispatchSite(Class<?> visitorClass, int limit) {
+
+		if (visitorClass.isInterface() || Modifier.isAbstract(visitorClass.getModifiers())
+				|| !Visitor.class.isAssignableFrom(visitorClass)) {
+			throw new IllegalArgumentException("Not a concrete Visitor class: " + visitorClass.getName());
+		}
+		if (limit < 1) {
+			throw new IllegalArgumentException("limit must be at least one: " + limit);
+		}
+		this.visitorClass = visitorClass;
+		this.dispatchTable = DispatchEngine.dispatchTable(visitorClass);
+		this.handleTable = DispatchEngine.handleTable(visitorClass);
+		this.limit = limit;
+	}
+
+	/**
+	 * Forward the Object under extension to the supplied Visitor.
+	 *
+	 * @param v
+	 *            an instance of the Visitor class of this site
+	 * @param o
+	 *            any Object requiring dynamic extension
+	 */
+	public void dispatch(Visitor<?> v, Object o) {
+
+		checkVisitor(v);
+		Class<?> target = DispatchEngine.targetClass(o);
+		MethodHandle handle = dispatchCache.find(target);
+		if (handle == null) {
+			handle = dispatchMiss(target);
+		}
+		try {
+			handle.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the supplied
+	 * Visitor.
+	 *
+	 * @param v
+	 *            an instance of the Visitor class of this site
+	 * @param o
+	 *            any Object requiring dynamic extension
+	 * @return an Object of type T returned from the Visitor method
+	 */
+	@SuppressWarnings("unchecked")
+	public T handle(Visitor<?> v, Object o) {
+
+		checkVisitor(v);
+		Class<?> target = DispatchEngine.targetClass(o);
+		MethodHandle handle = handleCache.find(target);
+		if (handle == null) {
+			handle = handleMiss(target);
+		}
+		try {
+			return (T) (Object) handle.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	/**
+	 * Returns the state of the cache of dispatch methods
+	 */
+	public State dispatchState() {
+
+		return dispatchCache.state();
+	}
+
+	/**
+	 * Returns the state of the cache of handle methods
+	 */
+	public State handleState() {
+
+		return handleCache.state();
+	}
+
+	private void checkVisitor(Visitor<?> v) {
+
+		if (v.getClass() != visitorClass) {
+			throw new IllegalArgumentException(
+					"Site for " + visitorClass.getName() + " cannot accept " + v.getClass().getName());
+		}
+	}
+
+	private synchronized MethodHandle dispatchMiss(Class<?> target) {
+
+		MethodHandle handle = dispatchCache.find(target);
+		if (handle != null) {
+			return handle;
+		}
+		handle = dispatchTable.lookup(target);
+		dispatchCache = dispatchCache.add(target, handle, limit);
+		return handle;
+	}
+
+	private synchronized MethodHandle handleMiss(Class<?> target) {
+
+		MethodHandle handle = handleCache.find(target);
+		if (handle != null) {
+			return handle;
+		}
+		handle = handleTable.lookup(target);
+		handleCache = handleCache.add(target, handle, limit);
+		return handle;
+	}
+
+	/**
+	 * The classes seen at a site and their methods: an array of classes
+	 * compared in turn until the limit is reached and then a hash table. The
+	 * arrays are replaced as a whole when a class is added, while the table
+	 * is added to in place.
+	 */
+	private static final class Cache {
+
+		static final Cache EMPTY = new Cache(new Class<?>[0], new MethodHandle[0], null);
+
+		private final Class<?>[] classes;
+
+		private final MethodHandle[] handles;
+
+		private final ConcurrentHashMap<Class<?>, MethodHandle> table;
+
+		Cache(Class<?>[] classes, MethodHandle[] handles, ConcurrentHashMap<Class<?>, MethodHandle> table) {
+
+			this.classes = classes;
+			this.handles = handles;
+			this.table = table;
+		}
+
+		MethodHandle find(Class<?> target) {
+
+			if (table != null) {
+				return table.get(target);
+			}
+			Class<?>[] classes = this.classes;
+			for (int i = 0; i < classes.length; i++) {
+				if (classes[i] == target) {
+					return handles[i];
+				}
+			}
+			return null;
+		}
+
+		Cache add(Class<?> target, MethodHandle handle, int limit) {
+
+			if (table != null) {
+				table.put(target, handle);
+				return this;
+			}
+			if (classes.length < limit) {
+				Class<?>[] c = Arrays.copyOf(classes, classes.length + 1);
+				MethodHandle[] h = Arrays.copyOf(handles, handles.length + 1);
+				c[classes.length] = target;
+				h[handles.length] = handle;
+				return new Cache(c, h, null);
+			}
+			ConcurrentHashMap<Class<?>, MethodHandle> t = new ConcurrentHashMap<>();
+			for (int i = 0; i < classes.length; i++) {
+				t.put(classes[i], handles[i]);
+			}
+			t.put(target, handle);
+			return new Cache(EMPTY.classes, EMPTY.handles, t);
+		}
+
+		State state() {
+
+			if (table != null) {
+				return State.MEGAMORPHIC;
+			}
+			return classes.length == 0 ? State.UNINITIALIZED
+					: classes.length == 1 ? State.MONOMORPHIC : State.POLYMORPHIC;
+		}
+	}
+}
@@ -0,0 +1,467 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * Passes events from producer threads to consumer threads through a
+ * preallocated ring buffer, each consumer being a Visitor to which every
+ * event is dispatched in the order of publication.
+ *
+ * Unlike a BlockingQueue the pipeline does not allocate a node per event or
+ * take a lock. A producer claims the next slot of the ring, stores the event
+ * and publishes it with an ordered write. A consumer reads every event
+ * published since its last batch and dispatches them in turn, looking up the
+ * method of its Visitor only when the class of the event changes, and then
+ * releases the slots of the whole batch with a single write. When there is
+ * nothing to consume, or a producer finds the ring full, the thread waits
+ * according to the {@link WaitStrategy}.
+ *
+ * Each Visitor is called only from its own consumer thread and so need not be
+ * thread safe. An event is retained by its slot until the slot is reused.
+ *
+ * <pre>
+ * EventPipeline pipeline = EventPipeline.builder()
+ * 		.capacity(4096)
+ * 		.multiProducer()
+ * 		.waitStrategy(WaitStrategy.YIELD)
+ * 		.consumer(auditVisitor)
+ * 		.consumer(pricingVisitor)
+ * 		.start();
+ * pipeline.publish(order);
+ * ...
+ * pipeline.close();
+ * </pre>
+ *
+ * @author Simon Baird
+ *
+ */
+public final class EventPipeline implements AutoCloseable {
+
+	/**
+	 * How a thread waits for a consumer to release a slot or for a producer to
+	 * publish an event. Each trades latency against the use of a processor.
+	 */
+	public enum WaitStrategy {
+
+		/**
+		 * Spin continuously. Gives the lowest latency but occupies a processor
+		 * per waiting thread, so is only suitable where there are more
+		 * processors than producers and consumers.
+		 */
+		BUSY_SPIN {
+			@Override
+			int idle(int counter) {
+				return counter;
+			}
+		},
+
+		/**
+		 * Spin briefly, then yield the processor to other threads between each
+		 * check
+		 */
+		YIELD {
+			@Override
+			int idle(int counter) {
+
+				if (counter < SPIN_TRIES) {
+					return counter + 1;
+				}
+				Thread.yield();
+				return counter;
+			}
+		},
+
+		/**
+		 * Spin briefly, then yield, then park for a short interval between each
+		 * check. The producers do not signal the consumers, so publishing costs
+		 * no more than with the other strategies, but a consumer may take up to
+		 * the park interval to notice an event after a quiet period.
+		 */
+		PARK {
+			@Override
+			int idle(int counter) {
+
+				if (counter < SPIN_TRIES) {
+					return counter + 1;
+				}
+				if (counter < SPIN_TRIES + YIELD_TRIES) {
+					Thread.yield();
+					return counter + 1;
+				}
+				LockSupport.parkNanos(PARK_NANOS);
+				return counter;
+			}
+		};
+
+		private static final int SPIN_TRIES = 100;
+
+		private static final int YIELD_TRIES = 100;
+
+		private static final long PARK_NANOS = 50_000;
+
+		/**
+		 * Wait once, returning the count of waits to pass to the next call
+		 */
+		abstract int idle(int counter);
+	}
+
+	private static final AtomicInteger PIPELINES = new AtomicInteger();
+
+	private final RingBuffer ring;
+
+	private final WaitStrategy waitStrategy;
+
+	private final Consumer[] consumers;
+
+	private final Thread[] threads;
+
+	private volatile boolean closed;
+
+	private EventPipeline(Builder builder) {
+
+		ring = new RingBuffer(builder.capacity, builder.multiProducer);
+		waitStrategy = builder.waitStrategy;
+		consumers = new Consumer[builder.visitors.size()];
+		threads = new Thread[consumers.length];
+		RingBuffer.Sequence[] sequences = new RingBuffer.Sequence[consumers.length];
+		int pipeline = PIPELINES.incrementAndGet();
+		for (int i = 0; i < consumers.length; i++) {
+
+			consumers[i] = new Consumer(builder.visitors.get(i), builder.errorHandler);
+			sequences[i] = consumers[i].sequence;
+			ThreadFactory factory = builder.threadFactory;
+			if (factory == null) {
+				String name = "dispatch-pipeline-" + pipeline + "-consumer-" + i;
+				factory = r -> {
+					Thread thread = new Thread(r, name);
+					thread.setDaemon(true);
+					return thread;
+				};
+			}
+			threads[i] = factory.newThread(consumers[i]);
+		}
+		ring.gate(sequences);
+	}
+
+	/**
+	 * Returns a builder of a pipeline
+	 */
+	public static Builder builder() {
+
+		return new Builder();
+	}
+
+	/**
+	 * Publish an event to every consumer, waiting according to the wait
+	 * strategy while the ring is full. With a single producer this must only
+	 * be called from one thread at a time.
+	 *
+	 * @param event
+	 *            the event, may be null
+	 * @throws IllegalStateException
+	 *             if the pipeline has been closed
+	 */
+	public void publish(Object event) {
+
+		checkOpen();
+		ring.publish(ring.claim(waitStrategy), event);
+	}
+
+	/**
+	 * Publish an event to every consumer unless the ring is full. With a
+	 * single producer this must only be called from one thread at a time.
+	 *
+	 * @param event
+	 *            the event, may be null
+	 * @return true if the event was published, false if the ring was full
+	 * @throws IllegalStateException
+	 *             if the pipeline has been closed
+	 */
+	public boolean tryPublish(Object event) {
+
+		checkOpen();
+		long sequence = ring.tryClaim();
+		if (sequence < 0) {
+			return false;
+		}
+		ring.publish(sequence, event);
+		return true;
+	}
+
+	/**
+	 * Returns the number of events dispatched by a consumer
+	 *
+	 * @param consumer
+	 *            the index of the consumer in the order added to the builder
+	 */
+	public long consumed(int consumer) {
+
+		return consumers[consumer].sequence.value + 1;
+	}
+
+	/**
+	 * Stop accepting events and wait for the consumers to dispatch every event
+	 * already published. An event published concurrently with close may or
+	 * may not be dispatched. If interrupted while waiting the consumers
+	 * continue to drain the ring and the interrupt status is set.
+	 */
+	@Override
+	public void close() {
+
+		closed = true;
+		try {
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void checkOpen() {
+
+		if (closed) {
+			throw new IllegalStateException("The pipeline has been closed");
+		}
+	}
+
+	private EventPipeline begin() {
+
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		return this;
+	}
+
+	/**
+	 * Dispatches each published event to one Visitor
+	 */
+	private final class Consumer implements Runnable {
+
+		private final Visitor<?> visitor;
+
+		private final MethodTable table;
+
+		private final BiConsumer<Object, Throwable> errorHandler;
+
+		private final RingBuffer.Sequence sequence = new RingBuffer.Sequence(-1);
+
+		private Class<?> lastClass;
+
+		private MethodHandle method;
+
+		Consumer(Visitor<?> visitor, BiConsumer<Object, Throwable> errorHandler) {
+
+			this.visitor = visitor;
+			this.table = DispatchEngine.dispatchTable(visitor.getClass());
+			this.errorHandler = errorHandler;
+		}
+
+		@Override
+		public void run() {
+
+			long next = sequence.value + 1;
+			for (int counter = 0;;) {
+
+				long available = ring.available(next);
+				if (available < next) {
+					// Events published before close are visible once closed is read
+					if (closed && ring.available(next) < next) {
+						return;
+					}
+					counter = waitStrategy.idle(counter);
+					continue;
+				}
+				for (; next <= available; next++) {
+					dispatch(ring.get(next));
+				}
+				sequence.lazySet(available);
+				counter = 0;
+			}
+		}
+
+		private void dispatch(Object event) {
+
+			try {
+				Class<?> c = DispatchEngine.targetClass(event);
+				if (c != lastClass) {
+					method = table.lookup(c);
+					lastClass = c;
+				}
+				method.invokeExact(visitor, event);
+			} catch (Throwable t) {
+				failed(event, t);
+			}
+		}
+
+		/*
+		 * An exception thrown by the error handler is passed to the uncaught
+		 * exception handler of the thread, so that the consumer never stops
+		 * short of the events published and so blocks the producers
+		 */
+		private void failed(Object event, Throwable t) {
+
+			try {
+				errorHandler.accept(event, t);
+			} catch (Throwable e) {
+				Thread thread = Thread.currentThread();
+				try {
+					thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+				} catch (Throwable ignored) {
+					// Nothing remains to report it to
+				}
+			}
+		}
+	}
+
+	/**
+	 * Configures and starts an EventPipeline
+	 */
+	public static final class Builder {
+
+		private int capacity = 1024;
+
+		private boolean multiProducer;
+
+		private WaitStrategy waitStrategy = WaitStrategy.YIELD;
+
+		private ThreadFactory threadFactory;
+
+		private BiConsumer<Object, Throwable> errorHandler = (event, t) -> {
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+		};
+
+		private final List<Visitor<?>> visitors = new ArrayList<>();
+
+		private Builder() {
+		}
+
+		/**
+		 * The number of slots in the ring, a power of two. The default is
+		 * 1024.
+		 */
+		public Builder capacity(int capacity) {
+
+			if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+				throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+			}
+			this.capacity = capacity;
+			return this;
+		}
+
+		/**
+		 * Allow events to be published from any number of threads at once.
+		 * By default events must be published from one thread at a time.
+		 */
+		public Builder multiProducer() {
+
+			this.multiProducer = true;
+			return this;
+		}
+
+		/**
+		 * Restrict publishing to one thread at a time, the default
+		 */
+		public Builder singleProducer() {
+
+			this.multiProducer = false;
+			return this;
+		}
+
+		/**
+		 * The strategy applied by waiting producers and consumers. The default
+		 * is {@link WaitStrategy#YIELD}.
+		 */
+		public Builder waitStrategy(WaitStrategy waitStrategy) {
+
+			this.waitStrategy = Objects.requireNonNull(waitStrategy);
+			return this;
+		}
+
+		/**
+		 * The factory of the consumer threads. By default each consumer has
+		 * its own daemon thread.
+		 */
+		public Builder threadFactory(ThreadFactory threadFactory) {
+
+			this.threadFactory = Objects.requireNonNull(threadFactory);
+			return this;
+		}
+
+		/**
+		 * Receives each event for which a Visitor throws, with the exception,
+		 * on the consumer thread. The consumer continues with the next event.
+		 * By default the exception is passed to the uncaught exception handler
+		 * of the consumer thread, as is any exception thrown by the error
+		 * handler itself.
+		 */
+		public Builder onError(BiConsumer<Object, Throwable> errorHandler) {
+
+			this.errorHandler = Objects.requireNonNull(errorHandler);
+			return this;
+		}
+
+		/**
+		 * Add a consumer, to which every event will be dispatched on a thread
+		 * of its own
+		 */
+		public Builder consumer(Visitor<?> visitor) {
+
+			visitors.add(Objects.requireNonNull(visitor));
+			return this;
+		}
+
+		/**
+		 * Returns a new pipeline with its consumer threads started
+		 *
+		 * @throws IllegalStateException
+		 *             if no consumer has been added
+		 */
+		public EventPipeline start() {
+
+			if (visitors.isEmpty()) {
+				throw new IllegalStateException("A pipeline requires at least one consumer");
+			}
+			return new EventPipeline(this).begin();
+		}
+	}
+}
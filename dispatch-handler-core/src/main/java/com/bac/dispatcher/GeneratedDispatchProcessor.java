@@ -0,0 +1,332 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a {@link GeneratedDispatcher} for each Visitor class annotated
+ * with {@link GeneratedDispatch}.
+ *
+ * The generated dispatcher tests the target against the parameter type of
+ * each dispatch and handle method in the same order of preference as the
+ * run time resolution: classes, narrowest first, then interfaces, narrowest
+ * first, and finally the Object method. The run time resolution prefers
+ * between two unrelated interfaces by the order in which the target class
+ * declares them, which is unknown at compile time, so a target implementing
+ * two unrelated interfaces that both have methods is passed to
+ * {@link GeneratedDispatcher#resolveDispatch(Visitor, Object)} or
+ * {@link GeneratedDispatcher#resolveHandle(Visitor, Object)} instead.
+ *
+ * @author Simon Baird
+ *
+ */
+@SupportedAnnotationTypes("com.bac.dispatcher.GeneratedDispatch")
+public class GeneratedDispatchProcessor extends AbstractProcessor {
+
+	/**
+	 * Returns the binary name of the dispatcher generated for a Visitor class
+	 *
+	 * @param visitorName
+	 *            the binary name of the Visitor class
+	 * @return the binary name of the generated dispatcher
+	 */
+	static String dispatcherName(String visitorName) {
+
+		int packageEnd = visitorName.lastIndexOf('.') + 1;
+		return visitorName.substring(0, packageEnd) + visitorName.substring(packageEnd).replace('$', '_')
+				+ "_Dispatcher";
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+		for (Element element : roundEnv.getElementsAnnotatedWith(GeneratedDispatch.class)) {
+
+			if (isValid(element)) {
+				generate((TypeElement) element);
+			}
+		}
+		return true;
+	}
+
+	private boolean isValid(Element element) {
+
+		TypeMirror visitor = processingEnv.getTypeUtils()
+				.erasure(processingEnv.getElementUtils().getTypeElement(Visitor.class.getName()).asType());
+		String error = null;
+		if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+			error = "@GeneratedDispatch must annotate a concrete class";
+		} else if (!processingEnv.getTypeUtils().isAssignable(element.asType(), visitor)) {
+			error = "@GeneratedDispatch must annotate a Visitor implementation";
+		} else if (((TypeElement) element).getNestingKind() == NestingKind.LOCAL
+				|| ((TypeElement) element).getNestingKind() == NestingKind.ANONYMOUS) {
+			error = "@GeneratedDispatch cannot annotate a local or anonymous class";
+		} else {
+			for (Element e = element; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+				if (e.getModifiers().contains(Modifier.PRIVATE)) {
+					error = "@GeneratedDispatch cannot annotate a private class";
+				}
+			}
+		}
+		if (error != null) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, error, element);
+		}
+		return error == null;
+	}
+
+	private void generate(TypeElement visitor) {
+
+		PackageElement pkg = processingEnv.getElementUtils().getPackageOf(visitor);
+		String name = dispatcherName(processingEnv.getElementUtils().getBinaryName(visitor).toString());
+		String simpleName = name.substring(name.lastIndexOf('.') + 1);
+		String visitorType = processingEnv.getTypeUtils().erasure(visitor.asType()).toString();
+
+		try {
+			JavaFileObject file = processingEnv.getFiler().createSourceFile(name, visitor);
+			try (PrintWriter out = new PrintWriter(file.openWriter())) {
+
+				if (!pkg.isUnnamed()) {
+					out.println("package " + pkg.getQualifiedName() + ";");
+					out.println();
+				}
+				out.println("/**");
+				out.println(" * Dispatch table for {@link " + visitorType + "}");
+				out.println(" * generated by the " + getClass().getName());
+				out.println(" */");
+				out.println("public final class " + simpleName + " implements " + GeneratedDispatcher.class.getName()
+						+ "<" + visitorType + "> {");
+				out.println();
+				out.println("\t@Override");
+				out.println("\tpublic void dispatch(" + visitorType + " v, Object o) {");
+				out.println();
+				List<ExecutableElement> dispatchMethods = methods(visitor, "dispatch");
+				for (ExecutableElement method : dispatchMethods) {
+					out.println("\t\tif (o instanceof " + testedType(method) + ") {");
+					String ambiguous = ambiguous(method, dispatchMethods);
+					if (ambiguous != null) {
+						out.println("\t\t\tif (" + ambiguous + ") {");
+						out.println("\t\t\t\t" + GeneratedDispatcher.class.getName() + ".resolveDispatch(v, o);");
+						out.println("\t\t\t\treturn;");
+						out.println("\t\t\t}");
+					}
+					out.println("\t\t\tv.dispatch(" + argument(method) + ");");
+					out.println("\t\t\treturn;");
+					out.println("\t\t}");
+				}
+				out.println("\t\tv.dispatch(o);");
+				out.println("\t}");
+				out.println();
+				out.println("\t@Override");
+				out.println("\tpublic Object handle(" + visitorType + " v, Object o) {");
+				out.println();
+				List<ExecutableElement> handleMethods = methods(visitor, "handle");
+				for (ExecutableElement method : handleMethods) {
+					out.println("\t\tif (o instanceof " + testedType(method) + ") {");
+					String ambiguous = ambiguous(method, handleMethods);
+					if (ambiguous != null) {
+						out.println("\t\t\tif (" + ambiguous + ") {");
+						out.println("\t\t\t\treturn " + GeneratedDispatcher.class.getName() + ".resolveHandle(v, o);");
+						out.println("\t\t\t}");
+					}
+					if (method.getReturnType().getKind() == TypeKind.VOID) {
+						out.println("\t\t\tv.handle(" + argument(method) + ");");
+						out.println("\t\t\treturn null;");
+					} else {
+						out.println("\t\t\treturn v.handle(" + argument(method) + ");");
+					}
+					out.println("\t\t}");
+				}
+				out.println("\t\treturn v.handle(o);");
+				out.println("\t}");
+				out.println("}");
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Unable to generate " + name + ": " + e.getMessage(), visitor);
+		}
+	}
+
+	/*
+	 * The public single argument methods of the given name, excluding the
+	 * Object method, in the order in which they are to be tested
+	 */
+	private List<ExecutableElement> methods(TypeElement visitor, String name) {
+
+		List<ExecutableElement> classes = new ArrayList<>();
+		List<ExecutableElement> interfaces = new ArrayList<>();
+		for (ExecutableElement method : ElementFilter
+				.methodsIn(processingEnv.getElementUtils().getAllMembers(visitor))) {
+
+			if (!method.getSimpleName().contentEquals(name) || method.getParameters().size() != 1
+					|| !method.getModifiers().contains(Modifier.PUBLIC)
+					|| method.getModifiers().contains(Modifier.STATIC)) {
+				continue;
+			}
+			TypeMirror parameter = testedMirror(method);
+			if (processingEnv.getTypeUtils().isSameType(parameter, objectType())) {
+				continue;
+			}
+			if (isInterface(method)) {
+				interfaces.add(method);
+			} else {
+				classes.add(method);
+			}
+		}
+		List<ExecutableElement> ordered = narrowestFirst(classes);
+		ordered.addAll(narrowestFirst(interfaces));
+		return ordered;
+	}
+
+	/*
+	 * Stable reordering so that a subtype always precedes its supertypes and a
+	 * wrapper class precedes the equivalent primitive
+	 */
+	private List<ExecutableElement> narrowestFirst(List<ExecutableElement> methods) {
+
+		Types types = processingEnv.getTypeUtils();
+		List<ExecutableElement> ordered = new ArrayList<>(methods.size());
+		for (ExecutableElement method : methods) {
+
+			TypeMirror type = testedMirror(method);
+			boolean primitive = isPrimitive(method);
+			int position = ordered.size();
+			for (int i = 0; i < ordered.size(); i++) {
+
+				TypeMirror other = testedMirror(ordered.get(i));
+				boolean sameType = types.isSameType(type, other);
+				if ((sameType && !primitive) || (!sameType && types.isSubtype(type, other))) {
+					position = i;
+					break;
+				}
+			}
+			ordered.add(position, method);
+		}
+		return ordered;
+	}
+
+	/*
+	 * The instanceof tests for the interfaces of the other methods unrelated
+	 * to the interface of the given method, joined by ||, or null if there are
+	 * none
+	 */
+	private String ambiguous(ExecutableElement method, List<ExecutableElement> methods) {
+
+		if (!isInterface(method)) {
+			return null;
+		}
+		Types types = processingEnv.getTypeUtils();
+		TypeMirror type = testedMirror(method);
+		StringBuilder tests = new StringBuilder();
+		for (ExecutableElement other : methods) {
+
+			TypeMirror otherType = testedMirror(other);
+			if (other != method && isInterface(other) && !types.isSubtype(type, otherType)
+					&& !types.isSubtype(otherType, type)) {
+				tests.append(tests.length() == 0 ? "" : " || ").append("o instanceof ").append(otherType);
+			}
+		}
+		return tests.length() == 0 ? null : tests.toString();
+	}
+
+	private boolean isInterface(ExecutableElement method) {
+
+		Element parameterElement = processingEnv.getTypeUtils().asElement(testedMirror(method));
+		return parameterElement != null && parameterElement.getKind().isInterface();
+	}
+
+	private boolean isPrimitive(ExecutableElement method) {
+
+		return method.getParameters().get(0).asType().getKind().isPrimitive();
+	}
+
+	/*
+	 * The reference type tested by instanceof, i.e. the erased parameter type
+	 * or the wrapper of a primitive parameter
+	 */
+	private TypeMirror testedMirror(ExecutableElement method) {
+
+		Types types = processingEnv.getTypeUtils();
+		TypeMirror parameter = method.getParameters().get(0).asType();
+		if (parameter.getKind().isPrimitive()) {
+			return types.boxedClass(types.getPrimitiveType(parameter.getKind())).asType();
+		}
+		return types.erasure(parameter);
+	}
+
+	private String testedType(ExecutableElement method) {
+
+		return testedMirror(method).toString();
+	}
+
+	private String argument(ExecutableElement method) {
+
+		String cast = "(" + testedType(method) + ") o";
+		if (isPrimitive(method)) {
+			return "(" + method.getParameters().get(0).asType() + ") (" + cast + ")";
+		}
+		return cast;
+	}
+
+	private TypeMirror objectType() {
+
+		return processingEnv.getElementUtils().getTypeElement(Object.class.getName()).asType();
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+/**
+ * A dispatcher generated at compile time for a Visitor class annotated with
+ * {@link GeneratedDispatch}. Implementations are generated by the
+ * {@link GeneratedDispatchProcessor} and are not intended to be written by
+ * hand.
+ * 
+ * The generated class is in the package of the Visitor and named after it,
+ * e.g. the dispatcher for a nested class Outer.VisitorImpl is
+ * Outer_VisitorImpl_Dispatcher.
+ * 
+ * @author Simon Baird
+ *
+ * @param <V>
+ *            the Visitor class
+ */
+public interface GeneratedDispatcher<V extends Visitor<?>> {
+
+	/**
+	 * Forward the Object under extension to the appropriate dispatch method
+	 * of the Visitor
+	 * 
+	 * @param v
+	 *            the Visitor
+	 * @param o
+	 *            any Object requiring dynamic extension
+	 */
+	void dispatch(V v, Object o);
+
+	/**
+	 * Returns the output from calling the appropriate handle method of the
+	 * Visitor
+	 * 
+	 * @param v
+	 *            the Visitor
+	 * @param o
+	 *            any Object requiring dynamic extension
+	 * @return the value returned by the Visitor method
+	 */
+	Object handle(V v, Object o);
+
+	/**
+	 * Forward the Object to the dispatch method of the Visitor selected by the
+	 * run time resolution. A generated dispatcher calls this for a target
+	 * implementing two unrelated interfaces that both have methods, as the
+	 * preference between them depends on the order in which the target class
+	 * declares them.
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param o
+	 *            any Object requiring dynamic extension
+	 */
+	static void resolveDispatch(Visitor<?> v, Object o) {
+
+		DispatchEngine.dispatchResolved(v, o);
+	}
+
+	/**
+	 * Returns the output from calling the handle method of the Visitor
+	 * selected by the run time resolution
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param o
+	 *            any Object requiring dynamic extension
+	 * @return the value returned by the Visitor method
+	 * @see #resolveDispatch(Visitor, Object)
+	 */
+	static Object resolveHandle(Visitor<?> v, Object o) {
+
+		return DispatchEngine.handleResolved(v, o);
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Walks a graph of objects from a root, dispatching each node to a Visitor.
+ *
+ * The nodes need not implement any interface: the children of a node are
+ * obtained from a pluggable extractor, e.g. one that iterates
+ * Node.getChildNodes() of a DOM. The walk keeps its pending nodes in an
+ * explicit array backed stack rather than on the call stack, so that the
+ * depth of the graph is limited only by the heap. Children are visited in
+ * the order in which the extractor supplies them.
+ *
+ * A walker is immutable and may be shared between threads, each call to walk
+ * keeping its own stack. By default nodes are visited in pre-order, every
+ * node is descended and a node reachable by more than one path is visited
+ * once for each path, which does not terminate where the graph has a cycle.
+ *
+ * <pre>
+ * GraphWalker&lt;Node&gt; walker = GraphWalker.&lt;Node&gt; of((node, action) -&gt; {
+ * 	NodeList nodes = node.getChildNodes();
+ * 	for (int i = 0; i &lt; nodes.getLength(); i++) {
+ * 		action.accept(nodes.item(i));
+ * 	}
+ * }).postOrder()
+ * 		.pruning(n -&gt; n.getNodeType() == Node.ENTITY_REFERENCE_NODE)
+ * 		.detectingCycles();
+ * walker.walk(document, visitor);
+ * </pre>
+ *
+ * @author Simon Baird
+ *
+ * @param <N>
+ *            the type of the nodes
+ */
+public final class GraphWalker<N> {
+
+	/**
+	 * Supplies the children of a node to the walk
+	 *
+	 * @param <N>
+	 *            the type of the nodes
+	 */
+	@FunctionalInterface
+	public interface Children<N> {
+
+		/**
+		 * Pass each child of the node to the action in order
+		 *
+		 * @param node
+		 *            the parent node, not null
+		 * @param action
+		 *            accepts each child, which may be null
+		 */
+		void forEach(N node, Consumer<? super N> action);
+	}
+
+	private static final int INITIAL_DEPTH = 32;
+
+	private final Children<N> children;
+
+	private final boolean postOrder;
+
+	private final Predicate<? super N> pruned;
+
+	private final boolean detectCycles;
+
+	private GraphWalker(Children<N> children, boolean postOrder, Predicate<? super N> pruned,
+			boolean detectCycles) {
+
+		this.children = children;
+		this.postOrder = postOrder;
+		this.pruned = pruned;
+		this.detectCycles = detectCycles;
+	}
+
+	/**
+	 * Returns a pre-order walker obtaining the children of each node from the
+	 * extractor
+	 *
+	 * @param children
+	 *            passes the children of a node to an action
+	 * @return the walker
+	 */
+	public static <N> GraphWalker<N> of(Children<N> children) {
+
+		return new GraphWalker<>(Objects.requireNonNull(children), false, null, false);
+	}
+
+	/**
+	 * Returns a pre-order walker obtaining the children of each node as an
+	 * Iterable
+	 *
+	 * @param children
+	 *            returns the children of a node, or null if it has none
+	 * @return the walker
+	 */
+	public static <N> GraphWalker<N> ofIterable(Function<? super N, ? extends Iterable<? extends N>> children) {
+
+		Objects.requireNonNull(children);
+		return of((node, action) -> {
+			Iterable<? extends N> iterable = children.apply(node);
+			if (iterable != null) {
+				iterable.forEach(action);
+			}
+		});
+	}
+
+	/**
+	 * Returns a walker that visits each node before its children
+	 */
+	public GraphWalker<N> preOrder() {
+
+		return new GraphWalker<>(children, false, pruned, detectCycles);
+	}
+
+	/**
+	 * Returns a walker that visits each node after its children
+	 */
+	public GraphWalker<N> postOrder() {
+
+		return new GraphWalker<>(children, true, pruned, detectCycles);
+	}
+
+	/**
+	 * Returns a walker that does not descend into the nodes matching the
+	 * predicate. A pruned node is itself visited.
+	 *
+	 * @param pruned
+	 *            true for a node whose children are not to be walked
+	 * @return the walker
+	 */
+	public GraphWalker<N> pruning(Predicate<? super N> pruned) {
+
+		return new GraphWalker<>(children, postOrder, Objects.requireNonNull(pruned), detectCycles);
+	}
+
+	/**
+	 * Returns a walker that visits each node once only, however many paths
+	 * reach it, so that a graph with cycles may be walked. Nodes are compared
+	 * by identity.
+	 */
+	public GraphWalker<N> detectingCycles() {
+
+		return new GraphWalker<>(children, postOrder, pruned, true);
+	}
+
+	/**
+	 * Walk the graph from the root, invoking the dispatch method of the
+	 * Visitor most appropriate to each node. A null node is dispatched to the
+	 * Object method and has no children.
+	 *
+	 * @param root
+	 *            the root of the graph
+	 * @param v
+	 *            the Visitor
+	 */
+	public void walk(N root, Visitor<?> v) {
+
+		new Walk<>(this, v).run(root);
+	}
+
+	/**
+	 * The state of a single walk: the stack of pending nodes, with a flag for
+	 * each recording whether its children have been pushed, and the nodes
+	 * already reached. A node is marked as reached when it is first popped
+	 * rather than when it is pushed, so that detecting cycles does not alter
+	 * the depth first order of the walk. The walk accepts the children of the node being
+	 * expanded so that no Consumer is allocated for each node.
+	 */
+	private static final class Walk<N> implements Consumer<N> {
+
+		private final GraphWalker<N> walker;
+
+		private final Visitor<?> visitor;
+
+		private final MethodTable table;
+
+		private final IdentitySet reached;
+
+		private Object[] nodes = new Object[INITIAL_DEPTH];
+
+		private boolean[] expanded = new boolean[INITIAL_DEPTH];
+
+		private int top;
+
+		private Class<?> lastClass;
+
+		private MethodHandle method;
+
+		Walk(GraphWalker<N> walker, Visitor<?> visitor) {
+
+			this.walker = walker;
+			this.visitor = visitor;
+			this.table = DispatchEngine.dispatchTable(visitor.getClass());
+			this.reached = walker.detectCycles ? new IdentitySet() : null;
+		}
+
+		@SuppressWarnings("unchecked")
+		void run(N root) {
+
+			accept(root);
+			while (top > 0) {
+
+				N node = (N) nodes[top - 1];
+				if (expanded[top - 1]) {
+					top--;
+					visit(node);
+				} else if (reached != null && node != null && !reached.add(node)) {
+					top--;
+				} else if (walker.postOrder) {
+					expanded[top - 1] = true;
+					expand(node);
+				} else {
+					top--;
+					visit(node);
+					expand(node);
+				}
+			}
+		}
+
+		/**
+		 * Push a node, which is skipped when popped if it has been reached
+		 * since
+		 */
+		@Override
+		public void accept(N node) {
+
+			if (top == nodes.length) {
+				nodes = Arrays.copyOf(nodes, top << 1);
+				expanded = Arrays.copyOf(expanded, top << 1);
+			}
+			nodes[top] = node;
+			expanded[top++] = false;
+		}
+
+		/*
+		 * Push the children of the node, reversing them so that they are
+		 * popped in the order supplied
+		 */
+		private void expand(N node) {
+
+			if (node == null || (walker.pruned != null && walker.pruned.test(node))) {
+				return;
+			}
+			int first = top;
+			walker.children.forEach(node, this);
+			for (int i = first, j = top - 1; i < j; i++, j--) {
+
+				Object child = nodes[i];
+				nodes[i] = nodes[j];
+				nodes[j] = child;
+			}
+		}
+
+		private void visit(Object node) {
+
+			Class<?> c = DispatchEngine.targetClass(node);
+			if (c != lastClass) {
+				method = table.lookup(c);
+				lastClass = c;
+			}
+			try {
+				method.invokeExact(visitor, node);
+			} catch (Throwable t) {
+				throw DispatchEngine.rethrow(t);
+			}
+		}
+	}
+}
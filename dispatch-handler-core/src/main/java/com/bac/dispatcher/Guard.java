@@ -0,0 +1,87 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Restricts a Visitor method to the targets satisfying a predicate, in
+ * addition to their type.
+ * 
+ * A guarded method may have any name. It takes part in dispatch if it returns
+ * void and in handle otherwise, and is selected for a target accepted by its
+ * parameter when the named predicate returns true. The predicate is either a
+ * public method of the Visitor returning boolean and accepting the parameter
+ * type, or a public no argument method of the parameter type returning
+ * boolean, e.g. a property of the target.
+ * 
+ * 	&#64;Guard("isPriority")
+ * 	public void dispatchPriority(Order o) {
+ * 	...
+ * 	}
+ * 
+ * 	public void dispatch(Order o) {
+ * 	...
+ * 	}
+ * 
+ * The type of the target is matched first. For each target class the guarded
+ * methods accepting it at least as closely as the method that would otherwise
+ * be selected are compiled, with that method, into a single chain of guards:
+ * the most closely matching type first and then in ascending {@link #order},
+ * so that the most selective predicates should be given the lowest order.
+ * Guards apply to dispatch and handle of a single Object, not to the pair or
+ * primitive forms, and a Visitor with guarded methods does not use a
+ * {@link GeneratedDispatcher}.
+ * 
+ * @author Simon Baird
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Guard {
+
+	/**
+	 * The name of the predicate method
+	 */
+	String value();
+
+	/**
+	 * The position of the guard among the guards of methods accepting the same
+	 * type, lowest first
+	 */
+	int order() default 0;
+}
@@ -0,0 +1,207 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compiles the {@link Guard guarded} methods of a Visitor class into a chain
+ * of MethodHandle guards for each target class.
+ *
+ * The guarded methods and their predicates are found once per Visitor class.
+ * For a target class the chain tests the predicate of each guarded method
+ * accepting the target at least as closely as the unguarded method selected
+ * by the {@link MethodResolver}, narrowest type first and then in ascending
+ * order, invoking the first guarded method whose predicate holds and
+ * otherwise the unguarded method. The chain is bound into the
+ * {@link MethodTable} in place of the unguarded method, so the type is still
+ * matched by a single map lookup and only the predicates are evaluated on
+ * each call.
+ *
+ * @author Simon Baird
+ *
+ */
+final class GuardChain {
+
+	private static final MethodType TEST_TYPE = MethodType.methodType(boolean.class, Visitor.class, Object.class);
+
+	private GuardChain() {
+	}
+
+	/**
+	 * Returns the guarded methods of the Visitor class taking part in
+	 * dispatch, i.e. returning void, or in handle
+	 *
+	 * @param visitorClass
+	 *            the concrete Visitor class
+	 * @param dispatch
+	 *            true for the dispatch methods, false for the handle methods
+	 * @return the guarded methods with their predicates
+	 * @throws IllegalArgumentException
+	 *             if a guarded method is not a public single argument instance
+	 *             method or its predicate cannot be found
+	 */
+	static List<Guarded> guarded(Class<?> visitorClass, boolean dispatch) {
+
+		List<Guarded> guarded = new ArrayList<>();
+		for (Method method : visitorClass.getMethods()) {
+
+			Guard guard = method.getAnnotation(Guard.class);
+			if (guard == null || method.isBridge() || (method.getReturnType() == void.class) != dispatch) {
+				continue;
+			}
+			if (method.getParameterCount() != 1 || Modifier.isStatic(method.getModifiers())) {
+				throw new IllegalArgumentException("A guarded method must be a single argument instance method: "
+						+ method);
+			}
+			guarded.add(new Guarded(method, guard.order(), predicate(visitorClass, method, guard.value())));
+		}
+		return Collections.unmodifiableList(guarded);
+	}
+
+	/**
+	 * Returns true if the Visitor class has any guarded methods
+	 */
+	static boolean present(Class<?> visitorClass) {
+
+		for (Method method : visitorClass.getMethods()) {
+			if (method.isAnnotationPresent(Guard.class)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the chain of guards for a target class
+	 *
+	 * @param guarded
+	 *            the guarded methods of the Visitor class
+	 * @param target
+	 *            the runtime class of the target object
+	 * @param selected
+	 *            the unguarded method selected for the target
+	 * @param otherwise
+	 *            the handle of the selected method, of the given type
+	 * @param type
+	 *            the type of the chain
+	 * @return the chain, which is otherwise if no guarded method applies
+	 */
+	static MethodHandle chain(List<Guarded> guarded, Class<?> target, Method selected, MethodHandle otherwise,
+			MethodType type) {
+
+		List<Class<?>> ranking = MethodResolver.rank(target);
+		int selectedRank = MethodResolver.rankOf(ranking, selected.getParameterTypes()[0]);
+		List<Guarded> applicable = new ArrayList<>();
+		for (Guarded g : guarded) {
+			if (g.rank(ranking) <= selectedRank) {
+				applicable.add(g);
+			}
+		}
+		applicable.sort(Comparator.<Guarded> comparingInt(g -> g.rank(ranking))
+				.thenComparingInt(g -> g.order).thenComparing(g -> g.method.getName()));
+		MethodHandle chain = otherwise;
+		for (int i = applicable.size() - 1; i >= 0; i--) {
+
+			Guarded g = applicable.get(i);
+			chain = MethodHandles.guardWithTest(g.test, MethodTable.adapt(MethodTable.unreflect(g.method), type),
+					chain);
+		}
+		return chain;
+	}
+
+	/*
+	 * Returns the predicate of a guarded method as a handle of TEST_TYPE,
+	 * preferring a method of the Visitor to a property of the target
+	 */
+	private static MethodHandle predicate(Class<?> visitorClass, Method guarded, String name) {
+
+		Class<?> parameter = guarded.getParameterTypes()[0];
+		for (Method method : visitorClass.getMethods()) {
+
+			if (method.getName().equals(name) && method.getParameterCount() == 1
+					&& !Modifier.isStatic(method.getModifiers()) && isBoolean(method.getReturnType())
+					&& MethodResolver.box(method.getParameterTypes()[0])
+							.isAssignableFrom(MethodResolver.box(parameter))) {
+				return MethodTable.unreflect(method).asType(TEST_TYPE);
+			}
+		}
+		try {
+			Method property = MethodResolver.box(parameter).getMethod(name);
+			if (!Modifier.isStatic(property.getModifiers()) && isBoolean(property.getReturnType())) {
+				MethodHandle handle = MethodTable.unreflect(property);
+				return MethodHandles.dropArguments(handle, 0, Visitor.class).asType(TEST_TYPE);
+			}
+		} catch (NoSuchMethodException e) {
+			// Reported below
+		}
+		throw new IllegalArgumentException("No boolean method " + name + " on " + visitorClass.getName()
+				+ " accepting " + parameter.getName() + " or on " + parameter.getName() + " guards " + guarded);
+	}
+
+	private static boolean isBoolean(Class<?> type) {
+
+		return type == boolean.class || type == Boolean.class;
+	}
+
+	/**
+	 * A guarded method with its predicate
+	 */
+	static final class Guarded {
+
+		private final Method method;
+
+		private final int order;
+
+		private final MethodHandle test;
+
+		Guarded(Method method, int order, MethodHandle test) {
+
+			this.method = method;
+			this.order = order;
+			this.test = test;
+		}
+
+		private int rank(List<Class<?>> ranking) {
+
+			return MethodResolver.rankOf(ranking, method.getParameterTypes()[0]);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+/**
+ * A set of objects compared by identity, held in a single open addressed
+ * array with linear probing.
+ *
+ * Unlike an IdentityHashMap used as a set no entry or boxed value is created
+ * for each member, and unlike a HashSet the equals and hashCode methods of
+ * the members are never called, so that members which are mutable or which
+ * define equality structurally are each held once.
+ *
+ * @author Simon Baird
+ *
+ */
+final class IdentitySet {
+
+	private static final int MINIMUM_CAPACITY = 16;
+
+	private Object[] table;
+
+	private int size;
+
+	IdentitySet() {
+
+		table = new Object[MINIMUM_CAPACITY];
+	}
+
+	/**
+	 * Add an object to the set
+	 *
+	 * @param o
+	 *            the object, not null
+	 * @return true if the object was not already a member
+	 */
+	boolean add(Object o) {
+
+		Object[] t = table;
+		int mask = t.length - 1;
+		for (int i = indexOf(o, mask);; i = (i + 1) & mask) {
+
+			Object member = t[i];
+			if (member == null) {
+				t[i] = o;
+				if (++size > t.length >>> 1) {
+					resize();
+				}
+				return true;
+			}
+			if (member == o) {
+				return false;
+			}
+		}
+	}
+
+	/*
+	 * Spread the identity hash code, which may have poor low order bits, over
+	 * the table
+	 */
+	private static int indexOf(Object o, int mask) {
+
+		int h = System.identityHashCode(o) * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void resize() {
+
+		Object[] old = table;
+		Object[] t = new Object[old.length << 1];
+		int mask = t.length - 1;
+		for (Object member : old) {
+
+			if (member != null) {
+				int i = indexOf(member, mask);
+				while (t[i] != null) {
+					i = (i + 1) & mask;
+				}
+				t[i] = member;
+			}
+		}
+		table = t;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits dispatch metrics as Java Flight Recorder events. This class is only
+ * loaded where the jdk.jfr module is present.
+ *
+ * @author Simon Baird
+ *
+ */
+final class JfrEventSink implements DispatchMetrics.EventSink {
+
+	@Override
+	public void resolved(Class<?> visitorClass, Class<?> target, long nanos) {
+
+		ResolutionEvent event = new ResolutionEvent();
+		if (event.shouldCommit()) {
+			event.visitorClass = visitorClass;
+			event.targetClass = target;
+			event.resolutionTime = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void invoked(Class<?> visitorClass, Class<?> target, boolean handle, boolean fallback,
+			long resolutionNanos, long invocationNanos) {
+
+		DispatchEvent event = new DispatchEvent();
+		if (event.shouldCommit()) {
+			event.visitorClass = visitorClass;
+			event.targetClass = target;
+			event.handle = handle;
+			event.fallback = fallback;
+			event.resolutionTime = resolutionNanos;
+			event.invocationTime = invocationNanos;
+			event.commit();
+		}
+	}
+
+	@Name("com.bac.dispatcher.Dispatch")
+	@Label("Dispatch")
+	@Category("Dispatch Handler")
+	@Description("A call to a Visitor dispatch or handle method")
+	static final class DispatchEvent extends Event {
+
+		@Label("Visitor Class")
+		Class<?> visitorClass;
+
+		@Label("Target Class")
+		Class<?> targetClass;
+
+		@Label("Handle")
+		@Description("True for a handle method, false for a dispatch method")
+		boolean handle;
+
+		@Label("Fallback")
+		@Description("True if the default Object method of the Visitor interface was called")
+		boolean fallback;
+
+		@Label("Resolution Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long resolutionTime;
+
+		@Label("Invocation Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long invocationTime;
+	}
+
+	@Name("com.bac.dispatcher.Resolution")
+	@Label("Method Resolution")
+	@Category("Dispatch Handler")
+	@Description("The resolution of the Visitor method for a target class")
+	static final class ResolutionEvent extends Event {
+
+		@Label("Visitor Class")
+		Class<?> visitorClass;
+
+		@Label("Target Class")
+		Class<?> targetClass;
+
+		@Label("Resolution Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long resolutionTime;
+	}
+}
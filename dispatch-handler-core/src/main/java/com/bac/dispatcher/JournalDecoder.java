@@ -0,0 +1,64 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the body of a journal record to the object dispatched to a Visitor
+ * by a {@link JournalReplay}.
+ * 
+ * A decoder is called concurrently by every decoding thread of the replay and
+ * so must be thread safe, which a decoder keeping no state is.
+ * 
+ * @author Simon Baird
+ *
+ */
+@FunctionalInterface
+public interface JournalDecoder {
+
+	/**
+	 * Returns the object decoded from a record.
+	 * 
+	 * @param typeId
+	 *            the type id of the record
+	 * @param buffer
+	 *            the buffer holding the record, which is not to be modified
+	 *            and must not be retained after returning
+	 * @param offset
+	 *            the absolute index of the first byte of the record body
+	 * @param length
+	 *            the number of bytes in the record body
+	 * @return the object to dispatch, or null to skip the record
+	 */
+	Object decode(int typeId, ByteBuffer buffer, int offset, int length);
+}
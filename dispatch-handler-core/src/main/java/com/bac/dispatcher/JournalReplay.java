@@ -0,0 +1,699 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Replays a journal of type tagged binary records through a Visitor, reading
+ * and decoding the records on other threads so that the rate of the replay is
+ * limited by the disk or by the Visitor rather than by decoding.
+ *
+ * The records are framed as for a {@link MessageRouter}: an int length of the
+ * body and an int type id, followed by the body. The journal is memory mapped
+ * in regions and a reader thread scans the record headers, dividing the
+ * records into batches. Each batch is decoded to objects by a
+ * {@link JournalDecoder} on one of a pool of decoding threads while the
+ * calling thread dispatches the batches already decoded, in the order of the
+ * journal, through the method tables of the DispatchEngine. Only a bounded
+ * number of batches are read ahead of the Visitor, so the heap held by a
+ * replay does not depend on the length of the journal.
+ *
+ * A partitioned replay instead passes each object to one of a number of
+ * partitions, chosen by the hash of a key of the object, each with a Visitor
+ * of its own called on its own thread. Objects with equal keys are dispatched
+ * in the order of the journal, while objects in different partitions are
+ * dispatched concurrently.
+ *
+ * <pre>
+ * ReplayProgress replayed = JournalReplay.builder()
+ * 		.decoder(decoder)
+ * 		.decoders(4)
+ * 		.progress(p -&gt; log.info(p.toString()), 10, TimeUnit.SECONDS)
+ * 		.build()
+ * 		.replay(journal, stateVisitor);
+ * </pre>
+ *
+ * A record that is incomplete at the end of the journal, e.g. by a write
+ * interrupted by a crash, is not replayed. An exception thrown by the decoder
+ * or the Visitor ends the replay and is thrown by replay, although the
+ * partitions of a partitioned replay dispatch the records already passed to
+ * them first. A JournalReplay holds no state between replays and may be
+ * reused, including concurrently.
+ *
+ * @author Simon Baird
+ *
+ */
+public final class JournalReplay {
+
+	private static final AtomicInteger REPLAYS = new AtomicInteger();
+
+	private final JournalDecoder decoder;
+
+	private final int decoders;
+
+	private final int batchSize;
+
+	private final int maxBatches;
+
+	private final int regionSize;
+
+	private final int partitions;
+
+	private final ByteOrder order;
+
+	private final ThreadFactory threadFactory;
+
+	private final Consumer<ReplayProgress> listener;
+
+	private final long progressNanos;
+
+	private JournalReplay(Builder builder) {
+
+		decoder = builder.decoder;
+		decoders = builder.decoders;
+		batchSize = builder.batchSize;
+		maxBatches = builder.maxBatches;
+		regionSize = builder.regionSize;
+		partitions = builder.partitions;
+		order = builder.order;
+		threadFactory = builder.threadFactory;
+		listener = builder.listener;
+		progressNanos = builder.progressNanos;
+	}
+
+	/**
+	 * Returns a builder of a replay
+	 */
+	public static Builder builder() {
+
+		return new Builder();
+	}
+
+	/**
+	 * Dispatch every record of the journal to the Visitor in order, on the
+	 * calling thread.
+	 *
+	 * @param journal
+	 *            the journal file
+	 * @param v
+	 *            the Visitor to which each decoded object is dispatched
+	 * @return the final progress of the replay
+	 * @throws IOException
+	 *             if the journal cannot be read or holds a record with a
+	 *             negative length or longer than the region size
+	 * @throws InterruptedIOException
+	 *             if the calling thread is interrupted
+	 */
+	public ReplayProgress replay(Path journal, Visitor<?> v) throws IOException {
+
+		return replay(journal, new Ordered(v));
+	}
+
+	/**
+	 * Dispatch every record of the journal to the Visitor of its partition,
+	 * each partition dispatching its records in order on a thread of its own.
+	 *
+	 * @param journal
+	 *            the journal file
+	 * @param key
+	 *            returns the key of a decoded object, objects with equal keys
+	 *            being dispatched to the same partition
+	 * @param visitors
+	 *            supplies the Visitor of each partition
+	 * @return the final progress of the replay
+	 * @throws IOException
+	 *             if the journal cannot be read or holds a record with a
+	 *             negative length or longer than the region size
+	 * @throws InterruptedIOException
+	 *             if the calling thread is interrupted
+	 */
+	public ReplayProgress replay(Path journal, Function<Object, ?> key, Supplier<? extends Visitor<?>> visitors)
+			throws IOException {
+
+		return replay(journal, new Partitioned(key, visitors));
+	}
+
+	private ReplayProgress replay(Path journal, Sink sink) throws IOException {
+
+		int replay = REPLAYS.incrementAndGet();
+		try (Sink closing = sink; FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+
+			long size = channel.size();
+			BlockingQueue<FutureTask<Batch>> decoded = new ArrayBlockingQueue<>(maxBatches);
+			ExecutorService pool = Executors.newFixedThreadPool(decoders,
+					threads("dispatch-replay-" + replay + "-decoder-"));
+			Reader reader = new Reader(channel, size, decoded, pool);
+			Thread readerThread = threads("dispatch-replay-" + replay + "-reader-").newThread(reader);
+			readerThread.start();
+			try {
+				long start = System.nanoTime();
+				long reported = start;
+				long records = 0;
+				long bytes = 0;
+				long waited = 0;
+				for (;;) {
+
+					long before = System.nanoTime();
+					Batch batch = take(decoded);
+					long now = System.nanoTime();
+					waited += now - before;
+					if (batch == null) {
+						break;
+					}
+					sink.accept(batch.records);
+					records += batch.records.length;
+					bytes += batch.bytes;
+					if (listener != null && now - reported >= progressNanos) {
+						listener.accept(new ReplayProgress(records, bytes, size, now - start, waited));
+						reported = now;
+					}
+				}
+				sink.finish();
+				ReplayProgress progress = new ReplayProgress(records, bytes, size, System.nanoTime() - start,
+						waited);
+				if (listener != null) {
+					listener.accept(progress);
+				}
+				return progress;
+			} finally {
+				reader.stopped = true;
+				readerThread.interrupt();
+				pool.shutdownNow();
+				decoded.clear();
+				join(readerThread);
+			}
+		}
+	}
+
+	/*
+	 * Returns the next decoded batch or null at the end of the journal
+	 */
+	private static Batch take(BlockingQueue<FutureTask<Batch>> decoded) throws IOException {
+
+		try {
+			return decoded.take().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted replaying journal");
+		} catch (ExecutionException e) {
+			throw DispatchEngine.rethrow(e.getCause());
+		}
+	}
+
+	/*
+	 * Wait for the reader to stop regardless of interrupts, so that the
+	 * journal is not closed while it is mapping a region
+	 */
+	private static void join(Thread thread) {
+
+		boolean interrupted = false;
+		for (;;) {
+			try {
+				thread.join();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private ThreadFactory threads(String prefix) {
+
+		if (threadFactory != null) {
+			return threadFactory;
+		}
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread thread = new Thread(r, prefix + count.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private Batch decode(ByteBuffer region, int start, int end, int count) {
+
+		ByteBuffer buffer = region.duplicate().order(order);
+		Object[] records = new Object[count];
+		int offset = start;
+		for (int i = 0; i < count; i++) {
+			int length = buffer.getInt(offset);
+			records[i] = decoder.decode(buffer.getInt(offset + 4), buffer, offset + MessageRouter.HEADER_LENGTH,
+					length);
+			offset += MessageRouter.HEADER_LENGTH + length;
+		}
+		return new Batch(records, end - start);
+	}
+
+	/**
+	 * The objects decoded from consecutive records and the number of bytes
+	 * the records occupy in the journal
+	 */
+	private static final class Batch {
+
+		private final Object[] records;
+
+		private final int bytes;
+
+		Batch(Object[] records, int bytes) {
+
+			this.records = records;
+			this.bytes = bytes;
+		}
+	}
+
+	/**
+	 * Maps the journal region by region and submits each batch of complete
+	 * records for decoding, queueing the batches in the order of the journal
+	 */
+	private final class Reader implements Runnable {
+
+		private final FileChannel channel;
+
+		private final long size;
+
+		private final BlockingQueue<FutureTask<Batch>> decoded;
+
+		private final ExecutorService pool;
+
+		private volatile boolean stopped;
+
+		Reader(FileChannel channel, long size, BlockingQueue<FutureTask<Batch>> decoded, ExecutorService pool) {
+
+			this.channel = channel;
+			this.size = size;
+			this.decoded = decoded;
+			this.pool = pool;
+		}
+
+		@Override
+		public void run() {
+
+			FutureTask<Batch> end;
+			try {
+				read();
+				end = new FutureTask<>(() -> null);
+			} catch (InterruptedException e) {
+				return;
+			} catch (Throwable t) {
+				if (stopped) {
+					return;
+				}
+				end = new FutureTask<>(() -> {
+					throw DispatchEngine.rethrow(t);
+				});
+			}
+			end.run();
+			try {
+				decoded.put(end);
+			} catch (InterruptedException e) {
+				// The replay has stopped
+			}
+		}
+
+		private FutureTask<Batch> batch(ByteBuffer region, int start, int end, int count) {
+
+			return new FutureTask<>(() -> decode(region, start, end, count));
+		}
+
+		private void read() throws IOException, InterruptedException {
+
+			int header = MessageRouter.HEADER_LENGTH;
+			long position = 0;
+			while (position < size && !stopped) {
+
+				int length = (int) Math.min(regionSize, size - position);
+				ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(order);
+				int offset = 0;
+				for (;;) {
+
+					int start = offset;
+					int count = 0;
+					while (count < batchSize && offset <= length - header) {
+						int recordLength = region.getInt(offset);
+						if (recordLength < 0) {
+							throw new IOException(
+									"Invalid record length " + recordLength + " at " + (position + offset));
+						}
+						if (recordLength > length - offset - header) {
+							break;
+						}
+						offset += header + recordLength;
+						count++;
+					}
+					if (count == 0) {
+						break;
+					}
+					FutureTask<Batch> batch = batch(region, start, offset, count);
+					decoded.put(batch);
+					pool.execute(batch);
+				}
+				if (offset == 0) {
+					if (position + length == size) {
+						// An incomplete record at the end of the journal
+						return;
+					}
+					throw new IOException("Record at " + position + " is longer than the region size " + regionSize);
+				}
+				position += offset;
+			}
+		}
+	}
+
+	/**
+	 * Receives the decoded objects of each batch in the order of the journal
+	 */
+	private interface Sink extends AutoCloseable {
+
+		void accept(Object[] records);
+
+		/**
+		 * Complete the dispatch of every object received, throwing any
+		 * exception thrown by a Visitor
+		 */
+		void finish();
+
+		/**
+		 * Release any threads, whether or not the replay has finished
+		 */
+		@Override
+		void close();
+	}
+
+	/**
+	 * Dispatches each object to a single Visitor on the calling thread,
+	 * looking up the method only when the class of the object changes
+	 */
+	private static final class Ordered implements Sink {
+
+		private final Visitor<?> visitor;
+
+		private final MethodTable table;
+
+		private Class<?> lastClass;
+
+		private MethodHandle method;
+
+		Ordered(Visitor<?> visitor) {
+
+			this.visitor = Objects.requireNonNull(visitor);
+			this.table = DispatchEngine.dispatchTable(visitor.getClass());
+		}
+
+		@Override
+		public void accept(Object[] records) {
+
+			try {
+				for (Object record : records) {
+					if (record == null) {
+						continue;
+					}
+					Class<?> c = record.getClass();
+					if (c != lastClass) {
+						method = table.lookup(c);
+						lastClass = c;
+					}
+					method.invokeExact(visitor, record);
+				}
+			} catch (Throwable t) {
+				throw DispatchEngine.rethrow(t);
+			}
+		}
+
+		@Override
+		public void finish() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * Publishes each object to the EventPipeline of its partition, whose
+	 * consumer is the Visitor of the partition
+	 */
+	private final class Partitioned implements Sink {
+
+		private final Function<Object, ?> key;
+
+		private final EventPipeline[] pipelines;
+
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		Partitioned(Function<Object, ?> key, Supplier<? extends Visitor<?>> visitors) {
+
+			this.key = Objects.requireNonNull(key);
+			this.pipelines = new EventPipeline[partitions];
+			int capacity = Integer.highestOneBit(Math.max(batchSize, 2) - 1) << 1;
+			try {
+				for (int i = 0; i < partitions; i++) {
+					EventPipeline.Builder builder = EventPipeline.builder().capacity(capacity)
+							.waitStrategy(EventPipeline.WaitStrategy.PARK).consumer(visitors.get())
+							.onError((event, t) -> failure.compareAndSet(null, t));
+					if (threadFactory != null) {
+						builder.threadFactory(threadFactory);
+					}
+					pipelines[i] = builder.start();
+				}
+			} catch (RuntimeException e) {
+				close();
+				throw e;
+			}
+		}
+
+		@Override
+		public void accept(Object[] records) {
+
+			check();
+			for (Object record : records) {
+				if (record != null) {
+					int h = Objects.hashCode(key.apply(record));
+					pipelines[Math.floorMod(h ^ (h >>> 16), pipelines.length)].publish(record);
+				}
+			}
+		}
+
+		@Override
+		public void finish() {
+
+			close();
+			check();
+		}
+
+		@Override
+		public void close() {
+
+			for (EventPipeline pipeline : pipelines) {
+				if (pipeline != null) {
+					pipeline.close();
+				}
+			}
+		}
+
+		private void check() {
+
+			Throwable t = failure.get();
+			if (t != null) {
+				throw DispatchEngine.rethrow(t);
+			}
+		}
+	}
+
+	/**
+	 * Configures a JournalReplay
+	 */
+	public static final class Builder {
+
+		private JournalDecoder decoder;
+
+		private int decoders = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+		private int batchSize = 1024;
+
+		private int maxBatches = 16;
+
+		private int regionSize = 1 << 30;
+
+		private int partitions = Runtime.getRuntime().availableProcessors();
+
+		private ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+		private ThreadFactory threadFactory;
+
+		private Consumer<ReplayProgress> listener;
+
+		private long progressNanos;
+
+		private Builder() {
+		}
+
+		/**
+		 * Decodes each record to the object dispatched. This must be set.
+		 */
+		public Builder decoder(JournalDecoder decoder) {
+
+			this.decoder = Objects.requireNonNull(decoder);
+			return this;
+		}
+
+		/**
+		 * The number of decoding threads. The default is one fewer than the
+		 * number of processors, and at least one.
+		 */
+		public Builder decoders(int decoders) {
+
+			this.decoders = positive("decoders", decoders);
+			return this;
+		}
+
+		/**
+		 * The greatest number of records in a batch. The default is 1024.
+		 */
+		public Builder batchSize(int batchSize) {
+
+			this.batchSize = positive("batchSize", batchSize);
+			return this;
+		}
+
+		/**
+		 * The greatest number of batches read ahead of the Visitor. The
+		 * default is 16.
+		 */
+		public Builder maxBatches(int maxBatches) {
+
+			this.maxBatches = positive("maxBatches", maxBatches);
+			return this;
+		}
+
+		/**
+		 * The number of bytes of the journal mapped at once, which limits the
+		 * length of a record. The default is 1GB.
+		 */
+		public Builder regionSize(int regionSize) {
+
+			if (regionSize < MessageRouter.HEADER_LENGTH) {
+				throw new IllegalArgumentException("regionSize must hold a record header: " + regionSize);
+			}
+			this.regionSize = regionSize;
+			return this;
+		}
+
+		/**
+		 * The number of partitions of a partitioned replay. The default is the
+		 * number of processors.
+		 */
+		public Builder partitions(int partitions) {
+
+			this.partitions = positive("partitions", partitions);
+			return this;
+		}
+
+		/**
+		 * The byte order of the record headers, and of the buffers passed to
+		 * the decoder. The default is big endian.
+		 */
+		public Builder order(ByteOrder order) {
+
+			this.order = Objects.requireNonNull(order);
+			return this;
+		}
+
+		/**
+		 * The factory of the reading, decoding and partition threads. By
+		 * default each replay creates daemon threads of its own.
+		 */
+		public Builder threadFactory(ThreadFactory threadFactory) {
+
+			this.threadFactory = Objects.requireNonNull(threadFactory);
+			return this;
+		}
+
+		/**
+		 * Receives the progress of each replay on the calling thread, after
+		 * each batch once the interval has passed since the last report, and
+		 * when the replay finishes
+		 */
+		public Builder progress(Consumer<ReplayProgress> listener, long interval, TimeUnit unit) {
+
+			this.listener = Objects.requireNonNull(listener);
+			this.progressNanos = unit.toNanos(interval);
+			return this;
+		}
+
+		/**
+		 * Returns a new JournalReplay
+		 *
+		 * @throws IllegalStateException
+		 *             if no decoder has been set
+		 */
+		public JournalReplay build() {
+
+			if (decoder == null) {
+				throw new IllegalStateException("A replay requires a decoder");
+			}
+			return new JournalReplay(this);
+		}
+
+		private static int positive(String name, int value) {
+
+			if (value < 1) {
+				throw new IllegalArgumentException(name + " must be at least one: " + value);
+			}
+			return value;
+		}
+	}
+}
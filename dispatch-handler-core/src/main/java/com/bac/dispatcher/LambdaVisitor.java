@@ -0,0 +1,286 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A Visitor whose methods are lambdas registered for target classes, rather
+ * than overloaded methods of a class written for the purpose.
+ *
+ * <pre>
+ * Visitor&lt;Integer&gt; visitor = Visitor.&lt;Integer&gt; builder()
+ * 		.on(String.class, s -&gt; log(s))
+ * 		.on(SubClass.class, o -&gt; store(o))
+ * 		.onHandle(String.class, String::length)
+ * 		.orElse(o -&gt; reject(o));
+ * </pre>
+ *
+ * The lambda for a target is selected as an overloaded method would be: the
+ * lambda registered for the class most closely matching the target in the
+ * ranking of its supertypes, so that a FinalClass target is passed to the
+ * lambda for SubClass where none is registered for FinalClass itself. A
+ * target for which no lambda is registered, including a null target, is
+ * passed to the lambda given to orElse, or is ignored by dispatch and
+ * returns null from handle.
+ *
+ * Each target class is resolved once and the lambda cached by class, so that
+ * a call is a single table lookup and the call of the lambda. Lambdas may be
+ * added to a built Visitor; the cached lambdas of unrelated classes are kept,
+ * and threads calling the Visitor meanwhile see the lambdas either before or
+ * after the addition.
+ *
+ * @author Simon Baird
+ *
+ * @param <T>
+ *            the return type of the handle lambdas
+ */
+public final class LambdaVisitor<T> implements Visitor<T> {
+
+	private static final Consumer<Object> IGNORE = o -> {
+	};
+
+	private static final Function<Object, Object> NOTHING = o -> null;
+
+	private volatile Table<Consumer<Object>> dispatchTable;
+
+	private volatile Table<Function<Object, ?>> handleTable;
+
+	private LambdaVisitor(Builder<T> builder, Consumer<Object> otherwise) {
+
+		dispatchTable = new Table<>(builder.dispatch, otherwise);
+		handleTable = new Table<>(builder.handle, NOTHING);
+	}
+
+	/**
+	 * Pass the target to the lambda registered for the most closely matching
+	 * class
+	 *
+	 * @param o
+	 *            the target object, may be null
+	 */
+	@Override
+	public void dispatch(Object o) {
+
+		dispatchTable.lookup(DispatchEngine.targetClass(o)).accept(o);
+	}
+
+	/**
+	 * Returns the value of the handle lambda registered for the most closely
+	 * matching class
+	 *
+	 * @param o
+	 *            the target object, may be null
+	 * @return the value of the lambda, or null if there is none for the target
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public T handle(Object o) {
+
+		return (T) handleTable.lookup(DispatchEngine.targetClass(o)).apply(o);
+	}
+
+	/**
+	 * Register the dispatch lambda for a class, in place of any already
+	 * registered for it
+	 *
+	 * @param type
+	 *            the class of the targets
+	 * @param handler
+	 *            called with each target of the class, and of its subclasses
+	 *            without a lambda of their own
+	 * @return this Visitor
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <S> LambdaVisitor<T> on(Class<S> type, Consumer<? super S> handler) {
+
+		dispatchTable = dispatchTable.with(Objects.requireNonNull(type),
+				(Consumer<Object>) Objects.requireNonNull(handler));
+		return this;
+	}
+
+	/**
+	 * Register the handle lambda for a class, in place of any already
+	 * registered for it
+	 *
+	 * @param type
+	 *            the class of the targets
+	 * @param handler
+	 *            returns the value for each target of the class, and of its
+	 *            subclasses without a lambda of their own
+	 * @return this Visitor
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <S> LambdaVisitor<T> onHandle(Class<S> type, Function<? super S, ? extends T> handler) {
+
+		handleTable = handleTable.with(Objects.requireNonNull(type),
+				(Function<Object, ?>) Objects.requireNonNull(handler));
+		return this;
+	}
+
+	/**
+	 * Returns the target classes whose dispatch lambdas have been resolved and
+	 * cached
+	 */
+	List<Class<?>> resolvedTargets() {
+
+		return new ArrayList<>(dispatchTable.resolved.keySet());
+	}
+
+	/**
+	 * The lambdas registered for each class, in the order registered, and
+	 * those resolved for each target class. A table is not modified once
+	 * registered lambdas have been resolved; an addition replaces it.
+	 */
+	private static final class Table<H> {
+
+		private final Map<Class<?>, H> handlers;
+
+		private final H otherwise;
+
+		private final ConcurrentHashMap<Class<?>, H> resolved = new ConcurrentHashMap<>();
+
+		Table(Map<Class<?>, H> handlers, H otherwise) {
+
+			this.handlers = Collections.unmodifiableMap(new LinkedHashMap<>(handlers));
+			this.otherwise = otherwise;
+		}
+
+		H lookup(Class<?> target) {
+
+			H handler = resolved.get(target);
+			if (handler == null) {
+				handler = resolve(target);
+				resolved.putIfAbsent(target, handler);
+			}
+			return handler;
+		}
+
+		/**
+		 * Returns a table with the lambda added, keeping the resolved lambdas
+		 * of the target classes that the added class does not accept
+		 */
+		Table<H> with(Class<?> type, H handler) {
+
+			Map<Class<?>, H> added = new LinkedHashMap<>(handlers);
+			added.put(type, handler);
+			Table<H> table = new Table<>(added, otherwise);
+			Class<?> accepted = MethodResolver.box(type);
+			for (Map.Entry<Class<?>, H> entry : resolved.entrySet()) {
+				if (!accepted.isAssignableFrom(entry.getKey())) {
+					table.resolved.put(entry.getKey(), entry.getValue());
+				}
+			}
+			return table;
+		}
+
+		private H resolve(Class<?> target) {
+
+			List<Class<?>> ranking = MethodResolver.rank(target);
+			H selected = otherwise;
+			int selectedRank = Integer.MAX_VALUE;
+			for (Map.Entry<Class<?>, H> entry : handlers.entrySet()) {
+
+				int rank = MethodResolver.rankOf(ranking, entry.getKey());
+				if (rank < selectedRank) {
+					selected = entry.getValue();
+					selectedRank = rank;
+				}
+			}
+			return selected;
+		}
+	}
+
+	/**
+	 * Collects the lambdas of a LambdaVisitor
+	 *
+	 * @param <T>
+	 *            the return type of the handle lambdas
+	 */
+	public static final class Builder<T> {
+
+		private final Map<Class<?>, Consumer<Object>> dispatch = new LinkedHashMap<>();
+
+		private final Map<Class<?>, Function<Object, ?>> handle = new LinkedHashMap<>();
+
+		Builder() {
+		}
+
+		/**
+		 * Register the dispatch lambda for a class, in place of any already
+		 * registered for it
+		 */
+		@SuppressWarnings("unchecked")
+		public <S> Builder<T> on(Class<S> type, Consumer<? super S> handler) {
+
+			dispatch.put(Objects.requireNonNull(type), (Consumer<Object>) Objects.requireNonNull(handler));
+			return this;
+		}
+
+		/**
+		 * Register the handle lambda for a class, in place of any already
+		 * registered for it
+		 */
+		@SuppressWarnings("unchecked")
+		public <S> Builder<T> onHandle(Class<S> type, Function<? super S, ? extends T> handler) {
+
+			handle.put(Objects.requireNonNull(type), (Function<Object, ?>) Objects.requireNonNull(handler));
+			return this;
+		}
+
+		/**
+		 * Returns a Visitor passing each target for which no dispatch lambda
+		 * is registered, including null, to the given lambda
+		 */
+		public LambdaVisitor<T> orElse(Consumer<Object> otherwise) {
+
+			return new LambdaVisitor<>(this, Objects.requireNonNull(otherwise));
+		}
+
+		/**
+		 * Returns a Visitor ignoring each target for which no dispatch lambda
+		 * is registered
+		 */
+		public LambdaVisitor<T> build() {
+
+			return new LambdaVisitor<>(this, IGNORE);
+		}
+	}
+}
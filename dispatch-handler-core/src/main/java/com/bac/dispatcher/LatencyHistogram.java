@@ -0,0 +1,171 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds with buckets of powers of two.
+ *
+ * Bucket zero counts latencies of zero and bucket i counts latencies from
+ * 2^(i-1) to 2^i - 1 nanoseconds, so that a latency is recorded by counting
+ * its leading zero bits and the precision is within a factor of two across
+ * the whole range of a long.
+ *
+ * @author Simon Baird
+ *
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * The number of buckets
+	 */
+	public static final int BUCKETS = 64;
+
+	private final long[] counts;
+
+	private final long totalNanos;
+
+	private final long count;
+
+	private LatencyHistogram(long[] counts, long totalNanos) {
+
+		this.counts = counts;
+		this.totalNanos = totalNanos;
+		this.count = Arrays.stream(counts).sum();
+	}
+
+	/**
+	 * Returns the bucket of a latency
+	 */
+	static int bucket(long nanos) {
+
+		return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(nanos));
+	}
+
+	/**
+	 * Returns the greatest latency counted by a bucket
+	 */
+	public static long upperBound(int bucket) {
+
+		return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+
+	/**
+	 * Returns the number of latencies recorded
+	 */
+	public long count() {
+
+		return count;
+	}
+
+	/**
+	 * Returns the number of latencies counted by a bucket
+	 */
+	public long count(int bucket) {
+
+		return counts[bucket];
+	}
+
+	/**
+	 * Returns the mean latency in nanoseconds, or zero if none are recorded
+	 */
+	public double mean() {
+
+		return count == 0 ? 0 : (double) totalNanos / count;
+	}
+
+	/**
+	 * Returns an upper bound of the latency at a percentile, i.e. the upper
+	 * bound of the bucket containing it
+	 *
+	 * @param fraction
+	 *            the percentile as a fraction, e.g. 0.99
+	 * @return the upper bound in nanoseconds, or zero if none are recorded
+	 */
+	public long percentile(double fraction) {
+
+		if (fraction < 0 || fraction > 1) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 1: " + fraction);
+		}
+		long rank = (long) Math.ceil(fraction * count);
+		long cumulative = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+
+			cumulative += counts[i];
+			if (cumulative >= rank && cumulative > 0) {
+				return upperBound(i);
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public String toString() {
+
+		return "LatencyHistogram [count=" + count + ", mean=" + mean() + ", p50=" + percentile(0.5) + ", p99="
+				+ percentile(0.99) + "]";
+	}
+
+	/**
+	 * Records latencies from many threads
+	 */
+	static final class Recorder {
+
+		private final LongAdder[] counts = new LongAdder[BUCKETS];
+
+		private final LongAdder totalNanos = new LongAdder();
+
+		Recorder() {
+
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] = new LongAdder();
+			}
+		}
+
+		void record(long nanos) {
+
+			counts[bucket(nanos)].increment();
+			totalNanos.add(Math.max(0, nanos));
+		}
+
+		LatencyHistogram snapshot() {
+
+			long[] snapshot = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++) {
+				snapshot[i] = counts[i].sum();
+			}
+			return new LatencyHistogram(snapshot, totalNanos.sum());
+		}
+	}
+}
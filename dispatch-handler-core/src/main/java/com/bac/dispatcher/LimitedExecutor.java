@@ -0,0 +1,145 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An Executor that limits the number of its tasks running at once on an
+ * underlying Executor.
+ *
+ * A task submitted while the limit is reached is queued and is handed to the
+ * underlying Executor when a running task completes. Neither submitting nor
+ * completing a task takes a lock or blocks, so a slow Visitor cannot stall
+ * the caller and the underlying Executor is never flooded with tasks that
+ * wait on the same resource.
+ *
+ * A queued task may be handed to the underlying Executor by any thread,
+ * including one completing an unrelated task, so a rejection is never thrown
+ * from here. A {@link Rejectable} task is told of its rejection, and any other
+ * task is queued again and retried when a task is next submitted or
+ * completed.
+ *
+ * @author Simon Baird
+ *
+ */
+final class LimitedExecutor implements Executor {
+
+	private final Executor executor;
+
+	private final int maxConcurrent;
+
+	private final Deque<Runnable> pending = new ConcurrentLinkedDeque<>();
+
+	private final AtomicInteger running = new AtomicInteger();
+
+	LimitedExecutor(Executor executor, int maxConcurrent) {
+
+		if (maxConcurrent < 1) {
+			throw new IllegalArgumentException("maxConcurrent must be at least one: " + maxConcurrent);
+		}
+		this.executor = Objects.requireNonNull(executor);
+		this.maxConcurrent = maxConcurrent;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+
+		pending.add(Objects.requireNonNull(task));
+		drain();
+	}
+
+	/*
+	 * Start pending tasks while there are permits. A task is always queued
+	 * before the permits are checked and a permit is always released before
+	 * the queue is checked, so a queued task cannot be overlooked.
+	 */
+	private void drain() {
+
+		for (;;) {
+
+			int count = running.get();
+			if (count >= maxConcurrent || pending.isEmpty()) {
+				return;
+			}
+			if (!running.compareAndSet(count, count + 1)) {
+				continue;
+			}
+			Runnable task = pending.poll();
+			if (task == null) {
+				running.decrementAndGet();
+				continue;
+			}
+			try {
+				executor.execute(() -> run(task));
+			} catch (RejectedExecutionException e) {
+				running.decrementAndGet();
+				if (task instanceof Rejectable) {
+					((Rejectable) task).reject(e);
+					continue;
+				}
+				pending.addFirst(task);
+				return;
+			}
+		}
+	}
+
+	private void run(Runnable task) {
+
+		try {
+			task.run();
+		} finally {
+			running.decrementAndGet();
+			drain();
+		}
+	}
+
+	/**
+	 * A task that is told when the underlying Executor rejects it, since the
+	 * rejection may occur on another thread after it was submitted
+	 */
+	interface Rejectable extends Runnable {
+
+		/**
+		 * Called in place of running the task
+		 *
+		 * @param e
+		 *            the exception thrown by the underlying Executor
+		 */
+		void reject(RejectedExecutionException e);
+	}
+}
@@ -0,0 +1,366 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Routes type tagged binary records from a ByteBuffer, e.g. a
+ * MappedByteBuffer over a journal file, to the methods of a Visitor without
+ * decoding each record to an object on the heap.
+ *
+ * Each record is framed by a header of two ints in the byte order of the
+ * buffer: the length of the record body and the type id, followed by the
+ * body. Records framed otherwise may be routed with the type id and bounds of
+ * the body given separately.
+ *
+ * Type ids range from zero to {@value #MAX_TYPE_ID}, the range of an unsigned
+ * short, and index an array of routes as large as the greatest id in use. A
+ * record with a greater type id is never routed. A type id is declared by a
+ * Visitor method annotated with
+ * {@link MessageType}, whose parameter is a {@link MessageView}, or by
+ * registering a view for it. One view is held for each type id and wrapped
+ * around every record of that type, and the view is then passed to the
+ * Visitor method resolved for its class exactly as if it had been dispatched
+ * by the DispatchHandler, so overloaded and default methods are selected in
+ * the same way. The method handles are resolved when a type id is first
+ * routed or registered, after which a record costs an array index, the wrap
+ * and one invocation, and allocates nothing. A record whose type id is neither
+ * declared nor registered is skipped by dispatch, and handle returns null for
+ * it, as for a target having no method of its own.
+ *
+ * A MessageRouter holds the views, so it is confined to a single thread and
+ * should be created once and reused. An exception thrown by the Visitor
+ * propagates unchanged.
+ *
+ * @author Simon Baird
+ *
+ * @param <T>
+ *            the return type of the Visitor's handle methods
+ */
+public final class MessageRouter<T> {
+
+	/**
+	 * The length in bytes of the header preceding the body of each record
+	 */
+	public static final int HEADER_LENGTH = 8;
+
+	/**
+	 * The greatest type id that may be declared or registered
+	 */
+	public static final int MAX_TYPE_ID = 0xFFFF;
+
+	private static final ClassValue<Class<?>[]> VIEW_CLASSES = new ClassValue<Class<?>[]>() {
+
+		@Override
+		protected Class<?>[] computeValue(Class<?> visitorClass) {
+
+			return viewClasses(visitorClass);
+		}
+	};
+
+	private final Visitor<?> visitor;
+
+	private final Class<?>[] viewClasses;
+
+	private Route[] routes;
+
+	/**
+	 * @param visitor
+	 *            the Visitor to which each record is passed
+	 * @throws IllegalArgumentException
+	 *             if a method annotated with {@link MessageType} is not a
+	 *             dispatch or handle method accepting a MessageView, declares
+	 *             a type id out of range, or two methods declare the same type
+	 *             id with different views
+	 */
+	public MessageRouter(Visitor<?> visitor) {
+
+		this.visitor = Objects.requireNonNull(visitor);
+		this.viewClasses = VIEW_CLASSES.get(visitor.getClass());
+		this.routes = new Route[viewClasses.length];
+	}
+
+	/**
+	 * Register the view wrapped around the records of a type id, in place of
+	 * an instance of the view class declared by the Visitor, e.g. where that
+	 * class has no public no argument constructor. A type id not declared by
+	 * the Visitor may also be registered, and its records are passed to the
+	 * method resolved for the class of the view.
+	 *
+	 * @param typeId
+	 *            the type id of the records, from zero to
+	 *            {@value #MAX_TYPE_ID}
+	 * @param view
+	 *            the view wrapped around each record of the type
+	 * @return this router
+	 * @throws IllegalArgumentException
+	 *             if the type id is out of range, or the view is not an
+	 *             instance of the view class declared for the type id
+	 */
+	public MessageRouter<T> register(int typeId, MessageView view) {
+
+		checkTypeId(typeId, String.valueOf(typeId));
+		Class<?> declared = typeId < viewClasses.length ? viewClasses[typeId] : null;
+		if (declared != null && !declared.isInstance(view)) {
+			throw new IllegalArgumentException("Type id " + typeId + " requires a view of " + declared.getName()
+					+ ": " + view.getClass().getName());
+		}
+		if (typeId >= routes.length) {
+			routes = Arrays.copyOf(routes, typeId + 1);
+		}
+		routes[typeId] = route(view);
+		return this;
+	}
+
+	/**
+	 * Forward the record at the offset to the Visitor.
+	 *
+	 * @param buffer
+	 *            the buffer holding the record, which is not modified
+	 * @param offset
+	 *            the absolute index of the record header
+	 * @return the index of the byte following the record
+	 * @throws IllegalArgumentException
+	 *             if the header holds a negative length
+	 */
+	public int dispatch(ByteBuffer buffer, int offset) {
+
+		int length = length(buffer, offset);
+		dispatch(buffer.getInt(offset + 4), buffer, offset + HEADER_LENGTH, length);
+		return offset + HEADER_LENGTH + length;
+	}
+
+	/**
+	 * Forward every complete record between the position and the limit of the
+	 * buffer to the Visitor, in order. The position of the buffer is not
+	 * changed, so that the records may be read again.
+	 *
+	 * @param buffer
+	 *            the buffer holding the records
+	 * @return the index of the first byte following the last complete record,
+	 *         from which a partial record may be read once the rest of it is
+	 *         available
+	 */
+	public int dispatchAll(ByteBuffer buffer) {
+
+		int offset = buffer.position();
+		int limit = buffer.limit();
+		while (limit - offset >= HEADER_LENGTH && limit - offset - HEADER_LENGTH >= length(buffer, offset)) {
+			offset = dispatch(buffer, offset);
+		}
+		return offset;
+	}
+
+	/**
+	 * Forward a record body of the given type id to the Visitor, for records
+	 * framed other than by the header of this router.
+	 *
+	 * @param typeId
+	 *            the type id of the record
+	 * @param buffer
+	 *            the buffer holding the record, which is not modified
+	 * @param offset
+	 *            the absolute index of the first byte of the record body
+	 * @param length
+	 *            the number of bytes in the record body
+	 */
+	public void dispatch(int typeId, ByteBuffer buffer, int offset, int length) {
+
+		Route route = route(typeId);
+		if (route == null) {
+			return;
+		}
+		MessageView view = route.view;
+		view.wrap(buffer, offset, length);
+		try {
+			route.dispatch.invokeExact(visitor, (Object) view);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	/**
+	 * Returns the output from calling the handle method of the Visitor for
+	 * the record at the offset.
+	 *
+	 * @param buffer
+	 *            the buffer holding the record, which is not modified
+	 * @param offset
+	 *            the absolute index of the record header
+	 * @return the value returned from the Visitor method
+	 * @throws IllegalArgumentException
+	 *             if the header holds a negative length
+	 */
+	public T handle(ByteBuffer buffer, int offset) {
+
+		return handle(buffer.getInt(offset + 4), buffer, offset + HEADER_LENGTH, length(buffer, offset));
+	}
+
+	/**
+	 * Returns the output from calling the handle method of the Visitor for a
+	 * record body of the given type id, for records framed other than by the
+	 * header of this router.
+	 *
+	 * @param typeId
+	 *            the type id of the record
+	 * @param buffer
+	 *            the buffer holding the record, which is not modified
+	 * @param offset
+	 *            the absolute index of the first byte of the record body
+	 * @param length
+	 *            the number of bytes in the record body
+	 * @return the value returned from the Visitor method, or null if the type
+	 *         id is neither declared nor registered
+	 */
+	@SuppressWarnings("unchecked")
+	public T handle(int typeId, ByteBuffer buffer, int offset, int length) {
+
+		Route route = route(typeId);
+		if (route == null) {
+			return null;
+		}
+		MessageView view = route.view;
+		view.wrap(buffer, offset, length);
+		try {
+			return (T) route.handle.invokeExact(visitor, (Object) view);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	private static void checkTypeId(int typeId, String description) {
+
+		if (typeId < 0 || typeId > MAX_TYPE_ID) {
+			throw new IllegalArgumentException("Type ids must be from 0 to " + MAX_TYPE_ID + ": " + description);
+		}
+	}
+
+	private static int length(ByteBuffer buffer, int offset) {
+
+		int length = buffer.getInt(offset);
+		if (length < 0) {
+			throw new IllegalArgumentException("Invalid record length " + length + " at " + offset);
+		}
+		return length;
+	}
+
+	private Route route(int typeId) {
+
+		Route[] routes = this.routes;
+		if (typeId < 0 || typeId >= routes.length) {
+			return null;
+		}
+		Route route = routes[typeId];
+		if (route == null && typeId < viewClasses.length && viewClasses[typeId] != null) {
+			route = routes[typeId] = route(instantiate(typeId, viewClasses[typeId]));
+		}
+		return route;
+	}
+
+	private Route route(MessageView view) {
+
+		Class<?> visitorClass = visitor.getClass();
+		Class<?> viewClass = view.getClass();
+		return new Route(view, DispatchEngine.dispatchTable(visitorClass).lookup(viewClass),
+				DispatchEngine.handleTable(visitorClass).lookup(viewClass));
+	}
+
+	private static MessageView instantiate(int typeId, Class<?> viewClass) {
+
+		try {
+			return (MessageView) viewClass.getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to create a view for type id " + typeId
+					+ "; register an instance of " + viewClass.getName(), e);
+		}
+	}
+
+	/**
+	 * Returns the view classes declared by the Visitor class, indexed by type
+	 * id
+	 */
+	private static Class<?>[] viewClasses(Class<?> visitorClass) {
+
+		Class<?>[] viewClasses = new Class<?>[0];
+		for (Method method : visitorClass.getMethods()) {
+			MessageType type = method.getAnnotation(MessageType.class);
+			if (type == null) {
+				continue;
+			}
+			Class<?>[] parameters = method.getParameterTypes();
+			if (Modifier.isStatic(method.getModifiers()) || parameters.length != 1
+					|| !MessageView.class.isAssignableFrom(parameters[0])
+					|| !(method.getName().equals("dispatch") || method.getName().equals("handle"))) {
+				throw new IllegalArgumentException(
+						"A message type must be declared by a dispatch or handle method accepting a MessageView: "
+								+ method);
+			}
+			int typeId = type.value();
+			checkTypeId(typeId, typeId + " declared by " + method);
+			if (typeId >= viewClasses.length) {
+				viewClasses = Arrays.copyOf(viewClasses, typeId + 1);
+			}
+			if (viewClasses[typeId] != null && viewClasses[typeId] != parameters[0]) {
+				throw new IllegalArgumentException("Type id " + typeId + " is declared for both "
+						+ viewClasses[typeId].getName() + " and " + parameters[0].getName());
+			}
+			viewClasses[typeId] = parameters[0];
+		}
+		return viewClasses;
+	}
+
+	/**
+	 * The view of a type id with the handles of the methods resolved for its
+	 * class
+	 */
+	private static final class Route {
+
+		private final MessageView view;
+
+		private final MethodHandle dispatch;
+
+		private final MethodHandle handle;
+
+		Route(MessageView view, MethodHandle dispatch, MethodHandle handle) {
+
+			this.view = view;
+			this.dispatch = dispatch;
+			this.handle = handle;
+		}
+	}
+}
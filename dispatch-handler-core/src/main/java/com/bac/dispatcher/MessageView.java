@@ -0,0 +1,60 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A reusable flyweight over a binary record, which reads the fields of the
+ * record directly from the buffer rather than copying them to the heap.
+ * 
+ * A {@link MessageRouter} wraps the same view instance around every record of
+ * its type id, so a view is valid only for the duration of the Visitor call
+ * to which it is passed and must be copied if its contents are to be kept.
+ * 
+ * @author Simon Baird
+ *
+ */
+public interface MessageView {
+
+	/**
+	 * Position the view over a record.
+	 * 
+	 * @param buffer
+	 *            the buffer holding the record, which is not modified
+	 * @param offset
+	 *            the absolute index of the first byte of the record body
+	 * @param length
+	 *            the number of bytes in the record body
+	 */
+	void wrap(ByteBuffer buffer, int offset, int length);
+}
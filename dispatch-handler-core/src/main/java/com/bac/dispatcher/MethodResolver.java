@@ -0,0 +1,334 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Selects the most appropriate overloaded Visitor method for a target class.
+ *
+ * The candidate methods are the public, single argument instance methods of
+ * a given name on the concrete Visitor class, excluding {@link Guard guarded}
+ * methods. For a target class the supertypes are ranked in the order
+ *
+ * 	the target class and its superclasses, narrowest first
+ * 	the interfaces implemented by the target, narrowest first
+ * 	Object
+ *
+ * while an array of references, e.g. a String[], is ranked as
+ *
+ * 	arrays of the ranked supertypes of its component type, e.g. String[],
+ * 	CharSequence[] and Object[]
+ * 	Cloneable and Serializable
+ * 	Object
+ *
+ * and the candidate whose parameter type ranks highest is selected. As every
+ * Visitor inherits the default dispatch(Object) and handle(Object) methods the
+ * lower bound is always the default method in the Visitor interface.
+ *
+ * A boxed target may also be routed to a method accepting the equivalent
+ * primitive, e.g. an Integer to dispatch(int), where no method accepts the
+ * wrapper class itself.
+ *
+ * @author Simon Baird
+ *
+ */
+final class MethodResolver {
+
+	private static final Map<Class<?>, Class<?>> PRIMITIVES = new HashMap<>();
+
+	static {
+		PRIMITIVES.put(Boolean.class, boolean.class);
+		PRIMITIVES.put(Byte.class, byte.class);
+		PRIMITIVES.put(Character.class, char.class);
+		PRIMITIVES.put(Short.class, short.class);
+		PRIMITIVES.put(Integer.class, int.class);
+		PRIMITIVES.put(Long.class, long.class);
+		PRIMITIVES.put(Float.class, float.class);
+		PRIMITIVES.put(Double.class, double.class);
+	}
+
+	private MethodResolver() {
+	}
+
+	/**
+	 * Returns the methods of the given name on the Visitor class that are
+	 * eligible for dynamic selection
+	 *
+	 * @param visitorClass
+	 *            the concrete Visitor class
+	 * @param name
+	 *            the method name, i.e. dispatch or handle
+	 * @return the candidate methods
+	 */
+	static List<Method> candidates(Class<?> visitorClass, String name) {
+
+		return candidates(visitorClass, name, 1);
+	}
+
+	/**
+	 * Returns the methods of the given name and number of parameters on the
+	 * Visitor class that are eligible for dynamic selection
+	 *
+	 * @param visitorClass
+	 *            the concrete Visitor class
+	 * @param name
+	 *            the method name, i.e. dispatch or handle
+	 * @param arity
+	 *            the number of parameters
+	 * @return the candidate methods
+	 */
+	static List<Method> candidates(Class<?> visitorClass, String name, int arity) {
+
+		List<Method> candidates = new ArrayList<>();
+		for (Method method : visitorClass.getMethods()) {
+
+			if (method.getName().equals(name) && method.getParameterCount() == arity && !method.isBridge()
+					&& !method.isSynthetic() && !Modifier.isStatic(method.getModifiers())
+					&& !method.isAnnotationPresent(Guard.class)) {
+				candidates.add(method);
+			}
+		}
+		return Collections.unmodifiableList(candidates);
+	}
+
+	/**
+	 * Returns the candidate method that most closely matches the target class
+	 *
+	 * @param candidates
+	 *            the methods supplied by {@link #candidates(Class, String)}
+	 * @param target
+	 *            the runtime class of the target object
+	 * @return the selected method
+	 * @throws IllegalArgumentException
+	 *             if no candidate accepts the target class
+	 */
+	static Method resolve(List<Method> candidates, Class<?> target) {
+
+		List<Class<?>> ranking = rank(target);
+		Method selected = null;
+		int selectedRank = Integer.MAX_VALUE;
+		for (Method method : candidates) {
+
+			int rank = rankOf(ranking, method.getParameterTypes()[0]);
+			if (rank < selectedRank) {
+				selected = method;
+				selectedRank = rank;
+			}
+		}
+		if (selected == null) {
+			throw new IllegalArgumentException("No method accepts " + target.getName());
+		}
+		return selected;
+	}
+
+	/**
+	 * Returns the candidate method that most closely matches the target
+	 * classes as a whole, i.e. the method accepting every target with the
+	 * least sum of the ranks of its parameters. Where two methods have the
+	 * same sum the method more closely matching the first target at which
+	 * they differ is selected, so that the leftmost argument is the most
+	 * significant.
+	 *
+	 * @param candidates
+	 *            the methods supplied by {@link #candidates(Class, String, int)}
+	 * @param targets
+	 *            the runtime classes of the target objects
+	 * @return the selected method
+	 * @throws IllegalArgumentException
+	 *             if no candidate accepts the target classes
+	 */
+	static Method resolve(List<Method> candidates, Class<?>[] targets) {
+
+		List<List<Class<?>>> rankings = new ArrayList<>(targets.length);
+		for (Class<?> target : targets) {
+			rankings.add(rank(target));
+		}
+		Method selected = null;
+		int[] selectedRanks = null;
+		long selectedSum = Long.MAX_VALUE;
+		for (Method method : candidates) {
+
+			Class<?>[] parameters = method.getParameterTypes();
+			int[] ranks = new int[targets.length];
+			long sum = 0;
+			for (int i = 0; i < targets.length && sum != Long.MAX_VALUE; i++) {
+
+				ranks[i] = rankOf(rankings.get(i), parameters[i]);
+				sum = ranks[i] == Integer.MAX_VALUE ? Long.MAX_VALUE : sum + ranks[i];
+			}
+			if (sum < selectedSum || (sum == selectedSum && sum != Long.MAX_VALUE
+					&& compare(ranks, selectedRanks) < 0)) {
+				selected = method;
+				selectedRanks = ranks;
+				selectedSum = sum;
+			}
+		}
+		if (selected == null) {
+			StringBuilder names = new StringBuilder();
+			for (Class<?> target : targets) {
+				names.append(names.length() == 0 ? "" : ", ").append(target.getName());
+			}
+			throw new IllegalArgumentException("No method accepts (" + names + ")");
+		}
+		return selected;
+	}
+
+	private static int compare(int[] ranks, int[] others) {
+
+		for (int i = 0; i < ranks.length; i++) {
+			if (ranks[i] != others[i]) {
+				return Integer.compare(ranks[i], others[i]);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the position of a parameter type in the ranking of the target
+	 * class or Integer.MAX_VALUE if the parameter does not accept the target
+	 */
+	static int rankOf(List<Class<?>> ranking, Class<?> parameter) {
+
+		int rank = ranking.indexOf(parameter);
+		return rank >= 0 ? rank : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the supertypes of the target class in order of preference. The
+	 * last entry is always Object
+	 *
+	 * @param target
+	 *            the runtime class of the target object
+	 * @return the ranked list of supertypes
+	 */
+	static List<Class<?>> rank(Class<?> target) {
+
+		if (target.isArray() && !target.getComponentType().isPrimitive()) {
+			return rankArray(target);
+		}
+		List<Class<?>> ranking = new ArrayList<>();
+		Set<Class<?>> interfaces = new LinkedHashSet<>();
+		for (Class<?> c = target; c != null && c != Object.class; c = c.getSuperclass()) {
+
+			ranking.add(c);
+			Class<?> primitive = PRIMITIVES.get(c);
+			if (primitive != null) {
+				ranking.add(primitive);
+			}
+			collectInterfaces(c, interfaces);
+		}
+		ranking.addAll(narrowestFirst(interfaces));
+		ranking.add(Object.class);
+		return ranking;
+	}
+
+	/*
+	 * An array of references is also an array of each supertype of its
+	 * component type, all of which are narrower than the interfaces of every
+	 * array
+	 */
+	private static List<Class<?>> rankArray(Class<?> target) {
+
+		List<Class<?>> ranking = new ArrayList<>();
+		for (Class<?> component : rank(target.getComponentType())) {
+			if (!component.isPrimitive()) {
+				ranking.add(Array.newInstance(component, 0).getClass());
+			}
+		}
+		ranking.addAll(Arrays.asList(target.getInterfaces()));
+		ranking.add(Object.class);
+		return ranking;
+	}
+
+	/**
+	 * Returns the wrapper class for a primitive type or the type itself
+	 */
+	static Class<?> box(Class<?> type) {
+
+		if (type.isPrimitive()) {
+			for (Map.Entry<Class<?>, Class<?>> entry : PRIMITIVES.entrySet()) {
+				if (entry.getValue() == type) {
+					return entry.getKey();
+				}
+			}
+		}
+		return type;
+	}
+
+	/*
+	 * Breadth first collection of the interfaces declared on the given class
+	 */
+	private static void collectInterfaces(Class<?> c, Set<Class<?>> interfaces) {
+
+		List<Class<?>> pending = new ArrayList<>();
+		Collections.addAll(pending, c.getInterfaces());
+		for (int i = 0; i < pending.size(); i++) {
+
+			Class<?> type = pending.get(i);
+			if (interfaces.add(type)) {
+				Collections.addAll(pending, type.getInterfaces());
+			}
+		}
+	}
+
+	/*
+	 * Stable reordering so that a sub-interface always precedes the interfaces
+	 * it extends
+	 */
+	private static List<Class<?>> narrowestFirst(Set<Class<?>> interfaces) {
+
+		List<Class<?>> ordered = new ArrayList<>(interfaces.size());
+		for (Class<?> type : interfaces) {
+
+			int position = ordered.size();
+			for (int i = 0; i < ordered.size(); i++) {
+				if (ordered.get(i).isAssignableFrom(type)) {
+					position = i;
+					break;
+				}
+			}
+			ordered.add(position, type);
+		}
+		return ordered;
+	}
+}
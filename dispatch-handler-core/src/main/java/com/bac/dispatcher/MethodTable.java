@@ -0,0 +1,402 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The resolved dispatch or handle methods of a single Visitor class.
+ *
+ * Each target class is resolved once by the {@link MethodResolver} and the
+ * selected method is bound to a MethodHandle of a common type so that
+ * subsequent calls with the same target class are a map lookup followed by a
+ * direct invocation. Where a {@link GeneratedDispatcher} has been generated
+ * for the Visitor class at compile time it is used for every target class
+ * and no resolution takes place.
+ *
+ * A target class for which the Visitor has no method, and which would be
+ * passed to the default Object method of the Visitor interface, is recorded
+ * against a constant handle that does nothing, or returns null, without
+ * calling the Visitor at all. Where the Visitor declares no methods of its own
+ * that handle is returned for every target class without a map lookup.
+ *
+ * Where the Visitor has {@link Guard guarded} methods the handle bound for a
+ * target class is the {@link GuardChain} of the guarded methods applicable
+ * to it, ending with the method otherwise selected.
+ *
+ * Resolved handles are read without a lock. A target class missed by several
+ * threads at once is resolved by only one of them, the others waiting for its
+ * result, so a burst of new target classes at startup does not repeat the
+ * resolution work in every thread.
+ *
+ * A table is held by its Visitor class and so must not strongly reference a
+ * target class from a class loader that the Visitor cannot see, e.g. a web
+ * application class visited by a Visitor in a shared library. Such targets
+ * are instead cached against the target class itself so that either class
+ * loader can be collected independently of the other.
+ *
+ * @author Simon Baird
+ *
+ */
+final class MethodTable {
+
+	/**
+	 * The method handle type of a resolved dispatch method
+	 */
+	static final MethodType DISPATCH_TYPE = MethodType.methodType(void.class, Visitor.class, Object.class);
+
+	/**
+	 * The method handle type of a resolved handle method
+	 */
+	static final MethodType HANDLE_TYPE = MethodType.methodType(Object.class, Visitor.class, Object.class);
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private final Class<?> visitorClass;
+
+	private final ClassLoader loader;
+
+	private final List<Method> candidates;
+
+	private final MethodType type;
+
+	private final MethodHandle fixed;
+
+	private final MethodHandle fallback;
+
+	private final List<GuardChain.Guarded> guarded;
+
+	private final ConcurrentHashMap<Class<?>, MethodHandle> handles = new ConcurrentHashMap<>();
+
+	private final SingleFlight<Class<?>, MethodHandle> flights = new SingleFlight<>();
+
+	private final ClassValue<MethodHandle> foreignHandles = new ClassValue<MethodHandle>() {
+
+		@Override
+		protected MethodHandle computeValue(Class<?> target) {
+
+			return bind(target);
+		}
+	};
+
+	/**
+	 * @param visitorClass
+	 *            the concrete Visitor class
+	 * @param name
+	 *            the overloaded method name
+	 * @param type
+	 *            the type of the bound handles, (Visitor, Object) returning
+	 *            void for dispatch methods, or returning Object or a
+	 *            primitive for handle methods
+	 */
+	MethodTable(Class<?> visitorClass, String name, MethodType type) {
+
+		this.visitorClass = visitorClass;
+		this.loader = visitorClass.getClassLoader();
+		this.candidates = MethodResolver.candidates(visitorClass, name);
+		this.type = type;
+		this.fallback = nothing(type);
+		this.guarded = GuardChain.guarded(visitorClass, type.returnType() == void.class);
+		if (!guarded.isEmpty()) {
+			this.fixed = null;
+		} else {
+			MethodHandle generated = generated(visitorClass, name, type);
+			this.fixed = generated != null ? generated : declaresNone(candidates) ? fallback : null;
+		}
+	}
+
+	/**
+	 * Returns the MethodHandle for the method most appropriate to the target
+	 * class
+	 *
+	 * @param target
+	 *            the runtime class of the target object
+	 * @return a MethodHandle of this table's type
+	 */
+	MethodHandle lookup(Class<?> target) {
+
+		DispatchMetrics.Recorder recorder = DispatchMetrics.recorder;
+		if (recorder != null) {
+			recorder.lookup(visitorClass);
+		}
+		if (fixed != null) {
+			return fixed;
+		}
+		MethodHandle handle = handles.get(target);
+		if (handle == null) {
+			handle = resolve(target);
+		}
+		return handle;
+	}
+
+	/**
+	 * Returns the MethodHandle for the method most appropriate to the target
+	 * class as resolved at run time, even where the table has a generated
+	 * dispatcher
+	 *
+	 * @param target
+	 *            the runtime class of the target object
+	 * @return a MethodHandle of this table's type
+	 */
+	MethodHandle resolved(Class<?> target) {
+
+		MethodHandle handle = handles.get(target);
+		if (handle == null) {
+			handle = resolve(target);
+		}
+		return handle;
+	}
+
+	/**
+	 * Returns the Visitor method most appropriate to the target class, which
+	 * is resolved afresh without reference to this table
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the Visitor has no method for the target
+	 */
+	Method method(Class<?> target) {
+
+		return MethodResolver.resolve(candidates, target);
+	}
+
+	/**
+	 * Binds a method already resolved for the target class into this table,
+	 * without resolving it again, unless the target class is already bound
+	 *
+	 * @param target
+	 *            the runtime class of the target object
+	 * @param method
+	 *            the method that {@link #method(Class)} returned for the
+	 *            target class
+	 */
+	void prepare(Class<?> target, Method method) {
+
+		if (fixed != null) {
+			return;
+		}
+		if (!isVisible(target, loader)) {
+			foreignHandles.get(target);
+			return;
+		}
+		flights.resolve(target, () -> handles.get(target), () -> publish(target, method));
+	}
+
+	/**
+	 * Returns the target classes whose methods have been resolved into this
+	 * table, excluding any not visible from the Visitor's class loader
+	 */
+	List<Class<?>> resolvedTargets() {
+
+		return new ArrayList<>(handles.keySet());
+	}
+
+	/**
+	 * Returns true if the Visitor has a method of its own for the target
+	 * class, rather than the default Object method of the Visitor interface.
+	 * A generated dispatcher is bound for every target class, so the method
+	 * is then resolved afresh.
+	 */
+	boolean hasMethod(Class<?> target) {
+
+		if (fixed == null) {
+			return !isFallback(lookup(target));
+		}
+		return fixed != fallback && !isDefault(method(target));
+	}
+
+	/**
+	 * Returns true if the MethodHandle was resolved to the default Object
+	 * method of the Visitor interface, and so calls nothing
+	 */
+	boolean isFallback(MethodHandle handle) {
+
+		return handle == fallback;
+	}
+
+	private MethodHandle resolve(Class<?> target) {
+
+		if (!isVisible(target, loader)) {
+			return foreignHandles.get(target);
+		}
+		return flights.resolve(target, () -> handles.get(target), () -> publish(target, null));
+	}
+
+	private MethodHandle publish(Class<?> target, Method method) {
+
+		MethodHandle handle = bind(target, method);
+		handles.put(target, handle);
+		return handle;
+	}
+
+	private MethodHandle bind(Class<?> target) {
+
+		return bind(target, null);
+	}
+
+	/*
+	 * Bind the method resolved for the target class, resolving it first
+	 * unless it is given
+	 */
+	private MethodHandle bind(Class<?> target, Method resolved) {
+
+		long start = System.nanoTime();
+		Method method = resolved != null ? resolved : MethodResolver.resolve(candidates, target);
+		MethodHandle handle = isDefault(method) ? fallback : adapt(unreflect(method), type);
+		if (!guarded.isEmpty()) {
+			handle = GuardChain.chain(guarded, target, method, handle, type);
+		}
+		DispatchMetrics.Recorder recorder = DispatchMetrics.recorder;
+		if (recorder != null) {
+			recorder.resolved(visitorClass, target, System.nanoTime() - start);
+		}
+		return handle;
+	}
+
+	/*
+	 * Returns the method of the Visitor's generated dispatcher bound to an
+	 * instance of the dispatcher or null if none has been generated
+	 */
+	private static MethodHandle generated(Class<?> visitorClass, String name, MethodType type) {
+
+		Class<?> dispatcherClass;
+		try {
+			dispatcherClass = Class.forName(GeneratedDispatchProcessor.dispatcherName(visitorClass.getName()), true,
+					visitorClass.getClassLoader());
+		} catch (ClassNotFoundException | LinkageError e) {
+			return null;
+		}
+		if (!GeneratedDispatcher.class.isAssignableFrom(dispatcherClass)) {
+			return null;
+		}
+		try {
+			Object dispatcher = dispatcherClass.getConstructor().newInstance();
+			MethodType generatedType = type.returnType() == void.class ? DISPATCH_TYPE : HANDLE_TYPE;
+			return adapt(LOOKUP.findVirtual(GeneratedDispatcher.class, name, generatedType).bindTo(dispatcher),
+					type);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to use " + dispatcherClass.getName(), e);
+		}
+	}
+
+	/**
+	 * Returns true if the class is defined by the loader or one of its
+	 * ancestors, in which case referencing it from the loader's classes
+	 * cannot prevent it being unloaded
+	 */
+	static boolean isVisible(Class<?> type, ClassLoader loader) {
+
+		ClassLoader typeLoader = type.getClassLoader();
+		if (typeLoader == null) {
+			return true;
+		}
+		for (ClassLoader l = loader; l != null; l = l.getParent()) {
+			if (l == typeLoader) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the method is a default method of the Visitor interface
+	 * that has not been overridden, which does nothing or returns null
+	 */
+	static boolean isDefault(Method method) {
+
+		return method.getDeclaringClass() == Visitor.class;
+	}
+
+	/**
+	 * Returns a MethodHandle of the given type in place of a default method
+	 * of the Visitor interface, which ignores its arguments and does nothing
+	 * or returns null
+	 */
+	static MethodHandle nothing(MethodType type) {
+
+		MethodHandle constant = MethodHandles.constant(Object.class, null);
+		return adapt(MethodHandles.dropArguments(constant, 0, type.parameterList()), type);
+	}
+
+	private static boolean declaresNone(List<Method> candidates) {
+
+		for (Method method : candidates) {
+			if (!isDefault(method)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the MethodHandle adapted to the type, boxing, unboxing and
+	 * widening the parameter and return value as required. A return value
+	 * that cannot be converted to the return type, e.g. a String returned
+	 * where a long is required, throws a ClassCastException when the handle
+	 * is invoked rather than here.
+	 */
+	static MethodHandle adapt(MethodHandle handle, MethodType type) {
+
+		try {
+			return handle.asType(type);
+		} catch (WrongMethodTypeException e) {
+			if (handle.type().returnType() == void.class) {
+				throw e;
+			}
+			return handle.asType(handle.type().changeReturnType(Object.class)).asType(type);
+		}
+	}
+
+	/*
+	 * Visitor classes are frequently package private, as in the tests, so the
+	 * access check is suppressed in the same way as the Groovy runtime
+	 */
+	static MethodHandle unreflect(Method method) {
+
+		try {
+			method.setAccessible(true);
+		} catch (RuntimeException e) {
+			// Fall back to the lookup's own access rights
+		}
+		try {
+			return LOOKUP.unreflect(method);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Unable to access " + method, e);
+		}
+	}
+}
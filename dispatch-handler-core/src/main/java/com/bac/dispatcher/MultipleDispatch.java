@@ -0,0 +1,117 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Routes a pair of target objects to the two argument dispatch or handle
+ * method of a Visitor most appropriate to both of them, e.g. the
+ * handle(Circle, Square) method of a collision Visitor.
+ *
+ * Each argument is ranked as a single target would be and the method with
+ * the least sum of ranks is selected; see
+ * {@link MethodResolver#resolve(java.util.List, Class[])}. The pairs are
+ * resolved once for each Visitor class and pair of target classes and held in
+ * a {@link PairTable}. A null target is treated as an Object.
+ *
+ * @author Simon Baird
+ *
+ */
+final class MultipleDispatch {
+
+	private static final ClassValue<PairTable> DISPATCH_TABLES = new ClassValue<PairTable>() {
+
+		@Override
+		protected PairTable computeValue(Class<?> visitorClass) {
+
+			return new PairTable(visitorClass, "dispatch", PairTable.DISPATCH_TYPE);
+		}
+	};
+
+	private static final ClassValue<PairTable> HANDLE_TABLES = new ClassValue<PairTable>() {
+
+		@Override
+		protected PairTable computeValue(Class<?> visitorClass) {
+
+			return new PairTable(visitorClass, "handle", PairTable.HANDLE_TYPE);
+		}
+	};
+
+	private MultipleDispatch() {
+	}
+
+	/**
+	 * Invoke the two argument dispatch method of the Visitor most appropriate
+	 * to the targets
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param a
+	 *            the first target object, may be null
+	 * @param b
+	 *            the second target object, may be null
+	 */
+	static void dispatch(Visitor<?> v, Object a, Object b) {
+
+		MethodHandle handle = DISPATCH_TABLES.get(v.getClass()).lookup(DispatchEngine.targetClass(a),
+				DispatchEngine.targetClass(b));
+		try {
+			handle.invokeExact(v, a, b);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	/**
+	 * Invoke the two argument handle method of the Visitor most appropriate to
+	 * the targets
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param a
+	 *            the first target object, may be null
+	 * @param b
+	 *            the second target object, may be null
+	 * @return the value returned by the Visitor
+	 */
+	static Object handle(Visitor<?> v, Object a, Object b) {
+
+		MethodHandle handle = HANDLE_TABLES.get(v.getClass()).lookup(DispatchEngine.targetClass(a),
+				DispatchEngine.targetClass(b));
+		try {
+			return (Object) handle.invokeExact(v, a, b);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+}
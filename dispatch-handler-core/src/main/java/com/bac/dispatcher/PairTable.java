@@ -0,0 +1,163 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The resolved two argument dispatch or handle methods of a single Visitor
+ * class.
+ *
+ * The methods are held in a two level table keyed by the class of the first
+ * target and then of the second, so that once a pair of classes has been
+ * resolved a call costs two map lookups and the MethodHandle invocation.
+ *
+ * As with the single argument {@link MethodTable} the table must not hold a
+ * target class that the Visitor's class loader cannot see. A pair including
+ * such a class is instead cached against that class, so that its class loader
+ * can be collected independently of the Visitor's. Otherwise a pair missed by
+ * several threads at once is resolved by only one of them.
+ *
+ * @author Simon Baird
+ *
+ */
+final class PairTable {
+
+	/**
+	 * The method handle type of a resolved two argument dispatch method
+	 */
+	static final MethodType DISPATCH_TYPE = MethodType.methodType(void.class, Visitor.class, Object.class,
+			Object.class);
+
+	/**
+	 * The method handle type of a resolved two argument handle method
+	 */
+	static final MethodType HANDLE_TYPE = MethodType.methodType(Object.class, Visitor.class, Object.class,
+			Object.class);
+
+	private final ClassLoader loader;
+
+	private final List<Method> candidates;
+
+	private final MethodType type;
+
+	private final ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, MethodHandle>> handles =
+			new ConcurrentHashMap<>();
+
+	private final SingleFlight<List<Class<?>>, MethodHandle> flights = new SingleFlight<>();
+
+	/**
+	 * Pairs whose first class is not visible to the Visitor, keyed by that
+	 * class and then by the second
+	 */
+	private final ClassValue<ConcurrentHashMap<Class<?>, MethodHandle>> foreignFirst = new ForeignRows();
+
+	/**
+	 * Pairs whose second class alone is not visible to the Visitor, keyed by
+	 * that class and then by the first
+	 */
+	private final ClassValue<ConcurrentHashMap<Class<?>, MethodHandle>> foreignSecond = new ForeignRows();
+
+	/**
+	 * @param visitorClass
+	 *            the concrete Visitor class
+	 * @param name
+	 *            the overloaded method name
+	 * @param type
+	 *            either {@link #DISPATCH_TYPE} or {@link #HANDLE_TYPE}
+	 */
+	PairTable(Class<?> visitorClass, String name, MethodType type) {
+
+		this.loader = visitorClass.getClassLoader();
+		this.candidates = MethodResolver.candidates(visitorClass, name, 2);
+		this.type = type;
+	}
+
+	/**
+	 * Returns the MethodHandle for the method most appropriate to the pair of
+	 * target classes
+	 *
+	 * @param a
+	 *            the runtime class of the first target
+	 * @param b
+	 *            the runtime class of the second target
+	 * @return a MethodHandle of this table's type
+	 */
+	MethodHandle lookup(Class<?> a, Class<?> b) {
+
+		ConcurrentHashMap<Class<?>, MethodHandle> row = handles.get(a);
+		if (row != null) {
+			MethodHandle handle = row.get(b);
+			if (handle != null) {
+				return handle;
+			}
+		}
+		return resolve(a, b);
+	}
+
+	private MethodHandle resolve(Class<?> a, Class<?> b) {
+
+		if (!MethodTable.isVisible(a, loader)) {
+			return foreignFirst.get(a).computeIfAbsent(b, c -> bind(a, c));
+		}
+		if (!MethodTable.isVisible(b, loader)) {
+			return foreignSecond.get(b).computeIfAbsent(a, c -> bind(c, b));
+		}
+		ConcurrentHashMap<Class<?>, MethodHandle> row = handles.computeIfAbsent(a, c -> new ConcurrentHashMap<>());
+		return flights.resolve(Arrays.asList(a, b), () -> row.get(b), () -> {
+			MethodHandle handle = bind(a, b);
+			row.put(b, handle);
+			return handle;
+		});
+	}
+
+	private MethodHandle bind(Class<?> a, Class<?> b) {
+
+		Method method = MethodResolver.resolve(candidates, new Class<?>[] { a, b });
+		return MethodTable.isDefault(method) ? MethodTable.nothing(type)
+				: MethodTable.adapt(MethodTable.unreflect(method), type);
+	}
+
+	private static final class ForeignRows extends ClassValue<ConcurrentHashMap<Class<?>, MethodHandle>> {
+
+		@Override
+		protected ConcurrentHashMap<Class<?>, MethodHandle> computeValue(Class<?> type) {
+
+			return new ConcurrentHashMap<>();
+		}
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Dispatches the targets of a Spliterator to a Visitor in parallel.
+ *
+ * The Spliterator is split recursively into tasks executed by a ForkJoinPool.
+ * Each leaf task obtains its Visitor from a supplier and accumulates its
+ * results into its own container, and the containers of sibling tasks are
+ * combined in encounter order as the tasks complete, so no lock is shared
+ * between the workers.
+ *
+ * @author Simon Baird
+ *
+ */
+final class ParallelDispatch {
+
+	/**
+	 * The number of leaf tasks created for each thread of the pool, allowing
+	 * for uneven splits and uneven work
+	 */
+	private static final int TASKS_PER_THREAD = 4;
+
+	/**
+	 * The number of targets a leaf task dispatches when the size of the
+	 * Spliterator is unknown, matching the first batch split from an iterator
+	 * by {@link java.util.Spliterators#spliteratorUnknownSize}
+	 */
+	private static final int UNKNOWN_SIZE_LEAF = 1 << 10;
+
+	private ParallelDispatch() {
+	}
+
+	/**
+	 * Returns a supplier of a single Visitor instance after checking that it
+	 * has been declared safe to call concurrently
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @return a supplier always returning v
+	 * @throws IllegalArgumentException
+	 *             if the Visitor class is not annotated with
+	 *             {@link ThreadSafeVisitor}
+	 */
+	static Supplier<Visitor<?>> shared(Visitor<?> v) {
+
+		if (!v.getClass().isAnnotationPresent(ThreadSafeVisitor.class)) {
+			throw new IllegalArgumentException(v.getClass().getName() + " is not declared @"
+					+ ThreadSafeVisitor.class.getSimpleName() + ", supply a new Visitor for each worker instead");
+		}
+		return () -> v;
+	}
+
+	/**
+	 * Invoke the dispatch method of a Visitor for each target in parallel
+	 *
+	 * @param visitors
+	 *            supplies the Visitor for each worker task
+	 * @param targets
+	 *            the targets
+	 * @param pool
+	 *            the pool executing the tasks
+	 */
+	static void dispatch(Supplier<? extends Visitor<?>> visitors, Spliterator<?> targets, ForkJoinPool pool) {
+
+		Collector<Object, Void, Void> none = Collector.of(() -> null, (a, t) -> {
+		}, (a, b) -> null);
+		pool.invoke(new Task<>(visitors, false, none, targets, threshold(targets, pool)));
+	}
+
+	/**
+	 * Returns the results of invoking the handle method of a Visitor for each
+	 * target in parallel, collected by the given Collector
+	 *
+	 * @param visitors
+	 *            supplies the Visitor for each worker task
+	 * @param targets
+	 *            the targets
+	 * @param collector
+	 *            collects the results
+	 * @param pool
+	 *            the pool executing the tasks
+	 * @return the collected results
+	 */
+	@SuppressWarnings("unchecked")
+	static <A, R> R handle(Supplier<? extends Visitor<?>> visitors, Spliterator<?> targets,
+			Collector<Object, A, R> collector, ForkJoinPool pool) {
+
+		A container = pool.invoke(new Task<>(visitors, true, collector, targets, threshold(targets, pool)));
+		if (collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+			return (R) container;
+		}
+		return collector.finisher().apply(container);
+	}
+
+	private static long threshold(Spliterator<?> targets, ForkJoinPool pool) {
+
+		long size = targets.estimateSize();
+		if (size == Long.MAX_VALUE) {
+			return UNKNOWN_SIZE_LEAF;
+		}
+		return Math.max(1, size / ((long) pool.getParallelism() * TASKS_PER_THREAD));
+	}
+
+	/**
+	 * Dispatches the targets of one Spliterator, splitting it while it is
+	 * larger than the threshold
+	 */
+	@SuppressWarnings("serial")
+	private static final class Task<A> extends RecursiveTask<A> {
+
+		private final Supplier<? extends Visitor<?>> visitors;
+
+		private final boolean handle;
+
+		private final Collector<Object, A, ?> collector;
+
+		private final Spliterator<?> targets;
+
+		private final long threshold;
+
+		Task(Supplier<? extends Visitor<?>> visitors, boolean handle, Collector<Object, A, ?> collector,
+				Spliterator<?> targets, long threshold) {
+
+			this.visitors = visitors;
+			this.handle = handle;
+			this.collector = collector;
+			this.targets = targets;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected A compute() {
+
+			Spliterator<?> prefix;
+			if (targets.estimateSize() > threshold && (prefix = targets.trySplit()) != null) {
+
+				Task<A> left = new Task<>(visitors, handle, collector, prefix, threshold);
+				left.fork();
+				A right = new Task<>(visitors, handle, collector, targets, threshold).compute();
+				BinaryOperator<A> combiner = collector.combiner();
+				return combiner.apply(left.join(), right);
+			}
+			Leaf<A> leaf = new Leaf<>(visitors.get(), handle, collector);
+			targets.forEachRemaining(leaf);
+			return leaf.container;
+		}
+	}
+
+	/**
+	 * Dispatches each target of a leaf task to the task's Visitor
+	 */
+	private static final class Leaf<A> implements Consumer<Object> {
+
+		private final Visitor<?> visitor;
+
+		private final boolean handle;
+
+		private final MethodTable table;
+
+		private final BiConsumer<A, Object> accumulator;
+
+		private final A container;
+
+		private Class<?> lastClass;
+
+		private MethodHandle method;
+
+		Leaf(Visitor<?> visitor, boolean handle, Collector<Object, A, ?> collector) {
+
+			this.visitor = visitor;
+			this.handle = handle;
+			this.table = handle ? DispatchEngine.handleTable(visitor.getClass())
+					: DispatchEngine.dispatchTable(visitor.getClass());
+			this.accumulator = collector.accumulator();
+			this.container = collector.supplier().get();
+		}
+
+		@Override
+		public void accept(Object o) {
+
+			Class<?> c = DispatchEngine.targetClass(o);
+			if (c != lastClass) {
+				method = table.lookup(c);
+				lastClass = c;
+			}
+			try {
+				if (handle) {
+					accumulator.accept(container, (Object) method.invokeExact(visitor, o));
+				} else {
+					method.invokeExact(visitor, o);
+				}
+			} catch (Throwable t) {
+				throw DispatchEngine.rethrow(t);
+			}
+		}
+	}
+}
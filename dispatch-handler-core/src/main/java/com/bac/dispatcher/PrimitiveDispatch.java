@@ -0,0 +1,257 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Dispatches primitive int, long and double targets, and returns the values
+ * of handle methods as primitive long or double, without boxing where the
+ * Visitor methods allow.
+ *
+ * A primitive target is passed to a Visitor method declaring that primitive
+ * parameter where there is one. Otherwise the method is that resolved for the
+ * wrapper class, to which the target is boxed. Likewise a primitive return
+ * value is widened as required while a reference return value is unboxed, so
+ * that a null value throws a NullPointerException and a value that cannot be
+ * converted, e.g. a Double where a long is required, throws a
+ * ClassCastException.
+ *
+ * The MethodHandles for the primitive targets of each Visitor class are
+ * resolved together on first use and are invoked directly thereafter.
+ *
+ * @author Simon Baird
+ *
+ */
+final class PrimitiveDispatch {
+
+	private static final MethodType AS_LONG_TYPE = MethodType.methodType(long.class, Visitor.class, Object.class);
+
+	private static final MethodType AS_DOUBLE_TYPE = MethodType.methodType(double.class, Visitor.class,
+			Object.class);
+
+	private static final ClassValue<PrimitiveTable> PRIMITIVE_TABLES = new ClassValue<PrimitiveTable>() {
+
+		@Override
+		protected PrimitiveTable computeValue(Class<?> visitorClass) {
+
+			return new PrimitiveTable(visitorClass);
+		}
+	};
+
+	private static final ClassValue<MethodTable> AS_LONG_TABLES = new ClassValue<MethodTable>() {
+
+		@Override
+		protected MethodTable computeValue(Class<?> visitorClass) {
+
+			return new MethodTable(visitorClass, "handle", AS_LONG_TYPE);
+		}
+	};
+
+	private static final ClassValue<MethodTable> AS_DOUBLE_TABLES = new ClassValue<MethodTable>() {
+
+		@Override
+		protected MethodTable computeValue(Class<?> visitorClass) {
+
+			return new MethodTable(visitorClass, "handle", AS_DOUBLE_TYPE);
+		}
+	};
+
+	private PrimitiveDispatch() {
+	}
+
+	static void dispatchInt(Visitor<?> v, int o) {
+
+		try {
+			PRIMITIVE_TABLES.get(v.getClass()).dispatchInt.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	static void dispatchLong(Visitor<?> v, long o) {
+
+		try {
+			PRIMITIVE_TABLES.get(v.getClass()).dispatchLong.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	static void dispatchDouble(Visitor<?> v, double o) {
+
+		try {
+			PRIMITIVE_TABLES.get(v.getClass()).dispatchDouble.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	static long handleAsLong(Visitor<?> v, Object o) {
+
+		MethodHandle handle = AS_LONG_TABLES.get(v.getClass()).lookup(DispatchEngine.targetClass(o));
+		try {
+			return (long) handle.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	static long handleAsLong(Visitor<?> v, int o) {
+
+		try {
+			return (long) PRIMITIVE_TABLES.get(v.getClass()).intAsLong.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	static long handleAsLong(Visitor<?> v, long o) {
+
+		try {
+			return (long) PRIMITIVE_TABLES.get(v.getClass()).longAsLong.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	static long handleAsLong(Visitor<?> v, double o) {
+
+		try {
+			return (long) PRIMITIVE_TABLES.get(v.getClass()).doubleAsLong.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	static double handleAsDouble(Visitor<?> v, Object o) {
+
+		MethodHandle handle = AS_DOUBLE_TABLES.get(v.getClass()).lookup(DispatchEngine.targetClass(o));
+		try {
+			return (double) handle.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	static double handleAsDouble(Visitor<?> v, int o) {
+
+		try {
+			return (double) PRIMITIVE_TABLES.get(v.getClass()).intAsDouble.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	static double handleAsDouble(Visitor<?> v, long o) {
+
+		try {
+			return (double) PRIMITIVE_TABLES.get(v.getClass()).longAsDouble.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	static double handleAsDouble(Visitor<?> v, double o) {
+
+		try {
+			return (double) PRIMITIVE_TABLES.get(v.getClass()).doubleAsDouble.invokeExact(v, o);
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	/**
+	 * Returns the Visitor method for a primitive target: the method declaring
+	 * the primitive parameter, or else the method resolved for its wrapper
+	 */
+	static Method resolve(List<Method> candidates, Class<?> primitive) {
+
+		for (Method method : candidates) {
+			if (method.getParameterTypes()[0] == primitive) {
+				return method;
+			}
+		}
+		return MethodResolver.resolve(candidates, MethodResolver.box(primitive));
+	}
+
+	/**
+	 * The MethodHandles of a Visitor class for each primitive target and
+	 * return type
+	 */
+	private static final class PrimitiveTable {
+
+		private final MethodHandle dispatchInt;
+
+		private final MethodHandle dispatchLong;
+
+		private final MethodHandle dispatchDouble;
+
+		private final MethodHandle intAsLong;
+
+		private final MethodHandle longAsLong;
+
+		private final MethodHandle doubleAsLong;
+
+		private final MethodHandle intAsDouble;
+
+		private final MethodHandle longAsDouble;
+
+		private final MethodHandle doubleAsDouble;
+
+		PrimitiveTable(Class<?> visitorClass) {
+
+			List<Method> dispatch = MethodResolver.candidates(visitorClass, "dispatch");
+			List<Method> handle = MethodResolver.candidates(visitorClass, "handle");
+			dispatchInt = bind(dispatch, int.class, void.class);
+			dispatchLong = bind(dispatch, long.class, void.class);
+			dispatchDouble = bind(dispatch, double.class, void.class);
+			intAsLong = bind(handle, int.class, long.class);
+			longAsLong = bind(handle, long.class, long.class);
+			doubleAsLong = bind(handle, double.class, long.class);
+			intAsDouble = bind(handle, int.class, double.class);
+			longAsDouble = bind(handle, long.class, double.class);
+			doubleAsDouble = bind(handle, double.class, double.class);
+		}
+
+		private static MethodHandle bind(List<Method> candidates, Class<?> primitive, Class<?> returnType) {
+
+			MethodType type = MethodType.methodType(returnType, Visitor.class, primitive);
+			Method method = resolve(candidates, primitive);
+			return MethodTable.isDefault(method) ? MethodTable.nothing(type)
+					: MethodTable.adapt(MethodTable.unreflect(method), type);
+		}
+	}
+}
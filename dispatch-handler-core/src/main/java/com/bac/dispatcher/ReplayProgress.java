@@ -0,0 +1,139 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The progress of a {@link JournalReplay} at a point in time. The counts
+ * include only records already passed to a Visitor, or to the partition of a
+ * partitioned replay.
+ * 
+ * @author Simon Baird
+ *
+ */
+public final class ReplayProgress {
+
+	private final long records;
+
+	private final long bytes;
+
+	private final long totalBytes;
+
+	private final long elapsedNanos;
+
+	private final long waitNanos;
+
+	ReplayProgress(long records, long bytes, long totalBytes, long elapsedNanos, long waitNanos) {
+
+		this.records = records;
+		this.bytes = bytes;
+		this.totalBytes = totalBytes;
+		this.elapsedNanos = elapsedNanos;
+		this.waitNanos = waitNanos;
+	}
+
+	/**
+	 * Returns the number of records replayed, including any decoded to null
+	 */
+	public long records() {
+
+		return records;
+	}
+
+	/**
+	 * Returns the number of bytes of the journal replayed, including the
+	 * record headers
+	 */
+	public long bytes() {
+
+		return bytes;
+	}
+
+	/**
+	 * Returns the length of the journal in bytes
+	 */
+	public long totalBytes() {
+
+		return totalBytes;
+	}
+
+	/**
+	 * Returns the fraction of the journal replayed, from 0 to 1
+	 */
+	public double fraction() {
+
+		return totalBytes == 0 ? 1 : (double) bytes / totalBytes;
+	}
+
+	/**
+	 * Returns the time since the replay started
+	 */
+	public long elapsed(TimeUnit unit) {
+
+		return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Returns the time the dispatching thread has spent waiting for decoded
+	 * records. A large share of the elapsed time shows that the replay is
+	 * limited by reading and decoding rather than by the Visitor.
+	 */
+	public long waited(TimeUnit unit) {
+
+		return unit.convert(waitNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Returns the mean number of records replayed per second
+	 */
+	public double recordsPerSecond() {
+
+		return elapsedNanos == 0 ? 0 : records * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * Returns the mean number of bytes replayed per second
+	 */
+	public double bytesPerSecond() {
+
+		return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+
+		return String.format("%d records, %d of %d bytes (%.1f%%) in %d ms, %.0f records/s, %.1f MB/s, waited %d ms",
+				records, bytes, totalBytes, fraction() * 100, elapsed(TimeUnit.MILLISECONDS), recordsPerSecond(),
+				bytesPerSecond() / (1 << 20), waited(TimeUnit.MILLISECONDS));
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the methods resolved so far for each Visitor and target class to a
+ * binary snapshot, and reads a snapshot to resolve the same methods again
+ * before they are first needed.
+ *
+ * A snapshot written at the end of a training run can be read at startup so
+ * that the first calls do not wait on class loading and method resolution.
+ * On reading, each entry is resolved by the current Visitor class and is
+ * kept only if the Visitor and target classes can be loaded and the method
+ * resolved has the same declaring class and parameter type as when the
+ * snapshot was written. Other entries are stale and are dropped, so that a
+ * snapshot can never select a different method from that resolved at run
+ * time.
+ *
+ * The snapshot holds a table of the class names used, followed by the
+ * entries of each Visitor table as indices into the names:
+ *
+ * <pre>
+ * int     MAGIC
+ * short   VERSION
+ * int     name count, then each name as modified UTF-8
+ * int     table count, then for each table
+ *   int   Visitor class name
+ *   byte  DISPATCH or HANDLE
+ *   int   entry count, then for each entry
+ *     int target class name
+ *     int declaring class name of the method
+ *     int parameter type name of the method
+ * </pre>
+ *
+ * @author Simon Baird
+ *
+ */
+final class ResolutionSnapshot {
+
+	static final int MAGIC = 0x44495350;
+
+	static final short VERSION = 1;
+
+	static final byte DISPATCH = 0;
+
+	static final byte HANDLE = 1;
+
+	private ResolutionSnapshot() {
+	}
+
+	/**
+	 * Write the methods resolved for every Visitor class in use
+	 *
+	 * @param out
+	 *            the stream, which is not closed
+	 * @return the number of entries written
+	 * @throws IOException
+	 *             if the stream cannot be written
+	 */
+	static int write(OutputStream out) throws IOException {
+
+		Map<String, Integer> names = new HashMap<>();
+		List<String> nameList = new ArrayList<>();
+		List<int[]> tables = new ArrayList<>();
+		int entries = 0;
+		for (Class<?> visitorClass : DispatchEngine.visitorClasses()) {
+
+			for (byte kind = DISPATCH; kind <= HANDLE; kind++) {
+
+				MethodTable table = kind == DISPATCH ? DispatchEngine.dispatchTable(visitorClass)
+						: DispatchEngine.handleTable(visitorClass);
+				List<Class<?>> targets = table.resolvedTargets();
+				if (targets.isEmpty()) {
+					continue;
+				}
+				int[] row = new int[3 + targets.size() * 3];
+				row[0] = index(visitorClass.getName(), names, nameList);
+				row[1] = kind;
+				row[2] = targets.size();
+				for (int i = 0; i < targets.size(); i++) {
+
+					Method method = table.method(targets.get(i));
+					row[3 + i * 3] = index(targets.get(i).getName(), names, nameList);
+					row[4 + i * 3] = index(method.getDeclaringClass().getName(), names, nameList);
+					row[5 + i * 3] = index(method.getParameterTypes()[0].getName(), names, nameList);
+				}
+				tables.add(row);
+				entries += targets.size();
+			}
+		}
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		data.writeInt(MAGIC);
+		data.writeShort(VERSION);
+		data.writeInt(nameList.size());
+		for (String name : nameList) {
+			data.writeUTF(name);
+		}
+		data.writeInt(tables.size());
+		for (int[] row : tables) {
+
+			data.writeInt(row[0]);
+			data.writeByte(row[1]);
+			for (int i = 2; i < row.length; i++) {
+				data.writeInt(row[i]);
+			}
+		}
+		data.flush();
+		return entries;
+	}
+
+	/**
+	 * Read a snapshot, resolving each entry that is still valid
+	 *
+	 * @param in
+	 *            the stream, which is not closed
+	 * @param loader
+	 *            loads the Visitor and target classes named by the snapshot
+	 * @return the number of entries resolved, the remainder being dropped
+	 * @throws IOException
+	 *             if the stream cannot be read or is not a snapshot of this
+	 *             version, or the snapshot is truncated or corrupt
+	 */
+	static int read(InputStream in, ClassLoader loader) throws IOException {
+
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		if (data.readInt() != MAGIC) {
+			throw new IOException("Not a resolution snapshot");
+		}
+		short version = data.readShort();
+		if (version != VERSION) {
+			throw new IOException("Unsupported resolution snapshot version " + version);
+		}
+		/*
+		 * The names are not presized by their count, so a corrupt count ends
+		 * the stream rather than exhausting the heap
+		 */
+		List<String> names = new ArrayList<>();
+		for (int count = count(data, "name"); count > 0; count--) {
+			names.add(data.readUTF());
+		}
+		int resolved = 0;
+		for (int tables = count(data, "table"); tables > 0; tables--) {
+
+			Class<?> visitorClass = visitorClass(name(data, names), loader);
+			byte kind = data.readByte();
+			if (kind != DISPATCH && kind != HANDLE) {
+				throw new IOException("Corrupt resolution snapshot, table kind " + kind);
+			}
+			MethodTable table = null;
+			if (visitorClass != null) {
+				table = kind == HANDLE ? DispatchEngine.handleTable(visitorClass)
+						: DispatchEngine.dispatchTable(visitorClass);
+			}
+			for (int entries = count(data, "entry"); entries > 0; entries--) {
+
+				String target = name(data, names);
+				String declaringClass = name(data, names);
+				String parameterType = name(data, names);
+				if (table != null && prepare(table, target, declaringClass, parameterType, loader)) {
+					resolved++;
+				}
+			}
+		}
+		return resolved;
+	}
+
+	/*
+	 * Resolve the entry if the target class can be loaded and the same method
+	 * is selected as when the snapshot was written
+	 */
+	private static boolean prepare(MethodTable table, String targetName, String declaringClass,
+			String parameterType, ClassLoader loader) {
+
+		Class<?> target = load(targetName, loader);
+		if (target == null) {
+			return false;
+		}
+		Method method;
+		try {
+			method = table.method(target);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		if (!method.getDeclaringClass().getName().equals(declaringClass)
+				|| !method.getParameterTypes()[0].getName().equals(parameterType)) {
+			return false;
+		}
+		table.prepare(target, method);
+		return true;
+	}
+
+	private static int count(DataInputStream data, String of) throws IOException {
+
+		int count = data.readInt();
+		if (count < 0) {
+			throw new IOException("Corrupt resolution snapshot, " + of + " count " + count);
+		}
+		return count;
+	}
+
+	private static String name(DataInputStream data, List<String> names) throws IOException {
+
+		int index = data.readInt();
+		if (index < 0 || index >= names.size()) {
+			throw new IOException("Corrupt resolution snapshot, name index " + index);
+		}
+		return names.get(index);
+	}
+
+	private static Class<?> visitorClass(String name, ClassLoader loader) {
+
+		Class<?> c = load(name, loader);
+		return c != null && Visitor.class.isAssignableFrom(c) ? c : null;
+	}
+
+	private static Class<?> load(String name, ClassLoader loader) {
+
+		try {
+			return Class.forName(name, false, loader);
+		} catch (ClassNotFoundException | LinkageError e) {
+			return null;
+		}
+	}
+
+	private static int index(String name, Map<String, Integer> names, List<String> nameList) {
+
+		Integer index = names.get(name);
+		if (index == null) {
+			index = nameList.size();
+			names.put(name, index);
+			nameList.add(name);
+		}
+		return index;
+	}
+}
@@ -0,0 +1,280 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A preallocated ring of event slots shared by the producers and consumers
+ * of an {@link EventPipeline}.
+ *
+ * Each event is given the next sequence number, which maps to a slot by
+ * masking with the capacity. A producer claims a sequence, stores the event
+ * in its slot and publishes the sequence. Each consumer follows the published
+ * sequences with a sequence of its own, and a producer may not claim a slot
+ * until every consumer has passed the event previously held in it.
+ *
+ * With a single producer the claimed sequence is confined to the producing
+ * thread and publishing is an ordered write of the cursor. With several
+ * producers a sequence is claimed by a compare and set of the cursor and each
+ * slot records the lap of the ring in which it was last published, so that
+ * a consumer does not read past a slot claimed but not yet written.
+ *
+ * @author Simon Baird
+ *
+ */
+final class RingBuffer {
+
+	private final Object[] slots;
+
+	private final int mask;
+
+	private final int shift;
+
+	private final boolean multiProducer;
+
+	/**
+	 * The last published sequence with a single producer, or the last claimed
+	 * sequence with several
+	 */
+	private final Sequence cursor = new Sequence(-1);
+
+	/**
+	 * The lap in which each slot was last published, with several producers
+	 */
+	private final AtomicIntegerArray published;
+
+	/**
+	 * The minimum consumer sequence when last read
+	 */
+	private final Sequence gate = new Sequence(-1);
+
+	private Sequence[] consumers = new Sequence[0];
+
+	/**
+	 * The last sequence claimed by a single producer
+	 */
+	private long claimed = -1;
+
+	RingBuffer(int capacity, boolean multiProducer) {
+
+		if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+		}
+		this.slots = new Object[capacity];
+		this.mask = capacity - 1;
+		this.shift = Integer.numberOfTrailingZeros(capacity);
+		this.multiProducer = multiProducer;
+		if (multiProducer) {
+			published = new AtomicIntegerArray(capacity);
+			for (int i = 0; i < capacity; i++) {
+				published.set(i, -1);
+			}
+		} else {
+			published = null;
+		}
+	}
+
+	/**
+	 * Set the sequences of the consumers that gate the producers, before any
+	 * event is published
+	 */
+	void gate(Sequence[] sequences) {
+
+		consumers = sequences.clone();
+	}
+
+	/**
+	 * Claim the next sequence, waiting while the ring is full
+	 *
+	 * @param wait
+	 *            the strategy applied while the ring is full
+	 * @return the claimed sequence
+	 */
+	long claim(EventPipeline.WaitStrategy wait) {
+
+		if (!multiProducer) {
+			long next = claimed + 1;
+			long wrap = next - slots.length;
+			if (wrap > gate.value) {
+				long min;
+				for (int counter = 0; wrap > (min = minimum(claimed)); counter = wait.idle(counter)) {
+				}
+				gate.value = min;
+			}
+			return claimed = next;
+		}
+		for (int counter = 0;;) {
+
+			long current = cursor.value;
+			long next = current + 1;
+			long wrap = next - slots.length;
+			long cached = gate.value;
+			if (wrap > cached || cached > current) {
+				long min = minimum(current);
+				if (wrap > min) {
+					counter = wait.idle(counter);
+					continue;
+				}
+				gate.value = min;
+			} else if (cursor.compareAndSet(current, next)) {
+				return next;
+			}
+		}
+	}
+
+	/**
+	 * Claim the next sequence if the ring is not full
+	 *
+	 * @return the claimed sequence, or -1 if the ring is full
+	 */
+	long tryClaim() {
+
+		if (!multiProducer) {
+			long next = claimed + 1;
+			long wrap = next - slots.length;
+			if (wrap > gate.value) {
+				long min = minimum(claimed);
+				if (wrap > min) {
+					return -1;
+				}
+				gate.value = min;
+			}
+			return claimed = next;
+		}
+		for (;;) {
+
+			long current = cursor.value;
+			long next = current + 1;
+			if (next - slots.length > minimum(current)) {
+				return -1;
+			}
+			if (cursor.compareAndSet(current, next)) {
+				return next;
+			}
+		}
+	}
+
+	/**
+	 * Store the event in the slot of a claimed sequence and make it visible to
+	 * the consumers
+	 */
+	void publish(long sequence, Object event) {
+
+		int index = (int) sequence & mask;
+		slots[index] = event;
+		if (multiProducer) {
+			published.lazySet(index, (int) (sequence >>> shift));
+		} else {
+			cursor.lazySet(sequence);
+		}
+	}
+
+	Object get(long sequence) {
+
+		return slots[(int) sequence & mask];
+	}
+
+	/**
+	 * Returns the highest sequence up to which every event has been published,
+	 * which is less than next if the event at next has not been published
+	 *
+	 * @param next
+	 *            the next sequence required by a consumer
+	 */
+	long available(long next) {
+
+		long last = cursor.value;
+		if (!multiProducer) {
+			return last;
+		}
+		for (long sequence = next; sequence <= last; sequence++) {
+			if (published.get((int) sequence & mask) != (int) (sequence >>> shift)) {
+				return sequence - 1;
+			}
+		}
+		return last;
+	}
+
+	private long minimum(long min) {
+
+		for (Sequence consumer : consumers) {
+			min = Math.min(min, consumer.value);
+		}
+		return min;
+	}
+
+	/*
+	 * Pads a sequence on both sides so that it does not share a cache line
+	 * with another frequently written field
+	 */
+	static class LeftPadding {
+
+		long p1, p2, p3, p4, p5, p6, p7;
+	}
+
+	static class Value extends LeftPadding {
+
+		volatile long value;
+	}
+
+	/**
+	 * A sequence number written by one thread and read by others
+	 */
+	static final class Sequence extends Value {
+
+		private static final AtomicLongFieldUpdater<Value> VALUE = AtomicLongFieldUpdater.newUpdater(Value.class,
+				"value");
+
+		long p9, p10, p11, p12, p13, p14, p15;
+
+		Sequence(long initial) {
+
+			value = initial;
+		}
+
+		/**
+		 * An ordered write, which is not immediately visible to other threads
+		 * but is not reordered with the writes preceding it
+		 */
+		void lazySet(long sequence) {
+
+			VALUE.lazySet(this, sequence);
+		}
+
+		boolean compareAndSet(long expected, long sequence) {
+
+			return VALUE.compareAndSet(this, expected, sequence);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+/**
+ * Ensures that a value missing from a table is resolved by one thread at a
+ * time, however many threads miss it at once.
+ *
+ * The first thread to miss a key becomes its leader: it registers a flight
+ * for the key, checks the table again in case another flight published the
+ * value in the meantime, resolves and publishes the value and then retires
+ * the flight. Any thread missing the same key while the flight is registered
+ * waits for the leader's result rather than resolving the key itself. An
+ * exception thrown by the resolution is thrown to the leader and every
+ * waiting thread, and the next miss starts a new flight.
+ *
+ * The tables themselves are read without a lock, so a flight is only ever
+ * created for a genuine miss and costs nothing once the value is published.
+ *
+ * @author Simon Baird
+ *
+ * @param <K>
+ *            the type of the keys
+ * @param <V>
+ *            the type of the values
+ */
+final class SingleFlight<K, V> {
+
+	private final ConcurrentHashMap<K, FutureTask<V>> flights = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the value for a key missing from a table, resolving it unless
+	 * another thread is already doing so
+	 *
+	 * @param key
+	 *            the key of the missing value
+	 * @param published
+	 *            reads the value from the table, returning null if absent
+	 * @param resolver
+	 *            resolves the value and publishes it in the table
+	 * @return the value
+	 */
+	V resolve(K key, Supplier<V> published, Supplier<V> resolver) {
+
+		FutureTask<V> flight = new FutureTask<>(() -> {
+			V value = published.get();
+			return value != null ? value : resolver.get();
+		});
+		FutureTask<V> running = flights.putIfAbsent(key, flight);
+		if (running == null) {
+			try {
+				flight.run();
+			} finally {
+				flights.remove(key, flight);
+			}
+			running = flight;
+		}
+		return await(running);
+	}
+
+	/**
+	 * Returns the number of resolutions in progress
+	 */
+	int inFlight() {
+
+		return flights.size();
+	}
+
+	/*
+	 * Wait for the flight regardless of interrupts, which are restored
+	 * afterwards, as the caller cannot proceed without the value
+	 */
+	private static <V> V await(FutureTask<V> flight) {
+
+		boolean interrupted = false;
+		try {
+			for (;;) {
+				try {
+					return flight.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					throw DispatchEngine.rethrow(e.getCause());
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
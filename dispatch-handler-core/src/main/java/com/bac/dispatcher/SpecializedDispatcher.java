@@ -0,0 +1,437 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A dispatcher specialised for a single Visitor class.
+ *
+ * Each overloaded dispatch and handle method of the Visitor is bound to a
+ * class generated at run time by the LambdaMetafactory which calls the Visitor
+ * method directly. Calls are selected by comparing the target class with
+ * those already seen, so where a call site is dominated by one target class
+ * the JIT compiler can inline the Visitor method into the caller.
+ *
+ * The switch is initially populated with the parameter classes of the
+ * Visitor's methods. Any other target class, such as a subclass of a
+ * parameter class, is resolved once and added to the switch. The switch is
+ * limited to {@value #MAX_CASES} classes; beyond that, and for target classes
+ * that the Visitor's class loader cannot see, calls are made through the shared
+ * method tables. A Visitor with {@link Guard guarded} methods is always called
+ * through the shared method tables, which evaluate the guards.
+ *
+ * 	SpecializedDispatcher&lt;Object&gt; dispatcher = handler.specialize(HotVisitor.class);
+ *
+ * 	dispatcher.dispatch(v, o);
+ *
+ * @author Simon Baird
+ *
+ * @param <T>
+ *            the return type from the Visitor implementation
+ */
+public final class SpecializedDispatcher<T> {
+
+	/**
+	 * The maximum number of target classes compared before falling back to
+	 * the shared method tables
+	 */
+	static final int MAX_CASES = 16;
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private static final MethodType DISPATCH_INVOKER = MethodType.methodType(DispatchInvoker.class);
+
+	private static final MethodType HANDLE_INVOKER = MethodType.methodType(HandleInvoker.class);
+
+	/**
+	 * Stands in for the default methods of the Visitor interface, so that a
+	 * target for which the Visitor has no method does not call it
+	 */
+	private static final DispatchInvoker NO_DISPATCH = (v, o) -> {
+	};
+
+	private static final HandleInvoker NO_HANDLE = (v, o) -> null;
+
+	private static final ClassValue<SpecializedDispatcher<?>> DISPATCHERS = new ClassValue<SpecializedDispatcher<?>>() {
+
+		@Override
+		protected SpecializedDispatcher<?> computeValue(Class<?> visitorClass) {
+
+			return new SpecializedDispatcher<>(visitorClass);
+		}
+	};
+
+	private final Class<?> visitorClass;
+
+	private final ClassLoader loader;
+
+	private final List<Method> dispatchCandidates;
+
+	private final List<Method> handleCandidates;
+
+	/**
+	 * True if the Visitor has guarded methods, which are only evaluated by the
+	 * shared method tables
+	 */
+	private final boolean guarded;
+
+	private final Map<Method, DispatchInvoker> dispatchInvokers = new HashMap<>();
+
+	private final Map<Method, HandleInvoker> handleInvokers = new HashMap<>();
+
+	private volatile Cases<DispatchInvoker> dispatchCases;
+
+	private volatile Cases<HandleInvoker> handleCases;
+
+	/**
+	 * Creates a dispatcher of its own for a Visitor class, where
+	 * {@link #of(Class)} returns the shared one
+	 */
+	SpecializedDispatcher(Class<?> visitorClass) {
+
+		this.visitorClass = visitorClass;
+		this.loader = visitorClass.getClassLoader();
+		this.dispatchCandidates = MethodResolver.candidates(visitorClass, "dispatch");
+		this.handleCandidates = MethodResolver.candidates(visitorClass, "handle");
+		this.guarded = GuardChain.present(visitorClass);
+		List<Method> none = Collections.emptyList();
+		this.dispatchCases = seed(guarded ? none : dispatchCandidates, dispatchInvokers,
+				SpecializedDispatcher::dispatchInvoker);
+		this.handleCases = seed(guarded ? none : handleCandidates, handleInvokers,
+				SpecializedDispatcher::handleInvoker);
+	}
+
+	/**
+	 * Returns the dispatcher shared by all handlers for a Visitor class
+	 *
+	 * @param visitorClass
+	 *            the concrete Visitor class
+	 * @return the specialised dispatcher
+	 */
+	static SpecializedDispatcher<?> of(Class<?> visitorClass) {
+
+		if (visitorClass.isInterface() || Modifier.isAbstract(visitorClass.getModifiers())
+				|| !Visitor.class.isAssignableFrom(visitorClass)) {
+			throw new IllegalArgumentException("Not a concrete Visitor class: " + visitorClass.getName());
+		}
+		return DISPATCHERS.get(visitorClass);
+	}
+
+	/**
+	 * Forward the Object under extension to the supplied Visitor.
+	 *
+	 * @param v
+	 *            an instance of the Visitor class this dispatcher was
+	 *            specialised for
+	 * @param o
+	 *            any Object requiring dynamic extension
+	 */
+	public void dispatch(Visitor<?> v, Object o) {
+
+		checkVisitor(v);
+		Class<?> target = DispatchEngine.targetClass(o);
+		Cases<DispatchInvoker> cases = dispatchCases;
+		Class<?>[] classes = cases.classes;
+		for (int i = 0; i < classes.length; i++) {
+			if (classes[i] == target) {
+				cases.invoker(i).dispatch(v, o);
+				return;
+			}
+		}
+		if (cases.full || !MethodTable.isVisible(target, loader)) {
+			DispatchEngine.dispatch(v, o);
+			return;
+		}
+		dispatchMiss(target).dispatch(v, o);
+	}
+
+	/**
+	 * Returns the output from calling the appropriate method on the supplied
+	 * Visitor.
+	 *
+	 * @param v
+	 *            an instance of the Visitor class this dispatcher was
+	 *            specialised for
+	 * @param o
+	 *            any Object requiring dynamic extension
+	 * @return an Object of type T returned from the Visitor method
+	 */
+	@SuppressWarnings("unchecked")
+	public T handle(Visitor<?> v, Object o) {
+
+		checkVisitor(v);
+		Class<?> target = DispatchEngine.targetClass(o);
+		Cases<HandleInvoker> cases = handleCases;
+		Class<?>[] classes = cases.classes;
+		for (int i = 0; i < classes.length; i++) {
+			if (classes[i] == target) {
+				return (T) cases.invoker(i).handle(v, o);
+			}
+		}
+		if (cases.full || !MethodTable.isVisible(target, loader)) {
+			return (T) DispatchEngine.handle(v, o);
+		}
+		return (T) handleMiss(target).handle(v, o);
+	}
+
+	/**
+	 * Returns true once the switch of dispatch methods holds
+	 * {@value #MAX_CASES} classes, after which other classes are dispatched
+	 * through the shared method tables
+	 */
+	boolean isDispatchFull() {
+
+		return dispatchCases.full;
+	}
+
+	/**
+	 * Returns true once the switch of handle methods holds
+	 * {@value #MAX_CASES} classes
+	 */
+	boolean isHandleFull() {
+
+		return handleCases.full;
+	}
+
+	private void checkVisitor(Visitor<?> v) {
+
+		if (v.getClass() != visitorClass) {
+			throw new IllegalArgumentException(
+					"Dispatcher for " + visitorClass.getName() + " cannot accept " + v.getClass().getName());
+		}
+	}
+
+	private synchronized DispatchInvoker dispatchMiss(Class<?> target) {
+
+		Cases<DispatchInvoker> cases = dispatchCases;
+		DispatchInvoker invoker = cases.find(target);
+		if (invoker == null) {
+			if (cases.full) {
+				return DispatchEngine::dispatch;
+			}
+			Method method = MethodResolver.resolve(dispatchCandidates, target);
+			invoker = guarded ? DispatchEngine::dispatch : MethodTable.isDefault(method) ? NO_DISPATCH
+					: dispatchInvokers.computeIfAbsent(method, SpecializedDispatcher::dispatchInvoker);
+			dispatchCases = cases.add(target, invoker);
+		}
+		return invoker;
+	}
+
+	private synchronized HandleInvoker handleMiss(Class<?> target) {
+
+		Cases<HandleInvoker> cases = handleCases;
+		HandleInvoker invoker = cases.find(target);
+		if (invoker == null) {
+			if (cases.full) {
+				return DispatchEngine::handle;
+			}
+			Method method = MethodResolver.resolve(handleCandidates, target);
+			invoker = guarded ? DispatchEngine::handle : MethodTable.isDefault(method) ? NO_HANDLE
+					: handleInvokers.computeIfAbsent(method, SpecializedDispatcher::handleInvoker);
+			handleCases = cases.add(target, invoker);
+		}
+		return invoker;
+	}
+
+	/*
+	 * Seed the switch with the parameter class of each method. Interfaces are
+	 * excluded as they cannot be the runtime class of a target
+	 */
+	private static <I> Cases<I> seed(List<Method> candidates, Map<Method, I> invokers,
+			Function<Method, I> factory) {
+
+		Cases<I> cases = new Cases<>(new Class<?>[0], new Object[0]);
+		for (Method method : candidates) {
+
+			Class<?> parameter = method.getParameterTypes()[0];
+			if (!parameter.isInterface() && !parameter.isPrimitive() && parameter != Object.class
+					&& cases.classes.length < MAX_CASES) {
+				cases = cases.add(parameter, invokers.computeIfAbsent(method, factory));
+			}
+		}
+		return cases;
+	}
+
+	private static DispatchInvoker dispatchInvoker(Method method) {
+
+		MethodHandle handle = MethodTable.unreflect(method);
+		if (isLinkable(method)) {
+			try {
+				return (DispatchInvoker) spin(handle, "dispatch", DISPATCH_INVOKER, MethodTable.DISPATCH_TYPE,
+						MethodType.methodType(void.class, method.getDeclaringClass(),
+								MethodResolver.box(method.getParameterTypes()[0])));
+			} catch (LambdaConversionException | IllegalArgumentException e) {
+				// Fall through to the MethodHandle
+			}
+		}
+		MethodHandle exact = handle.asType(MethodTable.DISPATCH_TYPE);
+		return (v, o) -> {
+			try {
+				exact.invokeExact(v, o);
+			} catch (Throwable t) {
+				throw DispatchEngine.rethrow(t);
+			}
+		};
+	}
+
+	private static HandleInvoker handleInvoker(Method method) {
+
+		MethodHandle handle = MethodTable.unreflect(method);
+		if (isLinkable(method)) {
+			try {
+				return (HandleInvoker) spin(handle, "handle", HANDLE_INVOKER, MethodTable.HANDLE_TYPE,
+						MethodType.methodType(MethodResolver.box(method.getReturnType()), method.getDeclaringClass(),
+								MethodResolver.box(method.getParameterTypes()[0])));
+			} catch (LambdaConversionException | IllegalArgumentException e) {
+				// Fall through to the MethodHandle
+			}
+		}
+		MethodHandle exact = handle.asType(MethodTable.HANDLE_TYPE);
+		return (v, o) -> {
+			try {
+				return (Object) exact.invokeExact(v, o);
+			} catch (Throwable t) {
+				throw DispatchEngine.rethrow(t);
+			}
+		};
+	}
+
+	private static Object spin(MethodHandle implementation, String name, MethodType invokerType, MethodType samType,
+			MethodType instantiatedType) throws LambdaConversionException {
+
+		CallSite site = LambdaMetafactory.metafactory(LOOKUP, name, invokerType, samType, implementation,
+				instantiatedType);
+		try {
+			return site.getTarget().invoke();
+		} catch (Throwable t) {
+			throw DispatchEngine.rethrow(t);
+		}
+	}
+
+	/*
+	 * A generated class calls the Visitor method directly so the method must
+	 * be accessible from this package without the suppressed access check
+	 */
+	private static boolean isLinkable(Method method) {
+
+		Class<?> declaringClass = method.getDeclaringClass();
+		if (declaringClass.getClassLoader() == SpecializedDispatcher.class.getClassLoader()
+				&& declaringClass.getPackage() == SpecializedDispatcher.class.getPackage()) {
+			return !Modifier.isPrivate(declaringClass.getModifiers());
+		}
+		for (Class<?> c = declaringClass; c != null; c = c.getEnclosingClass()) {
+			if (!Modifier.isPublic(c.getModifiers())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Invokes a single dispatch method of a Visitor
+	 */
+	@FunctionalInterface
+	interface DispatchInvoker {
+
+		void dispatch(Visitor<?> v, Object o);
+	}
+
+	/**
+	 * Invokes a single handle method of a Visitor
+	 */
+	@FunctionalInterface
+	interface HandleInvoker {
+
+		Object handle(Visitor<?> v, Object o);
+	}
+
+	/**
+	 * An immutable set of target classes and their invokers which is replaced
+	 * as a whole when a class is added. A full set is read without the lock
+	 * so that calls for classes outside it go straight to the shared method
+	 * tables.
+	 */
+	private static final class Cases<I> {
+
+		final Class<?>[] classes;
+
+		final boolean full;
+
+		private final Object[] invokers;
+
+		Cases(Class<?>[] classes, Object[] invokers) {
+
+			this.classes = classes;
+			this.invokers = invokers;
+			this.full = classes.length >= MAX_CASES;
+		}
+
+		@SuppressWarnings("unchecked")
+		I invoker(int i) {
+
+			return (I) invokers[i];
+		}
+
+		I find(Class<?> target) {
+
+			for (int i = 0; i < classes.length; i++) {
+				if (classes[i] == target) {
+					return invoker(i);
+				}
+			}
+			return null;
+		}
+
+		Cases<I> add(Class<?> target, I invoker) {
+
+			Class<?>[] c = Arrays.copyOf(classes, classes.length + 1);
+			Object[] i = Arrays.copyOf(invokers, invokers.length + 1);
+			c[classes.length] = target;
+			i[invokers.length] = invoker;
+			return new Cases<>(c, i);
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ *       _ _                 _       _           _                     _ _
+ *    __| (_)___ _ __   __ _| |_ ___| |__       | |__   __ _ _ __   __| | | ___ _ __
+ *   / _` | / __| '_ \ / _` | __/ __| '_ \ _____| '_ \ / _` | '_ \ / _` | |/ _ \ '__|
+ *  | (_| | \__ \ |_) | (_| | || (__| | | |_____| | | | (_| | | | | (_| | |  __/ |
+ *   \__,_|_|___/ .__/ \__,_|\__\___|_| |_|     |_| |_|\__,_|_| |_|\__,_|_|\___|_|
+ *              |_|
+ *
+ * 
+ * 	(http://patorjk.com/software/taag/	Font: Irvin)
+ *
+ *	Copyright 2017 Simon Baird.  All Rights Reserved.
+ * 	DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ *	This file is part of dispatch-handler.
+ *
+ * 	dispatch-handler is free software: you can redistribute it and/or modify
+ * 	it under the terms of the GNU General Public License as published by
+ * 	the Free Software Foundation, either version 3 of the License, or
+ * 	(at your option) any later version.
+ *
+ * 	dispatch-handler is distributed in the hope that it will be useful,
+ * 	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * 	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * 	GNU General Public License for more details.
+ *
+ * 	You should have received a copy of the GNU General Public License included
+ * 	in the LICENSE file that accompanied this code.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.bac.dispatcher;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Adapts the handle methods of a Visitor to the java.util.stream API.
+ *
+ * The method table of the Visitor is obtained once when the adapter is
+ * created, so mapping an element costs a map lookup of its class and the
+ * MethodHandle invocation without allocation. The adapters are stateless
+ * apart from the Visitor and may be used by parallel streams where the
+ * Visitor itself is safe to call concurrently.
+ *
+ * @author Simon Baird
+ *
+ */
+final class StreamDispatch {
+
+	/**
+	 * The characteristics of a source Spliterator that remain true of the
+	 * mapped elements
+	 */
+	private static final int PRESERVED = Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED
+			| Spliterator.IMMUTABLE | Spliterator.CONCURRENT;
+
+	private StreamDispatch() {
+	}
+
+	/**
+	 * Returns a function invoking the handle method of the Visitor most
+	 * appropriate to its argument
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @return the function
+	 */
+	static Function<Object, Object> mapping(Visitor<?> v) {
+
+		return new Mapping(v);
+	}
+
+	/**
+	 * Returns a Spliterator over the results of invoking the handle method of
+	 * the Visitor for each element of the source. The results are computed
+	 * lazily as the Spliterator is traversed.
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param source
+	 *            the targets
+	 * @return the mapping Spliterator, splitting as the source splits
+	 */
+	static Spliterator<Object> mapping(Visitor<?> v, Spliterator<?> source) {
+
+		return new MappingSpliterator(new Mapping(v), source);
+	}
+
+	/**
+	 * Returns a Stream of the results of invoking the handle method of the
+	 * Visitor for each element of the source Stream
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param source
+	 *            the targets
+	 * @return a lazy Stream, parallel if the source is parallel and closing
+	 *         the source when closed
+	 */
+	static Stream<Object> map(Visitor<?> v, Stream<?> source) {
+
+		Stream<Object> mapped = StreamSupport.stream(mapping(v, source.spliterator()), source.isParallel());
+		return mapped.onClose(source::close);
+	}
+
+	/**
+	 * Returns a Collector that passes the result of invoking the handle method
+	 * of the Visitor for each element to the downstream Collector
+	 *
+	 * @param v
+	 *            the Visitor
+	 * @param downstream
+	 *            collects the results
+	 * @return the Collector of targets
+	 */
+	static <A, R> Collector<Object, ?, R> collecting(Visitor<?> v, Collector<Object, A, R> downstream) {
+
+		return Collectors.mapping(mapping(v), downstream);
+	}
+
+	/**
+	 * Invokes the handle method of a Visitor through its pre-resolved table
+	 */
+	private static final class Mapping implements Function<Object, Object> {
+
+		private final Visitor<?> visitor;
+
+		private final MethodTable table;
+
+		Mapping(Visitor<?> visitor) {
+
+			this.visitor = visitor;
+			this.table = DispatchEngine.handleTable(visitor.getClass());
+		}
+
+		@Override
+		public Object apply(Object o) {
+
+			MethodHandle handle = table.lookup(DispatchEngine.targetClass(o));
+			try {
+				return (Object) handle.invokeExact(visitor, o);
+			} catch (Throwable t) {
+				throw DispatchEngine.rethrow(t);
+			}
+		}
+	}
+
+	/**
+	 * Maps the elements of a source Spliterator as they are traversed. The
+	 * Spliterator is its own source Consumer so that advancing does not
+	 * allocate.
+	 */
+	private static final class MappingSpliterator implements Spliterator<Object>, Consumer<Object> {
+
+		private final Mapping mapping;
+
+		private final Spliterator<?> source;
+
+		private Consumer<? super Object> action;
+
+		MappingSpliterator(Mapping mapping, Spliterator<?> source) {
+
+			this.mapping = mapping;
+			this.source = source;
+		}
+
+		@Override
+		public void accept(Object o) {
+
+			action.accept(mapping.apply(o));
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Object> action) {
+
+			this.action = action;
+			try {
+				return source.tryAdvance(this);
+			} finally {
+				this.action = null;
+			}
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super Object> action) {
+
+			this.action = action;
+			try {
+				source.forEachRemaining(this);
+			} finally {
+				this.action = null;
+			}
+		}
+
+		@Override
+		public Spliterator<Object> trySplit() {
+
+			Spliterator<?> prefix = source.trySplit();
+			return prefix == null ? null : new MappingSpliterator(mapping, prefix);
+		}
+
+		@Override
+		public long estimateSize() {
+
+			return source.estimateSize();
+		}
+
+		@Override
+		public long getExactSizeIfKnown() {
+
+			return source.getExactSizeIfKnown();
+		}
+
+		@Override
+		public int characteristics() {
+
+			return source.characteristics() & PRESERVED;
+		}
+	}
+}
@@ -42,6 +42,19 @@ package com.bac.dispatcher;
  */
 public interface Visitor<T> {
 
+	/**
+	 * Returns a builder of a Visitor whose methods are lambdas registered for
+	 * target classes, e.g.
+	 * 
+	 * Visitor.builder().on(String.class, s -&gt; ...).orElse(o -&gt; ...)
+	 * 
+	 * @return a builder of a {@link LambdaVisitor}
+	 */
+	static <T> LambdaVisitor.Builder<T> builder() {
+
+		return new LambdaVisitor.Builder<>();
+	}
+
 	/**
 	 * Forwards the supplied object to the appropriate visitor. This is
 	 * differentiated from the handle method in that its return signature is
@@ -67,4 +80,34 @@ public interface Visitor<T> {
 
 		return null;
 	}
+
+	/**
+	 * Forwards the supplied pair of objects to the appropriate visitor. This
+	 * default implementation is called where no overloaded method accepts
+	 * both objects.
+	 * 
+	 * @param a
+	 *            the first {@code Object} that requires extension
+	 * @param b
+	 *            the second {@code Object} that requires extension
+	 */
+	default void dispatch(Object a, Object b) {
+
+		// No operation
+	}
+
+	/**
+	 * Returns a value from the relevant Visitor instantiation for a pair of
+	 * objects. This default implementation always returns null.
+	 * 
+	 * @param a
+	 *            the first {@code Object} that requires extension
+	 * @param b
+	 *            the second {@code Object} that requires extension
+	 * @return null
+	 */
+	default T handle(Object a, Object b) {
+
+		return null;
+	}
 }
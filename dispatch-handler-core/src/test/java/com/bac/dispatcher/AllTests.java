@@ -0,0 +1,38 @@
+package com.bac.dispatcher;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+@RunWith(Suite.class)
+@SuiteClasses({ 
+	VisitorTestDispatch.class, 
+	VisitorTestHandler.class, 
+	VisitorTestHandlerWithReturnType.class,
+	VisitorTestResolution.class,
+	VisitorTestResolutionCache.class,
+	VisitorTestSpecializedDispatcher.class,
+	VisitorTestGeneratedDispatch.class,
+	VisitorTestBatch.class,
+	VisitorTestParallel.class,
+	VisitorTestStream.class,
+	VisitorTestGraphWalker.class,
+	VisitorTestAsync.class,
+	VisitorTestMetrics.class,
+	VisitorTestSnapshot.class,
+	VisitorTestPrimitive.class,
+	VisitorTestMultiple.class,
+	VisitorTestNegativeCache.class,
+	VisitorTestPipeline.class,
+	VisitorTestFanOut.class,
+	VisitorTestGuard.class,
+	VisitorTestConcurrentResolution.class,
+	VisitorTestMessageRouter.class,
+	VisitorTestJournalReplay.class,
+	VisitorTestLambdaVisitor.class,
+	VisitorTestAllocation.class,
+	VisitorTestDispatchSite.class
+})
+public class AllTests {
+
+}
@@ -0,0 +1,259 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that calls with resolved Visitor and target classes allocate
+ * nothing, by measuring the bytes allocated by the calling thread over a
+ * million calls once the calls have been compiled
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestAllocation extends AbstractVisitorTest {
+
+	private static final int WARMUP = 200_000;
+
+	private static final int CALLS = 1_000_000;
+
+	/**
+	 * Allows for the measurement itself and for allocation during compilation
+	 * on the calling thread, but not for a single object per call
+	 */
+	private static final long ALLOWANCE = 16 * 1024;
+
+	private com.sun.management.ThreadMXBean threads;
+
+	private DispatchHandler<Object> dispatcher;
+
+	private CountingVisitor visitor;
+
+	private Object[] targets;
+
+	@Before
+	public void setEnv() {
+
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		dispatcher = new DispatchHandler<Object>();
+		visitor = new CountingVisitor();
+		targets = new Object[] { "a", new SuperClass(), new SubClass(), new FinalClass(), null, Integer.valueOf(3) };
+	}
+
+	@Test
+	public void dispatch_Should_Not_Allocate() {
+
+		assertNoAllocation(i -> dispatcher.dispatch(visitor, targets[i % targets.length]));
+	}
+
+	@Test
+	public void handle_Should_Not_Allocate() {
+
+		assertNoAllocation(i -> {
+			if (dispatcher.handle(visitor, targets[i % targets.length]) != null) {
+				visitor.count++;
+			}
+		});
+	}
+
+	@Test
+	public void pair_Dispatch_Should_Not_Allocate() {
+
+		assertNoAllocation(
+				i -> dispatcher.dispatch(visitor, targets[i % targets.length], targets[(i + 1) % targets.length]));
+	}
+
+	@Test
+	public void handleAsLong_Should_Not_Allocate() {
+
+		assertNoAllocation(i -> visitor.count += dispatcher.handleAsLong(visitor, i));
+	}
+
+	@Test
+	public void guarded_Dispatch_Should_Not_Allocate() {
+
+		GuardedVisitor guarded = new GuardedVisitor();
+		assertNoAllocation(i -> dispatcher.dispatch(guarded, targets[i % targets.length]));
+	}
+
+	@Test
+	public void generated_Dispatch_Should_Not_Allocate() {
+
+		GeneratedVisitor generated = new GeneratedVisitor();
+		assertNoAllocation(i -> dispatcher.dispatch(generated, targets[i % targets.length]));
+	}
+
+	@Test
+	public void specialized_Dispatch_Should_Not_Allocate() {
+
+		SpecializedDispatcher<Object> specialized = dispatcher.specialize(CountingVisitor.class);
+		assertNoAllocation(i -> specialized.dispatch(visitor, targets[i % targets.length]));
+	}
+
+	@Test
+	public void site_Dispatch_Should_Not_Allocate() {
+
+		DispatchSite<Object> site = dispatcher.site(CountingVisitor.class);
+		assertNoAllocation(i -> site.dispatch(visitor, targets[i % targets.length]));
+	}
+
+	@Test
+	public void fanOut_Should_Not_Allocate() {
+
+		CompositeVisitor composite = dispatcher.fanOut(visitor, new CountingVisitor());
+		assertNoAllocation(i -> composite.dispatch(targets[i % targets.length]));
+	}
+
+	@Test
+	public void lambda_Visitor_Should_Not_Allocate() {
+
+		LambdaVisitor<Object> lambdas = Visitor.builder()
+				.on(String.class, s -> visitor.count++)
+				.on(SubClass.class, o -> visitor.count += 2)
+				.build();
+		assertNoAllocation(i -> lambdas.dispatch(targets[i % targets.length]));
+	}
+
+	@Test
+	public void message_Router_Should_Not_Allocate() {
+
+		MessageRouter<Object> router = dispatcher.router(new ViewVisitor());
+		ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+		buffer.putInt(12).putInt(7).putLong(1).putInt(100);
+		buffer.putInt(8).putInt(3).putLong(2);
+		buffer.flip();
+		assertNoAllocation(i -> router.dispatch(buffer, i % 2 == 0 ? 0 : 20));
+	}
+
+	/**
+	 * Calls the action with its index after warming it up and asserts that
+	 * it allocated nothing
+	 */
+	private void assertNoAllocation(IntAction action) {
+
+		for (int i = 0; i < WARMUP; i++) {
+			action.run(i);
+		}
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < CALLS; i++) {
+			action.run(i);
+		}
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+		assertTrue("Allocated " + allocated + " bytes in " + CALLS + " calls", allocated < ALLOWANCE);
+	}
+
+	private interface IntAction {
+
+		void run(int i);
+	}
+
+	class ViewVisitor implements Visitor<Object> {
+
+		long total;
+
+		@MessageType(7)
+		public void dispatch(VisitorTestMessageRouter.OrderView order) {
+
+			total += order.quantity();
+		}
+
+		@MessageType(3)
+		public void dispatch(VisitorTestMessageRouter.CancelView cancel) {
+
+			total -= cancel.id();
+		}
+	}
+
+	class CountingVisitor implements Visitor<Object> {
+
+		int count;
+
+		public void dispatch(String o) {
+
+			count++;
+		}
+
+		public void dispatch(SuperClass o) {
+
+			count += 2;
+		}
+
+		public void dispatch(SubClass o) {
+
+			count += 3;
+		}
+
+		public void dispatch(Object a, Object b) {
+
+			count += 4;
+		}
+
+		public void dispatch(String a, SubClass b) {
+
+			count += 5;
+		}
+
+		public Object handle(String o) {
+
+			return o;
+		}
+
+		public Object handle(SuperClass o) {
+
+			return o;
+		}
+
+		public long handle(int o) {
+
+			return o;
+		}
+	}
+
+	class GuardedVisitor implements Visitor<Object> {
+
+		int count;
+
+		@Guard("isFinal")
+		public void dispatchFinal(SubClass o) {
+
+			count++;
+		}
+
+		public void dispatch(SuperClass o) {
+
+			count += 2;
+		}
+
+		public boolean isFinal(SubClass o) {
+
+			return o instanceof FinalClass;
+		}
+	}
+
+	@GeneratedDispatch
+	class GeneratedVisitor implements Visitor<Object> {
+
+		int count;
+
+		public void dispatch(String o) {
+
+			count++;
+		}
+
+		public void dispatch(SubClass o) {
+
+			count += 2;
+		}
+	}
+}
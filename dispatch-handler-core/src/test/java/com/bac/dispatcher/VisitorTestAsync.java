@@ -0,0 +1,228 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests dispatching to a Visitor asynchronously
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestAsync extends AbstractVisitorTest {
+
+	private DispatchHandler<String> dispatcher;
+
+	private ExecutorService executor;
+
+	private BlockingVisitor visitor;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+		executor = Executors.newFixedThreadPool(8);
+		visitor = new BlockingVisitor();
+	}
+
+	@After
+	public void tearDown() {
+
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void handleAsync_Should_Complete_With_Visitor_Value() throws Exception {
+
+		assertEquals("string", dispatcher.handleAsync(visitor, "a").get(5, TimeUnit.SECONDS));
+		assertEquals("integer", dispatcher.handleAsync(visitor, 1, executor).get(5, TimeUnit.SECONDS));
+		assertNull(dispatcher.handleAsync(visitor, null, executor).get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void dispatchAsync_Should_Run_On_Executor() throws Exception {
+
+		dispatcher.dispatchAsync(visitor, 1, executor).get(5, TimeUnit.SECONDS);
+		dispatcher.dispatchAsync(visitor, 2).get(5, TimeUnit.SECONDS);
+
+		assertEquals(2, visitor.dispatched.get());
+	}
+
+	/**
+	 * An exception thrown by the Visitor, including a checked exception,
+	 * should complete the future exceptionally
+	 */
+	@Test
+	public void visitor_Exception_Should_Complete_Exceptionally() throws Exception {
+
+		CompletableFuture<String> future = dispatcher.handleAsync(visitor, new SuperClass(), executor);
+		try {
+			future.get(5, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			assertSame(IOException.class, e.getCause().getClass());
+		}
+		assertTrue(future.isCompletedExceptionally());
+	}
+
+	/**
+	 * No more than the limited number of Visitor methods should run at once
+	 * however many are submitted, and none should be lost
+	 */
+	@Test
+	public void limited_Executor_Should_Bound_Concurrency() throws Exception {
+
+		Executor limited = DispatchHandler.limited(executor, 2);
+		List<CompletableFuture<String>> futures = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			futures.add(dispatcher.handleAsync(visitor, "slow", limited));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+		assertEquals(50, visitor.calls.get());
+		assertTrue(visitor.maxRunning.get() <= 2);
+	}
+
+	/**
+	 * Submitting to a limited Executor should not block while the limit is
+	 * reached
+	 */
+	@Test
+	public void limited_Executor_Should_Not_Block_Caller() throws Exception {
+
+		CountDownLatch release = new CountDownLatch(1);
+		visitor.gate = release;
+		Executor limited = DispatchHandler.limited(executor, 1);
+		List<CompletableFuture<String>> futures = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(dispatcher.handleAsync(visitor, "gated", limited));
+		}
+		assertEquals(0, futures.stream().filter(CompletableFuture::isDone).count());
+
+		release.countDown();
+		for (CompletableFuture<String> future : futures) {
+			assertEquals("string", future.get(5, TimeUnit.SECONDS));
+		}
+	}
+
+	/**
+	 * A queued call rejected by the underlying Executor when another call
+	 * completes should complete its own future exceptionally, without
+	 * throwing on the thread of the completed call
+	 */
+	@Test
+	public void rejected_Call_Should_Complete_Exceptionally() throws Exception {
+
+		List<Runnable> accepted = new ArrayList<>();
+		Executor limited = DispatchHandler.limited(task -> {
+			if (!accepted.isEmpty()) {
+				throw new RejectedExecutionException();
+			}
+			accepted.add(task);
+		}, 1);
+		CompletableFuture<String> first = dispatcher.handleAsync(visitor, 1, limited);
+		CompletableFuture<String> second = dispatcher.handleAsync(visitor, 2, limited);
+		assertFalse(second.isDone());
+
+		accepted.get(0).run();
+
+		assertEquals("integer", first.get(5, TimeUnit.SECONDS));
+		try {
+			second.get(5, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			assertSame(RejectedExecutionException.class, e.getCause().getClass());
+		}
+		assertTrue(second.isCompletedExceptionally());
+	}
+
+	/**
+	 * A plain task rejected by the underlying Executor should be retried
+	 * rather than lost
+	 */
+	@Test
+	public void rejected_Task_Should_Be_Retried() {
+
+		AtomicInteger rejections = new AtomicInteger();
+		Executor limited = DispatchHandler.limited(task -> {
+			if (rejections.getAndIncrement() == 0) {
+				throw new RejectedExecutionException();
+			}
+			task.run();
+		}, 1);
+		List<String> ran = new ArrayList<>();
+		limited.execute(() -> ran.add("first"));
+		assertTrue(ran.isEmpty());
+
+		limited.execute(() -> ran.add("second"));
+
+		assertEquals(Arrays.asList("first", "second"), ran);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void limit_Less_Than_One_Should_Throw() {
+
+		DispatchHandler.limited(executor, 0);
+	}
+
+	class BlockingVisitor implements Visitor<String> {
+
+		private final AtomicInteger dispatched = new AtomicInteger();
+
+		private final AtomicInteger calls = new AtomicInteger();
+
+		private final AtomicInteger running = new AtomicInteger();
+
+		private final AtomicInteger maxRunning = new AtomicInteger();
+
+		private volatile CountDownLatch gate;
+
+		public void dispatch(Integer o) {
+			dispatched.incrementAndGet();
+		}
+
+		public String handle(String o) throws InterruptedException {
+
+			int now = running.incrementAndGet();
+			maxRunning.accumulateAndGet(now, Math::max);
+			calls.incrementAndGet();
+			try {
+				if (gate != null) {
+					gate.await();
+				} else {
+					Thread.sleep(2);
+				}
+				return "string";
+			} finally {
+				running.decrementAndGet();
+			}
+		}
+
+		public String handle(Integer o) {
+			return "integer";
+		}
+
+		public String handle(SuperClass o) throws IOException {
+			throw new IOException();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests dispatching a collection of targets to a Visitor, both in iteration
+ * order and grouped by class
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestBatch extends AbstractVisitorTest {
+
+	private DispatchHandler<String> dispatcher;
+
+	private RecordingVisitor visitor;
+
+	private final SuperClass superClass = new SuperClass();
+	private final SubClass subClass = new SubClass();
+	private final FinalClass finalClass = new FinalClass();
+
+	private List<Object> targets;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+		visitor = new RecordingVisitor();
+		targets = Arrays.<Object> asList("a", superClass, 1, "b", finalClass, null, subClass, 2, false, "c");
+	}
+
+	@Test
+	public void dispatchAll_Should_Dispatch_In_Iteration_Order() {
+
+		dispatcher.dispatchAll(visitor, targets);
+
+		assertEquals(Arrays.asList("a", superClass, 1, "b", finalClass, subClass, 2, "c"), visitor.visited);
+	}
+
+	/**
+	 * Targets should be grouped by class in order of the first occurrence of
+	 * each class. FinalClass and SubClass are distinct classes although both
+	 * call the SubClass method
+	 */
+	@Test
+	public void grouped_dispatchAll_Should_Dispatch_By_Class() {
+
+		dispatcher.dispatchAll(visitor, targets, true);
+
+		assertEquals(Arrays.asList("a", "b", "c", superClass, 1, 2, finalClass, subClass), visitor.visited);
+	}
+
+	/**
+	 * An Iterable that is not a Collection should be accepted
+	 */
+	@Test
+	public void grouped_dispatchAll_Should_Accept_Iterable() {
+
+		dispatcher.dispatchAll(visitor, () -> targets.iterator(), true);
+
+		assertEquals(8, visitor.visited.size());
+	}
+
+	@Test
+	public void handleAll_Should_Return_Results_In_Target_Order() {
+
+		List<String> expected = Arrays.asList("string", "superClass", "integer", "string", "subClass", null,
+				"subClass", "integer", null, "string");
+
+		assertEquals(expected, dispatcher.handleAll(visitor, targets));
+		assertEquals(expected, dispatcher.handleAll(visitor, targets, true));
+	}
+
+	class RecordingVisitor implements Visitor<String> {
+
+		private final List<Object> visited = new ArrayList<>();
+
+		public void dispatch(String o) {
+			visited.add(o);
+		}
+
+		public void dispatch(Integer o) {
+			visited.add(o);
+		}
+
+		public void dispatch(SuperClass o) {
+			visited.add(o);
+		}
+
+		public void dispatch(SubClass o) {
+			visited.add(o);
+		}
+
+		public String handle(String o) {
+			return "string";
+		}
+
+		public String handle(Integer o) {
+			return "integer";
+		}
+
+		public String handle(SuperClass o) {
+			return "superClass";
+		}
+
+		public String handle(SubClass o) {
+			return "subClass";
+		}
+	}
+}
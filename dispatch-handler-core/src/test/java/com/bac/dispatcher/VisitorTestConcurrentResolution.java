@@ -0,0 +1,186 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests resolution of the same target classes by many threads at once, which
+ * should resolve each target class once and return the same results as
+ * resolution by a single thread
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestConcurrentResolution extends AbstractVisitorTest {
+
+	private static final int THREADS = 64;
+
+	private static final int ROUNDS = 500;
+
+	private DispatchHandler<String> dispatcher;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After
+	public void tearDown() {
+
+		executor.shutdownNow();
+		DispatchMetrics.disable();
+	}
+
+	/**
+	 * Threads missing a key while it is being resolved should wait for the
+	 * leader rather than resolve it again
+	 */
+	@Test
+	public void concurrent_Misses_Should_Resolve_Once() throws Exception {
+
+		SingleFlight<String, String> flights = new SingleFlight<>();
+		ConcurrentHashMap<String, String> table = new ConcurrentHashMap<>();
+		AtomicInteger resolutions = new AtomicInteger();
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<Future<String>> results = new ArrayList<>();
+		results.add(executor.submit(() -> flights.resolve("key", () -> table.get("key"), () -> {
+			resolutions.incrementAndGet();
+			entered.countDown();
+			await(release);
+			table.put("key", "value");
+			return "value";
+		})));
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		for (int i = 1; i < THREADS; i++) {
+			results.add(executor.submit(() -> flights.resolve("key", () -> table.get("key"), () -> {
+				resolutions.incrementAndGet();
+				return "again";
+			})));
+		}
+		assertEquals(1, flights.inFlight());
+		release.countDown();
+
+		for (Future<String> result : results) {
+			assertEquals("value", result.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, resolutions.get());
+		assertEquals(0, flights.inFlight());
+	}
+
+	/**
+	 * A failed resolution should be thrown to every waiting thread and should
+	 * not prevent a later attempt
+	 */
+	@Test
+	public void failed_Resolution_Should_Be_Retried() {
+
+		SingleFlight<String, String> flights = new SingleFlight<>();
+		try {
+			flights.resolve("key", () -> null, () -> {
+				throw new IllegalArgumentException("key");
+			});
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("key", e.getMessage());
+		}
+		assertEquals("value", flights.resolve("key", () -> null, () -> "value"));
+		assertEquals(0, flights.inFlight());
+	}
+
+	/**
+	 * Every thread should see the methods selected by single threaded
+	 * resolution, and each target class should be resolved once. The Visitor
+	 * class is used by this test alone so that its targets are unresolved.
+	 */
+	@Test
+	public void many_Threads_Should_Resolve_Each_Target_Once() throws Exception {
+
+		DispatchMetrics.enable();
+		DispatchMetrics.reset();
+		Object[] targets = { "a", 1, 2L, 3.0, new SuperClass(), new SubClass(), new FinalClass(), Boolean.TRUE };
+		String[] expected = { "string", "integer", "number", "number", "superClass", "subClass", "subClass",
+				null };
+		CyclicBarrier start = new CyclicBarrier(THREADS);
+		List<Future<Integer>> results = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int offset = t;
+			results.add(executor.submit(() -> {
+				StressVisitor visitor = new StressVisitor();
+				start.await();
+				int checked = 0;
+				for (int round = 0; round < ROUNDS; round++) {
+					for (int i = 0; i < targets.length; i++) {
+						int j = (i + offset) % targets.length;
+						assertEquals(expected[j], dispatcher.handle(visitor, targets[j]));
+						assertEquals("string,integer", dispatcher.handle(visitor, targets[0], targets[1]));
+						checked++;
+					}
+				}
+				return checked;
+			}));
+		}
+		for (Future<Integer> result : results) {
+			assertEquals(ROUNDS * targets.length, result.get(60, TimeUnit.SECONDS).intValue());
+		}
+
+		assertEquals(Long.valueOf(targets.length),
+				DispatchMetrics.snapshot().cacheMisses().get(StressVisitor.class.getName()));
+	}
+
+	private static void await(CountDownLatch latch) {
+
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	class StressVisitor implements Visitor<String> {
+
+		public String handle(String o) {
+			return "string";
+		}
+
+		public String handle(Integer o) {
+			return "integer";
+		}
+
+		public String handle(Number o) {
+			return "number";
+		}
+
+		public String handle(SuperClass o) {
+			return "superClass";
+		}
+
+		public String handle(SubClass o) {
+			return "subClass";
+		}
+
+		public String handle(String a, Integer b) {
+			return "string,integer";
+		}
+	}
+}
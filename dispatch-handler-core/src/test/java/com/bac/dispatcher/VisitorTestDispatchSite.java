@@ -0,0 +1,139 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests caller held DispatchSites and the states of their caches
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestDispatchSite extends AbstractVisitorTest {
+
+	private DispatchHandler<String> dispatcher;
+
+	private SiteVisitor visitor;
+
+	private DispatchSite<String> site;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+		visitor = new SiteVisitor();
+		site = dispatcher.site(SiteVisitor.class);
+	}
+
+	@Test
+	public void site_Should_Select_Closest_Method() {
+
+		site.dispatch(visitor, "a");
+		site.dispatch(visitor, new FinalClass());
+		site.dispatch(visitor, new SuperClass());
+		site.dispatch(visitor, 42);
+
+		assertEquals("String, SubClass, SuperClass", String.join(", ", visitor.visited));
+		assertEquals("SubClass", site.handle(visitor, new FinalClass()));
+		assertNull(site.handle(visitor, 42));
+	}
+
+	@Test
+	public void site_Should_Move_Through_States() {
+
+		assertEquals(DispatchSite.State.UNINITIALIZED, site.dispatchState());
+		site.dispatch(visitor, "a");
+		site.dispatch(visitor, "b");
+		assertEquals(DispatchSite.State.MONOMORPHIC, site.dispatchState());
+
+		site.dispatch(visitor, new SuperClass());
+		site.dispatch(visitor, new SubClass());
+		site.dispatch(visitor, new FinalClass());
+		assertEquals(DispatchSite.State.POLYMORPHIC, site.dispatchState());
+
+		site.dispatch(visitor, null);
+		site.dispatch(visitor, 1);
+		assertEquals(DispatchSite.State.MEGAMORPHIC, site.dispatchState());
+		assertEquals(DispatchSite.State.UNINITIALIZED, site.handleState());
+	}
+
+	/**
+	 * A megamorphic site should still select the same methods
+	 */
+	@Test
+	public void megamorphic_Site_Should_Select_Closest_Method() {
+
+		DispatchSite<String> narrow = dispatcher.site(SiteVisitor.class, 1);
+		narrow.handle(visitor, "a");
+		narrow.handle(visitor, new SuperClass());
+		assertEquals(DispatchSite.State.MEGAMORPHIC, narrow.handleState());
+
+		assertEquals("String", narrow.handle(visitor, "a"));
+		assertEquals("SuperClass", narrow.handle(visitor, new SuperClass()));
+		assertEquals("SubClass", narrow.handle(visitor, new FinalClass()));
+	}
+
+	/**
+	 * A site seeing many classes should not change the state of another
+	 */
+	@Test
+	public void sites_Should_Be_Independent() {
+
+		DispatchSite<String> other = dispatcher.site(SiteVisitor.class);
+		for (Object o : new Object[] { "a", 1, 2L, 3.0, new SuperClass(), new SubClass() }) {
+			other.dispatch(visitor, o);
+		}
+		site.dispatch(visitor, "a");
+
+		assertEquals(DispatchSite.State.MEGAMORPHIC, other.dispatchState());
+		assertEquals(DispatchSite.State.MONOMORPHIC, site.dispatchState());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void other_Visitor_Class_Should_Throw_IllegalArgumentException() {
+
+		site.dispatch(new Visitor<Object>() {
+		}, "a");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void zero_Limit_Should_Throw_IllegalArgumentException() {
+
+		dispatcher.site(SiteVisitor.class, 0);
+	}
+
+	class SiteVisitor implements Visitor<String> {
+
+		private final List<String> visited = new ArrayList<>();
+
+		public void dispatch(String o) {
+			visited.add("String");
+		}
+
+		public void dispatch(SuperClass o) {
+			visited.add("SuperClass");
+		}
+
+		public void dispatch(SubClass o) {
+			visited.add("SubClass");
+		}
+
+		public String handle(String o) {
+			return "String";
+		}
+
+		public String handle(SuperClass o) {
+			return "SuperClass";
+		}
+
+		public String handle(SubClass o) {
+			return "SubClass";
+		}
+	}
+}
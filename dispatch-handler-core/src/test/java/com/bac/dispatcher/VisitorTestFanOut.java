@@ -0,0 +1,187 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+
+/**
+ * Tests forwarding each target to several Visitors through a CompositeVisitor
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestFanOut extends AbstractVisitorTest {
+
+	@Mock
+	private MockDestination instance;
+
+	private DispatchHandler<String> dispatcher;
+
+	private SuperClassVisitor superClassVisitor;
+
+	private SubClassVisitor subClassVisitor;
+
+	private StringVisitor stringVisitor;
+
+	private CompositeVisitor composite;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+		superClassVisitor = new SuperClassVisitor(instance);
+		subClassVisitor = new SubClassVisitor(instance);
+		stringVisitor = new StringVisitor();
+		composite = dispatcher.fanOut(superClassVisitor, stringVisitor, subClassVisitor);
+	}
+
+	/**
+	 * Each member should receive the target through its most specific method,
+	 * in the order the members were given
+	 */
+	@Test
+	public void subClass_Target_Should_Be_Forwarded_To_Each_Member_In_Order() {
+
+		SubClass target = new SubClass();
+		dispatcher.dispatch(composite, target);
+
+		InOrder order = inOrder(instance);
+		order.verify(instance).superClassDispatch(target);
+		order.verify(instance).subClassDispatch(target);
+		assertEquals(0, stringVisitor.visited.size());
+	}
+
+	@Test
+	public void superClass_Target_Should_Skip_Members_Without_Method() {
+
+		composite.dispatch(new SuperClass());
+
+		verify(instance).superClassDispatch(any());
+		verify(instance, never()).subClassDispatch(any());
+		assertArrayEquals(new Visitor<?>[] { superClassVisitor }, composite.route(SuperClass.class));
+	}
+
+	/**
+	 * Members relying on the default Object method should not be in the route
+	 */
+	@Test
+	public void route_Should_Hold_Only_Members_With_Methods() {
+
+		assertArrayEquals(new Visitor<?>[] { superClassVisitor, subClassVisitor }, composite.route(FinalClass.class));
+		assertArrayEquals(new Visitor<?>[] { stringVisitor }, composite.route(String.class));
+		assertEquals(0, composite.route(Integer.class).length);
+	}
+
+	@Test
+	public void unmatched_And_Null_Targets_Should_Call_No_Member() {
+
+		composite.dispatch(1);
+		composite.dispatch(null);
+
+		verify(instance, never()).superClassDispatch(any());
+		verify(instance, never()).subClassDispatch(any());
+		assertEquals(0, stringVisitor.visited.size());
+		assertNull(dispatcher.handle(composite, "a"));
+	}
+
+	/**
+	 * A composite should be usable wherever a Visitor is, e.g. in a batch
+	 */
+	@Test
+	public void composite_Should_Accept_Batch() {
+
+		List<Object> targets = new ArrayList<>();
+		targets.add("a");
+		targets.add(new FinalClass());
+		targets.add("b");
+		dispatcher.dispatchAll(composite, targets);
+
+		assertEquals(2, stringVisitor.visited.size());
+		verify(instance).superClassDispatch(any());
+		verify(instance).subClassDispatch(any());
+	}
+
+	/**
+	 * A member with a generated dispatcher should only be in the routes of
+	 * targets it has a method for
+	 */
+	@Test
+	public void generated_Member_Should_Be_Routed_Only_Where_It_Has_Method() {
+
+		GeneratedStringVisitor generated = new GeneratedStringVisitor();
+		CompositeVisitor withGenerated = dispatcher.fanOut(generated, superClassVisitor);
+
+		assertEquals(0, withGenerated.route(Integer.class).length);
+		assertArrayEquals(new Visitor<?>[] { superClassVisitor }, withGenerated.route(SubClass.class));
+		assertArrayEquals(new Visitor<?>[] { generated }, withGenerated.route(String.class));
+
+		withGenerated.dispatch("a");
+		assertEquals(1, generated.visited.size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void member_Exception_Should_Propagate() {
+
+		composite.dispatch("fail");
+	}
+
+	class SuperClassVisitor implements Visitor<String> {
+
+		private final MockDestination mock;
+
+		SuperClassVisitor(MockDestination mock) {
+			this.mock = mock;
+		}
+
+		public void dispatch(SuperClass o) {
+			mock.superClassDispatch(o);
+		}
+	}
+
+	class SubClassVisitor implements Visitor<String> {
+
+		private final MockDestination mock;
+
+		SubClassVisitor(MockDestination mock) {
+			this.mock = mock;
+		}
+
+		public void dispatch(SubClass o) {
+			mock.subClassDispatch(o);
+		}
+	}
+
+	@GeneratedDispatch
+	class GeneratedStringVisitor implements Visitor<String> {
+
+		private final List<String> visited = new ArrayList<>();
+
+		public void dispatch(String o) {
+			visited.add(o);
+		}
+	}
+
+	class StringVisitor implements Visitor<String> {
+
+		private final List<String> visited = new ArrayList<>();
+
+		public void dispatch(String o) {
+			if (o.equals("fail")) {
+				throw new IllegalStateException(o);
+			}
+			visited.add(o);
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+/**
+ * Tests the dispatcher generated at compile time for a Visitor annotated with
+ * GeneratedDispatch. The DispatchHandler should use the generated dispatcher
+ * and select the same methods as the run time resolution.
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestGeneratedDispatch extends AbstractVisitorTest {
+
+	@Mock
+	private MockDestination instance;
+
+	private DispatchHandler<String> dispatcher;
+
+	private GeneratedVisitor visitor;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+		visitor = new GeneratedVisitor(instance);
+	}
+
+	/**
+	 * The generated dispatcher should be found by the DispatchHandler and used
+	 * for every target class without resolution
+	 */
+	@Test
+	public void generated_Dispatcher_Should_Be_Used() throws Exception {
+
+		assertEquals("com.bac.dispatcher.VisitorTestGeneratedDispatch_GeneratedVisitor_Dispatcher",
+				GeneratedDispatchProcessor.dispatcherName(GeneratedVisitor.class.getName()));
+
+		MethodTable table = DispatchEngine.dispatchTable(GeneratedVisitor.class);
+		assertSame(table.lookup(FinalClass.class), table.lookup(String.class));
+	}
+
+	@Test
+	public void finalClass_Target_Should_Call_SubClass_Dispatch() {
+
+		dispatcher.dispatch(visitor, new FinalClass());
+
+		verify(instance).subClassDispatch(any());
+		verify(instance, never()).superClassDispatch(any());
+		verify(instance, never()).interfaceDispatch(any());
+	}
+
+	@Test
+	public void interface_Target_Should_Call_Interface_Dispatch() {
+
+		dispatcher.dispatch(visitor, new MethodIdentifier() {
+		});
+
+		verify(instance).interfaceDispatch(any());
+		verify(instance, never()).superClassDispatch(any());
+		verify(instance, never()).subClassDispatch(any());
+	}
+
+	/**
+	 * A class match should be preferred to an interface match
+	 */
+	@Test
+	public void class_Match_Should_Be_Preferred_To_Interface_Match() {
+
+		dispatcher.dispatch(visitor, new IdentifiedSuperClass());
+
+		verify(instance).superClassDispatch(any());
+		verify(instance, never()).interfaceDispatch(any());
+	}
+
+	@Test
+	public void handle_Should_Return_Visitor_Value() {
+
+		assertEquals("string", dispatcher.handle(visitor, "a"));
+		assertEquals("int", dispatcher.handle(visitor, 1));
+		assertEquals("number", dispatcher.handle(visitor, 1L));
+		assertNull(dispatcher.handle(visitor, false));
+		assertNull(dispatcher.handle(visitor, null));
+	}
+
+	/**
+	 * The run time resolution prefers between unrelated interfaces in the
+	 * order the target declares them, which the generated dispatcher cannot
+	 * know, so such a target should be resolved at run time
+	 */
+	@Test
+	public void unrelated_Interfaces_Should_Be_Preferred_In_Declared_Order() {
+
+		InterfaceVisitor interfaceVisitor = new InterfaceVisitor();
+		assertEquals("first", dispatcher.handle(interfaceVisitor, new FirstSecond()));
+		assertEquals("second", dispatcher.handle(interfaceVisitor, new SecondFirst()));
+		assertEquals("second", dispatcher.handle(interfaceVisitor, new Second() {
+		}));
+
+		dispatcher.dispatch(interfaceVisitor, new SecondFirst());
+		assertEquals("second", interfaceVisitor.dispatched);
+	}
+
+	class IdentifiedSuperClass extends SuperClass implements MethodIdentifier {
+
+	}
+
+	interface First {
+
+	}
+
+	interface Second {
+
+	}
+
+	class FirstSecond implements First, Second {
+
+	}
+
+	class SecondFirst implements Second, First {
+
+	}
+
+	@GeneratedDispatch
+	class InterfaceVisitor implements Visitor<String> {
+
+		private String dispatched;
+
+		public void dispatch(First o) {
+			dispatched = "first";
+		}
+
+		public void dispatch(Second o) {
+			dispatched = "second";
+		}
+
+		public String handle(First o) {
+			return "first";
+		}
+
+		public String handle(Second o) {
+			return "second";
+		}
+	}
+
+	@GeneratedDispatch
+	class GeneratedVisitor implements Visitor<String> {
+
+		private final MockDestination mock;
+
+		public GeneratedVisitor(MockDestination mock) {
+
+			this.mock = mock;
+		}
+
+		public void dispatch(MethodIdentifier o) {
+			mock.interfaceDispatch(o);
+		}
+
+		public void dispatch(SuperClass o) {
+			mock.superClassDispatch(o);
+		}
+
+		public void dispatch(SubClass o) {
+			mock.subClassDispatch(o);
+		}
+
+		public String handle(Number o) {
+			return "number";
+		}
+
+		public String handle(int o) {
+			return "int";
+		}
+
+		public String handle(String o) {
+			return "string";
+		}
+	}
+
+	interface MockDestination {
+
+		void interfaceDispatch(MethodIdentifier o);
+
+		void superClassDispatch(SuperClass o);
+
+		void subClassDispatch(SubClass o);
+	}
+}
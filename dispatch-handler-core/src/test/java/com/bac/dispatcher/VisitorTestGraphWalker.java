@@ -0,0 +1,224 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests walking a graph of objects that do not accept a Visitor
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestGraphWalker extends AbstractVisitorTest {
+
+	private DispatchHandler<String> dispatcher;
+
+	private RecordingVisitor visitor;
+
+	private GraphWalker<Node> walker;
+
+	/*
+	 * a
+	 * +- b
+	 * |  +- d
+	 * |  +- e
+	 * +- c
+	 */
+	private Node a, b, c, d, e;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+		visitor = new RecordingVisitor();
+		walker = GraphWalker.ofIterable(n -> n.children);
+		d = new Node("d");
+		e = new Leaf("e");
+		b = new Node("b", d, e);
+		c = new Leaf("c");
+		a = new Node("a", b, c);
+	}
+
+	@Test
+	public void walk_Should_Visit_In_Pre_Order() {
+
+		dispatcher.walk(a, walker, visitor);
+
+		assertEquals("a b d e c", visitor.visited());
+	}
+
+	@Test
+	public void walk_Should_Visit_In_Post_Order() {
+
+		dispatcher.walk(a, walker.postOrder(), visitor);
+
+		assertEquals("d e b c a", visitor.visited());
+	}
+
+	/**
+	 * The Leaf class should be dispatched to its own method
+	 */
+	@Test
+	public void walk_Should_Dispatch_To_Most_Appropriate_Method() {
+
+		dispatcher.walk(a, walker, visitor);
+
+		assertEquals(Arrays.asList("e", "c"), visitor.leaves);
+	}
+
+	@Test
+	public void pruned_Node_Should_Be_Visited_Without_Children() {
+
+		dispatcher.walk(a, walker.pruning(n -> n == b), visitor);
+		assertEquals("a b c", visitor.visited());
+
+		visitor = new RecordingVisitor();
+		dispatcher.walk(a, walker.pruning(n -> n == b).postOrder(), visitor);
+		assertEquals("b c a", visitor.visited());
+	}
+
+	@Test
+	public void cycle_Detection_Should_Visit_Each_Node_Once() {
+
+		d.children.add(a);
+		d.children.add(e);
+
+		dispatcher.walk(a, walker.detectingCycles(), visitor);
+		assertEquals("a b d e c", visitor.visited());
+
+		visitor = new RecordingVisitor();
+		dispatcher.walk(a, walker.detectingCycles().postOrder(), visitor);
+		assertEquals("e d b c a", visitor.visited());
+	}
+
+	/**
+	 * The children extractor may supply nulls which are dispatched to the
+	 * Object method
+	 */
+	@Test
+	public void null_Child_Should_Be_Dispatched() {
+
+		c.children.add(null);
+
+		dispatcher.walk(a, walker, visitor);
+
+		assertEquals("a b d e c null", visitor.visited());
+	}
+
+	/**
+	 * A walk should not be limited by the depth of the call stack
+	 */
+	@Test
+	public void deep_Graph_Should_Not_Overflow_Stack() {
+
+		Node root = new Node("0");
+		Node node = root;
+		for (int i = 1; i < 1_000_000; i++) {
+			Node child = new Node(Integer.toString(i));
+			node.children.add(child);
+			node = child;
+		}
+		CountingVisitor counter = new CountingVisitor();
+
+		dispatcher.walk(root, walker.postOrder(), counter);
+
+		assertEquals(1_000_000, counter.count);
+	}
+
+	/**
+	 * Nodes should be compared by identity, not by equals, so that equal
+	 * nodes are each visited once
+	 */
+	@Test
+	public void cycle_Detection_Should_Compare_Nodes_By_Identity() {
+
+		String root = "root";
+		List<String> members = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			members.add(new String("member"));
+		}
+		List<String> children = new ArrayList<>(members);
+		children.addAll(members);
+		GraphWalker<String> strings = GraphWalker
+				.ofIterable(s -> s == root ? children : Collections.<String> emptyList());
+
+		dispatcher.walk(root, strings.detectingCycles(), visitor);
+
+		assertEquals(1001, visitor.nodes.size());
+		for (int i = 0; i < 1000; i++) {
+			assertSame(members.get(i), visitor.nodes.get(i + 1));
+		}
+	}
+
+	class Node {
+
+		private final String name;
+
+		private final List<Node> children;
+
+		Node(String name, Node... children) {
+
+			this.name = name;
+			this.children = new ArrayList<>(Arrays.asList(children));
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	class Leaf extends Node {
+
+		Leaf(String name) {
+			super(name);
+		}
+	}
+
+	class RecordingVisitor implements Visitor<String> {
+
+		private final List<Object> nodes = new ArrayList<>();
+
+		private final List<String> leaves = new ArrayList<>();
+
+		@Override
+		public void dispatch(Object o) {
+			nodes.add(o);
+		}
+
+		public void dispatch(Node o) {
+			nodes.add(o);
+		}
+
+		public void dispatch(Leaf o) {
+			nodes.add(o);
+			leaves.add(o.toString());
+		}
+
+		String visited() {
+
+			List<String> names = new ArrayList<>();
+			for (Object node : nodes) {
+				names.add(String.valueOf(node));
+			}
+			return String.join(" ", names);
+		}
+	}
+
+	class CountingVisitor implements Visitor<String> {
+
+		private int count;
+
+		public void dispatch(Node o) {
+			count++;
+		}
+	}
+}
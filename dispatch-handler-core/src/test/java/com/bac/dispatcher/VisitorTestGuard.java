@@ -0,0 +1,189 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the selection of Visitor methods guarded by predicates in addition to
+ * the type of the target
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestGuard extends AbstractVisitorTest {
+
+	private DispatchHandler<String> dispatcher;
+
+	private GuardedVisitor visitor;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+		visitor = new GuardedVisitor();
+	}
+
+	@Test
+	public void guard_Should_Select_Method_When_Predicate_Holds() {
+
+		dispatcher.dispatch(visitor, new Order(true, false));
+		dispatcher.dispatch(visitor, new Order(false, false));
+
+		assertEquals(Arrays.asList("priority", "order"), visitor.visited);
+	}
+
+	/**
+	 * The guard with the lower order should be tested first
+	 */
+	@Test
+	public void guards_Should_Be_Tested_In_Order() {
+
+		dispatcher.dispatch(visitor, new Order(true, true));
+		dispatcher.dispatch(visitor, new Order(false, true));
+
+		assertEquals(Arrays.asList("large", "large"), visitor.visited);
+	}
+
+	@Test
+	public void guard_Should_Apply_To_Subclass_Target() {
+
+		dispatcher.dispatch(visitor, new RushOrder());
+
+		assertEquals(Arrays.asList("priority"), visitor.visited);
+	}
+
+	/**
+	 * A guard on a wider type should not take precedence over an unguarded
+	 * method accepting the target more closely
+	 */
+	@Test
+	public void wider_Guard_Should_Apply_Only_Below_Selected_Method() {
+
+		dispatcher.dispatch(visitor, new Order(false, false));
+		dispatcher.dispatch(visitor, Boolean.TRUE);
+		dispatcher.dispatch(visitor, 1);
+
+		assertEquals(Arrays.asList("order", "audited"), visitor.visited);
+	}
+
+	/**
+	 * A guarded method may be an overload of dispatch, in which case targets
+	 * failing the guard fall through to the next most appropriate method
+	 */
+	@Test
+	public void guarded_Dispatch_Overload_Should_Fall_Through() {
+
+		dispatcher.dispatch(visitor, "");
+		dispatcher.dispatch(visitor, "a");
+
+		assertEquals(Arrays.asList("empty"), visitor.visited);
+	}
+
+	@Test
+	public void guard_Should_Select_Handle_Method() {
+
+		assertEquals("priority", dispatcher.handle(visitor, new Order(true, false)));
+		assertEquals("order", dispatcher.handle(visitor, new Order(false, true)));
+		assertEquals(null, dispatcher.handle(visitor, Boolean.TRUE));
+	}
+
+	@Test
+	public void specialized_Dispatcher_Should_Evaluate_Guards() {
+
+		SpecializedDispatcher<String> specialized = dispatcher.specialize(GuardedVisitor.class);
+		specialized.dispatch(visitor, new Order(true, false));
+		specialized.dispatch(visitor, new Order(false, false));
+
+		assertEquals(Arrays.asList("priority", "order"), visitor.visited);
+		assertEquals("priority", specialized.handle(visitor, new Order(true, false)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void missing_Predicate_Should_Throw() {
+
+		dispatcher.dispatch(new MissingPredicateVisitor(), "a");
+	}
+
+	class Order {
+
+		private final boolean priority;
+
+		private final boolean large;
+
+		Order(boolean priority, boolean large) {
+
+			this.priority = priority;
+			this.large = large;
+		}
+
+		public boolean isPriority() {
+			return priority;
+		}
+
+		public boolean isLarge() {
+			return large;
+		}
+	}
+
+	class RushOrder extends Order {
+
+		RushOrder() {
+			super(true, false);
+		}
+	}
+
+	class GuardedVisitor implements Visitor<String> {
+
+		private final List<String> visited = new ArrayList<>();
+
+		@Guard("isPriority")
+		public void dispatchPriority(Order o) {
+			visited.add("priority");
+		}
+
+		@Guard(value = "isLarge", order = -1)
+		public void dispatchLarge(Order o) {
+			visited.add("large");
+		}
+
+		public void dispatch(Order o) {
+			visited.add("order");
+		}
+
+		@Guard("isEmpty")
+		public void dispatch(String o) {
+			visited.add("empty");
+		}
+
+		@Guard("isAudited")
+		public void dispatchAudited(Object o) {
+			visited.add("audited");
+		}
+
+		public boolean isAudited(Object o) {
+			return Boolean.TRUE.equals(o);
+		}
+
+		@Guard("isPriority")
+		public String handlePriority(Order o) {
+			return "priority";
+		}
+
+		public String handle(Order o) {
+			return "order";
+		}
+	}
+
+	class MissingPredicateVisitor implements Visitor<String> {
+
+		@Guard("isMissing")
+		public void dispatch(String o) {
+		}
+	}
+}
@@ -0,0 +1,280 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests replaying a journal of binary records through Visitors
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestJournalReplay extends AbstractVisitorTest {
+
+	private static final int RECORDS = 10_000;
+
+	private static final int EVENT = 1;
+
+	private static final int NOTE = 2;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path journal;
+
+	private JournalReplay.Builder builder;
+
+	@Before
+	public void setEnv() throws IOException {
+
+		journal = folder.newFile("journal").toPath();
+		builder = JournalReplay.builder().decoder(VisitorTestJournalReplay::decode).decoders(3).batchSize(7)
+				.maxBatches(4).regionSize(4096);
+	}
+
+	/**
+	 * Records should be dispatched in the order of the journal across batches
+	 * and regions
+	 */
+	@Test
+	public void records_Should_Be_Dispatched_In_Order() throws IOException {
+
+		long size = write(RECORDS, ByteOrder.BIG_ENDIAN);
+		EventVisitor visitor = new EventVisitor();
+
+		ReplayProgress progress = builder.build().replay(journal, visitor);
+
+		assertEquals(RECORDS, visitor.events.size());
+		for (int i = 0; i < RECORDS; i++) {
+			assertEquals(i, visitor.events.get(i).sequence);
+		}
+		assertEquals(RECORDS / 10, visitor.notes);
+		assertEquals(RECORDS + RECORDS / 10, progress.records());
+		assertEquals(size, progress.bytes());
+		assertEquals(1.0, progress.fraction(), 0);
+	}
+
+	@Test
+	public void byte_Order_Should_Apply_To_Headers_And_Bodies() throws IOException {
+
+		write(100, ByteOrder.LITTLE_ENDIAN);
+		EventVisitor visitor = new EventVisitor();
+
+		builder.order(ByteOrder.LITTLE_ENDIAN).build().replay(journal, visitor);
+
+		assertEquals(100, visitor.events.size());
+		assertEquals(99, visitor.events.get(99).sequence);
+	}
+
+	/**
+	 * Records with equal keys should be dispatched in order by the Visitor of
+	 * a single partition
+	 */
+	@Test
+	public void partitioned_Records_Should_Keep_Order_By_Key() throws IOException {
+
+		write(RECORDS, ByteOrder.BIG_ENDIAN);
+		List<EventVisitor> visitors = Collections.synchronizedList(new ArrayList<>());
+
+		builder.partitions(4).build().replay(journal, VisitorTestJournalReplay::key, () -> {
+			EventVisitor visitor = new EventVisitor();
+			visitors.add(visitor);
+			return visitor;
+		});
+
+		assertEquals(4, visitors.size());
+		int total = 0;
+		for (EventVisitor visitor : visitors) {
+			long[] last = new long[Event.KEYS];
+			Arrays.fill(last, -1);
+			for (Event event : visitor.events) {
+				assertTrue(event.sequence > last[event.key]);
+				last[event.key] = event.sequence;
+			}
+			total += visitor.events.size();
+		}
+		assertEquals(RECORDS, total);
+	}
+
+	/**
+	 * A record cut short at the end of the journal should not be replayed
+	 */
+	@Test
+	public void incomplete_Last_Record_Should_Be_Ignored() throws IOException {
+
+		long size = write(10, ByteOrder.BIG_ENDIAN);
+		try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			channel.write((ByteBuffer) ByteBuffer.allocate(12).putInt(16).putInt(EVENT).putInt(0).flip());
+		}
+		EventVisitor visitor = new EventVisitor();
+
+		ReplayProgress progress = builder.build().replay(journal, visitor);
+
+		assertEquals(10, visitor.events.size());
+		assertEquals(size, progress.bytes());
+		assertEquals(size + 12, progress.totalBytes());
+	}
+
+	@Test
+	public void progress_Should_Be_Reported() throws IOException {
+
+		write(RECORDS, ByteOrder.BIG_ENDIAN);
+		List<ReplayProgress> reports = new ArrayList<>();
+
+		builder.progress(reports::add, 0, TimeUnit.SECONDS).build().replay(journal, new EventVisitor());
+
+		assertTrue(reports.size() > 1);
+		for (int i = 1; i < reports.size(); i++) {
+			assertTrue(reports.get(i).records() >= reports.get(i - 1).records());
+		}
+		assertEquals(RECORDS + RECORDS / 10, reports.get(reports.size() - 1).records());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void visitor_Exception_Should_End_Replay() throws IOException {
+
+		write(RECORDS, ByteOrder.BIG_ENDIAN);
+
+		builder.build().replay(journal, new Visitor<Object>() {
+
+			@SuppressWarnings("unused")
+			public void dispatch(Event event) {
+
+				if (event.sequence == 500) {
+					throw new IllegalStateException();
+				}
+			}
+		});
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void partition_Exception_Should_End_Replay() throws IOException {
+
+		write(RECORDS, ByteOrder.BIG_ENDIAN);
+
+		builder.partitions(2).build().replay(journal, VisitorTestJournalReplay::key, () -> new Visitor<Object>() {
+
+			@SuppressWarnings("unused")
+			public void dispatch(Event event) {
+
+				if (event.sequence == 500) {
+					throw new IllegalStateException();
+				}
+			}
+		});
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void decoder_Exception_Should_End_Replay() throws IOException {
+
+		write(RECORDS, ByteOrder.BIG_ENDIAN);
+
+		builder.decoder((typeId, buffer, offset, length) -> 1 / (buffer.getLong(offset) == 700 ? 0 : 1)).build()
+				.replay(journal, new EventVisitor());
+	}
+
+	@Test
+	public void record_Longer_Than_Region_Should_Throw_IOException() throws IOException {
+
+		try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+			channel.write((ByteBuffer) ByteBuffer.allocate(8 + 5000).putInt(5000).putInt(NOTE).position(5008).flip());
+		}
+		try {
+			builder.build().replay(journal, new EventVisitor());
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("region size"));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void builder_Without_Decoder_Should_Throw_IllegalStateException() {
+
+		JournalReplay.builder().build();
+	}
+
+	/**
+	 * Writes events with every tenth followed by a note and returns the
+	 * length of the journal
+	 */
+	private long write(int events, ByteOrder order) throws IOException {
+
+		ByteBuffer buffer = ByteBuffer.allocate(events * 28).order(order);
+		for (int i = 0; i < events; i++) {
+			buffer.putInt(12).putInt(EVENT).putLong(i).putInt(i % Event.KEYS);
+			if (i % 10 == 0) {
+				buffer.putInt(0).putInt(NOTE);
+			}
+		}
+		buffer.flip();
+		Files.write(journal, Arrays.copyOf(buffer.array(), buffer.limit()));
+		return buffer.limit();
+	}
+
+	private static Object decode(int typeId, ByteBuffer buffer, int offset, int length) {
+
+		if (typeId == EVENT) {
+			return new Event(buffer.getLong(offset), buffer.getInt(offset + 8));
+		}
+		return typeId == NOTE ? new Note() : null;
+	}
+
+	private static Object key(Object o) {
+
+		return o instanceof Event ? ((Event) o).key : -1;
+	}
+
+	static final class Event {
+
+		static final int KEYS = 16;
+
+		final long sequence;
+
+		final int key;
+
+		Event(long sequence, int key) {
+
+			this.sequence = sequence;
+			this.key = key;
+		}
+	}
+
+	static final class Note {
+	}
+
+	class EventVisitor implements Visitor<Object> {
+
+		final List<Event> events = new ArrayList<>();
+
+		int notes;
+
+		public void dispatch(Event event) {
+
+			events.add(event);
+		}
+
+		public void dispatch(Note note) {
+
+			notes++;
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+/**
+ * Tests Visitors built from lambdas registered for target classes
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestLambdaVisitor extends AbstractVisitorTest {
+
+	@Mock
+	private MockDestination instance;
+
+	private DispatchHandler<Integer> dispatcher;
+
+	private List<Object> otherwise;
+
+	private LambdaVisitor<Integer> visitor;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<Integer>();
+		otherwise = new ArrayList<>();
+		visitor = Visitor.<Integer> builder()
+				.on(String.class, instance::stringDispatch)
+				.on(SuperClass.class, instance::superClassDispatch)
+				.on(SubClass.class, instance::subClassDispatch)
+				.onHandle(String.class, String::length)
+				.onHandle(SuperClass.class, o -> 1)
+				.orElse(otherwise::add);
+	}
+
+	@Test
+	public void target_Should_Be_Passed_To_Its_Lambda() {
+
+		visitor.dispatch("a");
+		dispatcher.dispatch(visitor, new SuperClass());
+
+		verify(instance).stringDispatch("a");
+		verify(instance).superClassDispatch(any());
+		verify(instance, never()).subClassDispatch(any());
+	}
+
+	/**
+	 * A FinalClass target should resolve to the lambda for SubClass, which
+	 * should then be cached for FinalClass
+	 */
+	@Test
+	public void subClass_Target_Should_Use_Closest_Lambda() {
+
+		FinalClass target = new FinalClass();
+		visitor.dispatch(target);
+
+		verify(instance).subClassDispatch(target);
+		verify(instance, never()).superClassDispatch(any());
+		assertTrue(visitor.resolvedTargets().contains(FinalClass.class));
+	}
+
+	@Test
+	public void unregistered_Target_Should_Use_OrElse() {
+
+		visitor.dispatch(42);
+		visitor.dispatch(null);
+
+		assertEquals(2, otherwise.size());
+		assertEquals(42, otherwise.get(0));
+		assertNull(otherwise.get(1));
+	}
+
+	@Test
+	public void handle_Should_Return_Lambda_Value() {
+
+		assertEquals(Integer.valueOf(3), dispatcher.handle(visitor, "abc"));
+		assertEquals(Integer.valueOf(1), visitor.handle(new FinalClass()));
+		assertNull(visitor.handle(42));
+	}
+
+	/**
+	 * A lambda added to a built Visitor should apply to its class and
+	 * subclasses at once while other cached lambdas are kept
+	 */
+	@Test
+	public void lambda_Added_After_Build_Should_Replace_Cached_Lambda() {
+
+		List<Object> finals = new ArrayList<>();
+		FinalClass target = new FinalClass();
+		visitor.dispatch(target);
+		visitor.dispatch("a");
+
+		visitor.on(FinalClass.class, finals::add);
+
+		assertTrue(visitor.resolvedTargets().contains(String.class));
+		assertFalse(visitor.resolvedTargets().contains(FinalClass.class));
+		visitor.dispatch(target);
+		assertEquals(1, finals.size());
+		verify(instance).subClassDispatch(target);
+	}
+
+	/**
+	 * A Visitor built without orElse should ignore unregistered targets
+	 */
+	@Test
+	public void build_Should_Ignore_Unregistered_Targets() {
+
+		LambdaVisitor<Object> ignoring = Visitor.builder().on(String.class, instance::stringDispatch).build();
+
+		ignoring.dispatch(42);
+		ignoring.dispatch("a");
+
+		verify(instance).stringDispatch("a");
+		assertNull(ignoring.handle("a"));
+	}
+
+	/**
+	 * An array should be passed to the lambda of the narrowest array type
+	 * accepting it, in preference to Object and the interfaces of arrays
+	 */
+	@Test
+	public void array_Target_Should_Use_Closest_Array_Lambda() {
+
+		LambdaVisitor<String> arrays = Visitor.<String> builder()
+				.onHandle(Object.class, o -> "object")
+				.onHandle(Object[].class, o -> "objectArray")
+				.onHandle(Cloneable.class, o -> "cloneable")
+				.build();
+
+		assertEquals("objectArray", arrays.handle(new String[0]));
+		assertEquals("objectArray", arrays.handle(new Integer[0][]));
+		assertEquals("cloneable", arrays.handle(new int[0]));
+		assertEquals("object", arrays.handle("a"));
+	}
+
+	/**
+	 * The lambda for an interface should be selected where no class of the
+	 * target has a lambda
+	 */
+	@Test
+	public void interface_Lambda_Should_Be_Selected() {
+
+		List<Object> identified = new ArrayList<>();
+		visitor.on(MethodIdentifier.class, identified::add);
+		MethodIdentifier target = new MethodIdentifier() {
+		};
+
+		visitor.dispatch(target);
+
+		assertEquals(1, identified.size());
+		assertEquals(0, otherwise.size());
+	}
+}
@@ -0,0 +1,345 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests routing binary records by type id to Visitor methods accepting
+ * MessageViews
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestMessageRouter extends AbstractVisitorTest {
+
+	private static final int ORDER = 7;
+
+	private static final int CANCEL = 3;
+
+	private DispatchHandler<Long> dispatcher;
+
+	private OrderVisitor visitor;
+
+	private MessageRouter<Long> router;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<Long>();
+		visitor = new OrderVisitor();
+		router = dispatcher.router(visitor);
+	}
+
+	@Test
+	public void records_Should_Be_Dispatched_By_Type_Id() {
+
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		order(buffer, 1, 100);
+		cancel(buffer, 1);
+		order(buffer, 2, 250);
+		buffer.flip();
+
+		assertEquals(buffer.limit(), router.dispatchAll(buffer));
+		assertEquals(0, buffer.position());
+		assertEquals(3, visitor.visited.size());
+		assertEquals("order 1 x 100", visitor.visited.get(0));
+		assertEquals("cancel 1", visitor.visited.get(1));
+		assertEquals("order 2 x 250", visitor.visited.get(2));
+	}
+
+	/**
+	 * One view should be wrapped around every record of its type
+	 */
+	@Test
+	public void view_Should_Be_Reused_For_Each_Record() {
+
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		order(buffer, 1, 100);
+		order(buffer, 2, 200);
+		buffer.flip();
+
+		router.dispatchAll(buffer);
+
+		assertEquals(2, visitor.views.size());
+		assertSame(visitor.views.get(0), visitor.views.get(1));
+	}
+
+	@Test
+	public void handle_Should_Return_Value_For_Record() {
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(64).order(ByteOrder.LITTLE_ENDIAN);
+		order(buffer, 4, 30);
+		order(buffer, 5, 12);
+
+		assertEquals(Long.valueOf(30), router.handle(buffer, 0));
+		assertEquals(Long.valueOf(12), router.handle(buffer, MessageRouter.HEADER_LENGTH + 12));
+	}
+
+	/**
+	 * Records of an unknown type id should fall to the default methods, which
+	 * do nothing
+	 */
+	@Test
+	public void unknown_Type_Id_Should_Be_Skipped() {
+
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		buffer.putInt(4).putInt(99).putInt(1);
+		order(buffer, 1, 100);
+		buffer.flip();
+
+		router.dispatchAll(buffer);
+
+		assertEquals(1, visitor.visited.size());
+		assertNull(router.handle(buffer, 0));
+	}
+
+	/**
+	 * A registered view should be passed to the method resolved for its class
+	 */
+	@Test
+	public void registered_View_Should_Use_Overload_Resolution() {
+
+		router.register(ORDER, new LimitOrderView()).register(12, new OrderView());
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		order(buffer, 1, 100);
+		buffer.putInt(12).putInt(12).putLong(3).putInt(40);
+		buffer.flip();
+
+		router.dispatchAll(buffer);
+
+		assertEquals("limit order 1 x 100", visitor.visited.get(0));
+		assertEquals("order 3 x 40", visitor.visited.get(1));
+	}
+
+	/**
+	 * A registered view of a class with no method of its own should be passed
+	 * to the Object method
+	 */
+	@Test
+	public void view_Without_Method_Should_Use_Default() {
+
+		List<Object> defaulted = new ArrayList<>();
+		MessageRouter<Object> router = new DispatchHandler<Object>().router(new Visitor<Object>() {
+
+			@Override
+			public void dispatch(Object o) {
+
+				defaulted.add(o);
+			}
+		});
+		CancelView view = new CancelView();
+		router.register(CANCEL, view);
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		cancel(buffer, 1);
+		buffer.flip();
+
+		router.dispatch(buffer, 0);
+
+		assertEquals(1, defaulted.size());
+		assertSame(view, defaulted.get(0));
+	}
+
+	/**
+	 * Only complete records should be dispatched
+	 */
+	@Test
+	public void partial_Record_Should_Be_Left() {
+
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		order(buffer, 1, 100);
+		int end = buffer.position();
+		buffer.putInt(12).putInt(ORDER).putLong(2);
+		buffer.flip();
+
+		assertEquals(end, router.dispatchAll(buffer));
+		assertEquals(1, visitor.visited.size());
+
+		buffer.position(2);
+		buffer.limit(end);
+		assertEquals(2, router.dispatchAll(buffer));
+		assertEquals(1, visitor.visited.size());
+	}
+
+	/**
+	 * Records framed by the caller should be routed by the type id given
+	 */
+	@Test
+	public void unframed_Record_Should_Be_Dispatched() {
+
+		ByteBuffer buffer = ByteBuffer.allocate(32);
+		buffer.putInt(0).putLong(9).putInt(5);
+
+		router.dispatch(ORDER, buffer, 4, 12);
+
+		assertEquals("order 9 x 5", visitor.visited.get(0));
+		assertEquals(Long.valueOf(5), router.handle(ORDER, buffer, 4, 12));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negative_Length_Should_Throw_IllegalArgumentException() {
+
+		ByteBuffer buffer = ByteBuffer.allocate(32);
+		buffer.putInt(-8).putInt(ORDER);
+		buffer.flip();
+
+		router.dispatchAll(buffer);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void registered_View_Of_Wrong_Class_Should_Throw_IllegalArgumentException() {
+
+		router.register(ORDER, new CancelView());
+	}
+
+	/**
+	 * Type ids beyond the maximum should be rejected rather than sizing the
+	 * routes by them, and records bearing them skipped
+	 */
+	@Test
+	public void type_Id_Beyond_Maximum_Should_Throw_IllegalArgumentException() {
+
+		try {
+			router.register(Integer.MAX_VALUE - 1, new CancelView());
+			fail("Registered an out of range type id");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		try {
+			dispatcher.router(new SparseVisitor());
+			fail("Declared an out of range type id");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		router.register(MessageRouter.MAX_TYPE_ID, new CancelView());
+
+		ByteBuffer buffer = ByteBuffer.allocate(32);
+		buffer.putInt(8).putInt(MessageRouter.MAX_TYPE_ID + 1).putLong(3);
+		buffer.putInt(8).putInt(MessageRouter.MAX_TYPE_ID).putLong(4);
+		buffer.flip();
+		router.dispatchAll(buffer);
+
+		assertEquals(Arrays.asList("cancel 4"), visitor.visited);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void conflicting_Type_Ids_Should_Throw_IllegalArgumentException() {
+
+		dispatcher.router(new ConflictingVisitor());
+	}
+
+	private static void order(ByteBuffer buffer, long id, int quantity) {
+
+		buffer.putInt(12).putInt(ORDER).putLong(id).putInt(quantity);
+	}
+
+	private static void cancel(ByteBuffer buffer, long id) {
+
+		buffer.putInt(8).putInt(CANCEL).putLong(id);
+	}
+
+	public static class OrderView implements MessageView {
+
+		private ByteBuffer buffer;
+
+		private int offset;
+
+		@Override
+		public void wrap(ByteBuffer buffer, int offset, int length) {
+
+			this.buffer = buffer;
+			this.offset = offset;
+		}
+
+		long id() {
+
+			return buffer.getLong(offset);
+		}
+
+		int quantity() {
+
+			return buffer.getInt(offset + 8);
+		}
+	}
+
+	public static class LimitOrderView extends OrderView {
+	}
+
+	public static class CancelView implements MessageView {
+
+		private ByteBuffer buffer;
+
+		private int offset;
+
+		@Override
+		public void wrap(ByteBuffer buffer, int offset, int length) {
+
+			this.buffer = buffer;
+			this.offset = offset;
+		}
+
+		long id() {
+
+			return buffer.getLong(offset);
+		}
+	}
+
+	class OrderVisitor implements Visitor<Long> {
+
+		final List<String> visited = new ArrayList<>();
+
+		final List<MessageView> views = new ArrayList<>();
+
+		@MessageType(ORDER)
+		public void dispatch(OrderView order) {
+
+			visited.add("order " + order.id() + " x " + order.quantity());
+			views.add(order);
+		}
+
+		public void dispatch(LimitOrderView order) {
+
+			visited.add("limit order " + order.id() + " x " + order.quantity());
+		}
+
+		@MessageType(CANCEL)
+		public void dispatch(CancelView cancel) {
+
+			visited.add("cancel " + cancel.id());
+		}
+
+		@MessageType(ORDER)
+		public Long handle(OrderView order) {
+
+			return Long.valueOf(order.quantity());
+		}
+	}
+
+	class SparseVisitor implements Visitor<Long> {
+
+		@MessageType(1_000_000)
+		public void dispatch(OrderView order) {
+		}
+	}
+
+	class ConflictingVisitor implements Visitor<Long> {
+
+		@MessageType(ORDER)
+		public void dispatch(OrderView order) {
+		}
+
+		@MessageType(ORDER)
+		public void dispatch(CancelView cancel) {
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Tests the metrics recorded for dispatch and handle calls
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestMetrics extends AbstractVisitorTest {
+
+	private DispatchHandler<String> dispatcher;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+		DispatchMetrics.enable();
+		DispatchMetrics.reset();
+	}
+
+	@After
+	public void tearDown() {
+
+		DispatchMetrics.disable();
+	}
+
+	@Test
+	public void disabled_Metrics_Should_Record_Nothing() {
+
+		DispatchMetrics.disable();
+		dispatcher.dispatch(new CountedVisitor(), "a");
+
+		assertFalse(DispatchMetrics.isEnabled());
+		assertTrue(DispatchMetrics.snapshot().invocations().isEmpty());
+		assertEquals(0, DispatchMetrics.snapshot().invocationLatency().count());
+	}
+
+	/**
+	 * The first lookup of each target class requires resolution and later
+	 * lookups should find it resolved. Resolved methods are shared, so the
+	 * Visitor class is used by this test alone.
+	 */
+	@Test
+	public void lookups_Should_Count_Hits_And_Misses() {
+
+		ResolvedVisitor visitor = new ResolvedVisitor();
+		dispatcher.dispatch(visitor, "a");
+		dispatcher.dispatch(visitor, "b");
+		dispatcher.dispatch(visitor, "c");
+		dispatcher.dispatch(visitor, 1);
+
+		DispatchMetrics metrics = DispatchMetrics.snapshot();
+		assertEquals(Long.valueOf(2), metrics.cacheMisses().get(ResolvedVisitor.class.getName()));
+		assertEquals(Long.valueOf(2), metrics.cacheHits().get(ResolvedVisitor.class.getName()));
+	}
+
+	@Test
+	public void invocations_Should_Be_Counted_By_Target_Class() {
+
+		CountedVisitor visitor = new CountedVisitor();
+		dispatcher.dispatch(visitor, "a");
+		dispatcher.handle(visitor, "b");
+		dispatcher.handle(visitor, null);
+
+		DispatchMetrics metrics = DispatchMetrics.snapshot();
+		assertEquals(Long.valueOf(2), metrics.invocations().get(String.class.getName()));
+		assertEquals(Long.valueOf(1), metrics.invocations().get(Object.class.getName()));
+		assertEquals(3, metrics.invocationLatency().count());
+		assertEquals(3, metrics.resolutionLatency().count());
+	}
+
+	/**
+	 * Only calls reaching the default methods of the Visitor interface should
+	 * be counted as fallbacks
+	 */
+	@Test
+	public void default_Methods_Should_Count_Fallbacks() {
+
+		CountedVisitor counted = new CountedVisitor();
+		dispatcher.dispatch(counted, 1L);
+		dispatcher.handle(counted, 1L);
+		dispatcher.handle(counted, "a");
+		OverridingVisitor overriding = new OverridingVisitor();
+		dispatcher.handle(overriding, 1L);
+
+		DispatchMetrics metrics = DispatchMetrics.snapshot();
+		assertEquals(Long.valueOf(2), metrics.fallbacks().get(CountedVisitor.class.getName()));
+		assertNull(metrics.fallbacks().get(OverridingVisitor.class.getName()));
+	}
+
+	@Test
+	public void reset_Should_Discard_Metrics() {
+
+		dispatcher.dispatch(new CountedVisitor(), "a");
+		DispatchMetrics.reset();
+
+		assertTrue(DispatchMetrics.isEnabled());
+		assertTrue(DispatchMetrics.snapshot().invocations().isEmpty());
+	}
+
+	@Test
+	public void histogram_Should_Bucket_By_Power_Of_Two() {
+
+		assertEquals(0, LatencyHistogram.bucket(0));
+		assertEquals(1, LatencyHistogram.bucket(1));
+		assertEquals(2, LatencyHistogram.bucket(3));
+		assertEquals(3, LatencyHistogram.bucket(4));
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+
+		LatencyHistogram.Recorder recorder = new LatencyHistogram.Recorder();
+		for (int i = 0; i < 99; i++) {
+			recorder.record(100);
+		}
+		recorder.record(10_000);
+		LatencyHistogram histogram = recorder.snapshot();
+
+		assertEquals(100, histogram.count());
+		assertEquals(127, histogram.percentile(0.5));
+		assertEquals(127, histogram.percentile(0.99));
+		assertEquals(16383, histogram.percentile(1));
+		assertEquals(199, histogram.mean(), 0.001);
+	}
+
+	/**
+	 * Each call should be emitted as a JFR event while recording
+	 */
+	@Test
+	public void calls_Should_Emit_Jfr_Events() throws Exception {
+
+		Path file = Files.createTempFile("dispatch", ".jfr");
+		try (Recording recording = new Recording()) {
+
+			recording.enable("com.bac.dispatcher.Dispatch");
+			recording.enable("com.bac.dispatcher.Resolution");
+			recording.start();
+			dispatcher.handle(new JfrVisitor(), "a");
+			recording.stop();
+			recording.dump(file);
+
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+			assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("com.bac.dispatcher.Dispatch")
+					&& e.getClass("visitorClass").getName().equals(JfrVisitor.class.getName())
+					&& e.getBoolean("handle")));
+			assertTrue(events.stream()
+					.anyMatch(e -> e.getEventType().getName().equals("com.bac.dispatcher.Resolution")));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	class CountedVisitor implements Visitor<String> {
+
+		public void dispatch(String o) {
+		}
+
+		public void dispatch(Integer o) {
+		}
+
+		public String handle(String o) {
+			return o;
+		}
+	}
+
+	class ResolvedVisitor extends CountedVisitor {
+
+	}
+
+	class OverridingVisitor implements Visitor<String> {
+
+		@Override
+		public String handle(Object o) {
+			return "object";
+		}
+	}
+
+	class JfrVisitor implements Visitor<String> {
+
+		public String handle(String o) {
+			return o;
+		}
+	}
+}
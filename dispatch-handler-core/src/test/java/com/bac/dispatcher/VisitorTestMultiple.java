@@ -0,0 +1,160 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests dispatching a pair of targets to the two argument methods of a
+ * Visitor
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestMultiple extends AbstractVisitorTest {
+
+	private DispatchHandler<String> dispatcher;
+
+	private CollisionVisitor visitor;
+
+	private final Circle circle = new Circle();
+	private final Square square = new Square();
+	private final Triangle triangle = new Triangle();
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+		visitor = new CollisionVisitor();
+	}
+
+	@Test
+	public void exact_Pair_Should_Be_Selected() {
+
+		assertEquals("circle-square", dispatcher.handle(visitor, circle, square));
+		assertEquals("circle-circle", dispatcher.handle(visitor, circle, circle));
+	}
+
+	/**
+	 * The pair with the least total distance from the targets should be
+	 * selected
+	 */
+	@Test
+	public void closest_Pair_Should_Be_Selected() {
+
+		assertEquals("circle-shape", dispatcher.handle(visitor, circle, triangle));
+		assertEquals("shape-shape", dispatcher.handle(visitor, triangle, triangle));
+	}
+
+	/**
+	 * Where two pairs are equally close the first argument should decide
+	 */
+	@Test
+	public void tie_Should_Prefer_Closest_First_Argument() {
+
+		assertEquals("square-shape", dispatcher.handle(visitor, square, circle));
+	}
+
+	@Test
+	public void unmatched_Pair_Should_Call_Default() {
+
+		assertNull(dispatcher.handle(visitor, circle, "a"));
+		dispatcher.dispatch(visitor, "a", "b");
+		assertEquals(0, visitor.dispatched.size());
+	}
+
+	@Test
+	public void null_Target_Should_Be_Treated_As_Object() {
+
+		assertEquals("object-shape", dispatcher.handle(visitor, null, square));
+	}
+
+	@Test
+	public void dispatch_Should_Call_Pair_Method() {
+
+		dispatcher.dispatch(visitor, circle, square);
+		dispatcher.dispatch(visitor, square, square);
+
+		assertEquals(2, visitor.dispatched.size());
+		assertSame(square, visitor.dispatched.get(1));
+	}
+
+	@Test
+	public void resolution_Should_Be_Cached() {
+
+		dispatcher.handle(visitor, circle, square);
+		PairTable table = new PairTable(CollisionVisitor.class, "handle", PairTable.HANDLE_TYPE);
+
+		assertSame(table.lookup(Circle.class, Square.class), table.lookup(Circle.class, Square.class));
+	}
+
+	@Test(expected = IOException.class)
+	public void visitor_Exception_Should_Be_Propagated() {
+
+		dispatcher.handle(visitor, square, square);
+	}
+
+	class Shape {
+
+	}
+
+	class Circle extends Shape {
+
+	}
+
+	class Square extends Shape {
+
+	}
+
+	class Triangle extends Shape {
+
+	}
+
+	class CollisionVisitor implements Visitor<String> {
+
+		private final List<Object> dispatched = new ArrayList<>();
+
+		public void dispatch(Shape a, Shape b) {
+			dispatched.add(b);
+		}
+
+		public String handle(Circle a, Square b) {
+			return "circle-square";
+		}
+
+		public String handle(Circle a, Circle b) {
+			return "circle-circle";
+		}
+
+		public String handle(Circle a, Shape b) {
+			return "circle-shape";
+		}
+
+		public String handle(Shape a, Shape b) {
+			return "shape-shape";
+		}
+
+		public String handle(Square a, Shape b) {
+			return "square-shape";
+		}
+
+		public String handle(Shape a, Circle b) {
+			return "shape-circle";
+		}
+
+		public String handle(Object a, Shape b) {
+			return "object-shape";
+		}
+
+		public String handle(Square a, Square b) throws IOException {
+			throw new IOException();
+		}
+	}
+}
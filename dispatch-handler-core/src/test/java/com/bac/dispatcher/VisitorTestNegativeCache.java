@@ -0,0 +1,138 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.invoke.MethodHandle;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests targets for which the Visitor has no method, which should be recorded
+ * against the default Visitor methods without calling them
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestNegativeCache extends AbstractVisitorTest {
+
+	private DispatchHandler<String> dispatcher;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+	}
+
+	/**
+	 * Unmatched targets of different classes should share the handle that
+	 * stands in for the default method
+	 */
+	@Test
+	public void unmatched_Targets_Should_Share_Fallback() {
+
+		MethodTable table = DispatchEngine.dispatchTable(StringVisitor.class);
+		MethodHandle unsupported = table.lookup(Unsupported.class);
+
+		assertTrue(table.isFallback(unsupported));
+		assertSame(unsupported, table.lookup(Boolean.class));
+		assertFalse(table.isFallback(table.lookup(String.class)));
+	}
+
+	@Test
+	public void unmatched_Targets_Should_Not_Call_Visitor() {
+
+		StringVisitor visitor = new StringVisitor();
+		dispatcher.dispatch(visitor, new Unsupported());
+		dispatcher.dispatch(visitor, Boolean.TRUE);
+		dispatcher.dispatch(visitor, 1);
+		dispatcher.dispatch(visitor, Boolean.TRUE, "b");
+
+		assertNull(dispatcher.handle(visitor, Boolean.TRUE));
+		assertNull(dispatcher.handle(visitor, Boolean.TRUE, "b"));
+		assertEquals(0, visitor.count);
+	}
+
+	/**
+	 * A Visitor overriding the default Object method should still receive
+	 * the unmatched targets
+	 */
+	@Test
+	public void overridden_Default_Should_Be_Called() {
+
+		OverridingVisitor visitor = new OverridingVisitor();
+		dispatcher.dispatch(visitor, Boolean.TRUE);
+
+		assertEquals(1, visitor.count);
+		assertEquals("object", dispatcher.handle(visitor, new Unsupported()));
+		assertFalse(DispatchEngine.handleTable(OverridingVisitor.class)
+				.isFallback(DispatchEngine.handleTable(OverridingVisitor.class).lookup(Boolean.class)));
+	}
+
+	/**
+	 * A Visitor with no methods of its own should not record each target
+	 */
+	@Test
+	public void visitor_Without_Methods_Should_Not_Resolve_Targets() {
+
+		MethodTable table = DispatchEngine.dispatchTable(EmptyVisitor.class);
+		dispatcher.dispatch(new EmptyVisitor(), "a");
+		dispatcher.dispatch(new EmptyVisitor(), Boolean.TRUE);
+
+		assertTrue(table.isFallback(table.lookup(Integer.class)));
+		assertTrue(table.resolvedTargets().isEmpty());
+	}
+
+	@Test
+	public void specialized_Dispatcher_Should_Not_Call_Visitor() {
+
+		StringVisitor visitor = new StringVisitor();
+		SpecializedDispatcher<String> specialized = dispatcher.specialize(StringVisitor.class);
+		specialized.dispatch(visitor, Boolean.TRUE);
+
+		assertNull(specialized.handle(visitor, Boolean.TRUE));
+		assertEquals("a", specialized.handle(visitor, "a"));
+		assertEquals(1, visitor.count);
+	}
+
+	class Unsupported implements UnsupportedInterface {
+
+	}
+
+	class StringVisitor implements Visitor<String> {
+
+		private int count;
+
+		public void dispatch(String o) {
+			count++;
+		}
+
+		public String handle(String o) {
+			count++;
+			return o;
+		}
+	}
+
+	class OverridingVisitor extends StringVisitor {
+
+		private int count;
+
+		@Override
+		public void dispatch(Object o) {
+			count++;
+		}
+
+		@Override
+		public String handle(Object o) {
+			return "object";
+		}
+	}
+
+	class EmptyVisitor implements Visitor<String> {
+
+	}
+}
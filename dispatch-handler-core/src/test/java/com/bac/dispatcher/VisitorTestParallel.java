@@ -0,0 +1,209 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests dispatching the targets of a Spliterator to a Visitor in parallel
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestParallel extends AbstractVisitorTest {
+
+	private static final int TARGET_COUNT = 10_000;
+
+	private DispatchHandler<String> dispatcher;
+
+	private ForkJoinPool pool;
+
+	private List<Object> targets;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+		pool = new ForkJoinPool(4);
+		targets = new ArrayList<>(TARGET_COUNT);
+		for (int i = 0; i < TARGET_COUNT; i++) {
+			switch (i % 4) {
+			case 0:
+				targets.add(new SuperClass());
+				break;
+			case 1:
+				targets.add(new SubClass());
+				break;
+			case 2:
+				targets.add(i);
+				break;
+			default:
+				targets.add(null);
+			}
+		}
+	}
+
+	@After
+	public void tearDown() {
+
+		pool.shutdown();
+	}
+
+	@Test
+	public void parallelHandle_Should_Collect_Results_In_Encounter_Order() {
+
+		List<String> results = dispatcher.parallelHandle(new SharedVisitor(), targets.spliterator(),
+				Collectors.toList(), pool);
+
+		assertEquals(TARGET_COUNT, results.size());
+		for (int i = 0; i < TARGET_COUNT; i++) {
+			assertEquals(expected(i), results.get(i));
+		}
+	}
+
+	@Test
+	public void parallelDispatch_Should_Visit_Every_Target() {
+
+		SharedVisitor visitor = new SharedVisitor();
+		dispatcher.parallelDispatch(visitor, targets.spliterator(), pool);
+
+		assertEquals(TARGET_COUNT * 3 / 4, visitor.count.get());
+	}
+
+	/**
+	 * A supplied Visitor is not declared thread safe so each worker task should
+	 * obtain its own instance
+	 */
+	@Test
+	public void supplied_Visitors_Should_Not_Be_Shared_Between_Tasks() {
+
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		AtomicInteger supplied = new AtomicInteger();
+		List<String> results = dispatcher.parallelHandle(() -> {
+			supplied.incrementAndGet();
+			return new ConfinedVisitor(threads);
+		}, targets.spliterator(), Collectors.toList(), pool);
+
+		assertEquals(TARGET_COUNT, results.size());
+		assertEquals(expected(5), results.get(5));
+		assertTrue(supplied.get() > 1);
+	}
+
+	/**
+	 * A Spliterator of unknown size should not be split into leaves of a
+	 * single target each needing its own Visitor
+	 */
+	@Test
+	public void unknown_Size_Targets_Should_Not_Be_Split_Per_Target() {
+
+		AtomicInteger supplied = new AtomicInteger();
+		List<String> results = dispatcher.parallelHandle(() -> {
+			supplied.incrementAndGet();
+			return new SharedVisitor();
+		}, Spliterators.spliteratorUnknownSize(targets.iterator(), Spliterator.ORDERED), Collectors.toList(), pool);
+
+		assertEquals(TARGET_COUNT, results.size());
+		for (int i = 0; i < TARGET_COUNT; i++) {
+			assertEquals(expected(i), results.get(i));
+		}
+		assertTrue(supplied.get() <= TARGET_COUNT / 512);
+	}
+
+	/**
+	 * A single Visitor instance may only be shared between workers if its
+	 * class is declared thread safe
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void undeclared_Visitor_Should_Not_Be_Shared() {
+
+		dispatcher.parallelDispatch(new ConfinedVisitor(ConcurrentHashMap.newKeySet()), targets.spliterator(), pool);
+	}
+
+	private static String expected(int i) {
+
+		switch (i % 4) {
+		case 0:
+			return "superClass";
+		case 1:
+			return "subClass";
+		case 2:
+			return "integer";
+		default:
+			return null;
+		}
+	}
+
+	@ThreadSafeVisitor
+	class SharedVisitor implements Visitor<String> {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		public void dispatch(SuperClass o) {
+			count.incrementAndGet();
+		}
+
+		public void dispatch(Integer o) {
+			count.incrementAndGet();
+		}
+
+		public String handle(SuperClass o) {
+			return "superClass";
+		}
+
+		public String handle(SubClass o) {
+			return "subClass";
+		}
+
+		public String handle(Integer o) {
+			return "integer";
+		}
+	}
+
+	/**
+	 * Fails if called from more than one thread
+	 */
+	class ConfinedVisitor implements Visitor<String> {
+
+		private final Set<Thread> threads;
+
+		private Thread owner;
+
+		ConfinedVisitor(Set<Thread> threads) {
+
+			this.threads = threads;
+		}
+
+		public String handle(SuperClass o) {
+
+			if (owner == null) {
+				owner = Thread.currentThread();
+				threads.add(owner);
+			}
+			if (owner != Thread.currentThread()) {
+				throw new IllegalStateException("Visitor called from two threads");
+			}
+			return "superClass";
+		}
+
+		public String handle(SubClass o) {
+			return "subClass";
+		}
+
+		public String handle(Integer o) {
+			return "integer";
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.bac.dispatcher.EventPipeline.WaitStrategy;
+
+/**
+ * Tests passing events to Visitors on consumer threads through an
+ * EventPipeline
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestPipeline extends AbstractVisitorTest {
+
+	private static final int EVENT_COUNT = 20_000;
+
+	private EventPipeline pipeline;
+
+	@After
+	public void tearDown() {
+
+		if (pipeline != null) {
+			pipeline.close();
+		}
+	}
+
+	/**
+	 * A ring much smaller than the number of events should be reused many
+	 * times, each consumer receiving every event in order. Spinning threads
+	 * may outnumber the processors, so a busy spin is given a ring large
+	 * enough that the producer need not wait.
+	 */
+	@Test
+	public void single_Producer_Should_Deliver_Every_Event_In_Order() {
+
+		for (WaitStrategy strategy : WaitStrategy.values()) {
+
+			RecordingVisitor first = new RecordingVisitor();
+			RecordingVisitor second = new RecordingVisitor();
+			int capacity = strategy == WaitStrategy.BUSY_SPIN ? 32_768 : 8;
+			pipeline = EventPipeline.builder().capacity(capacity).waitStrategy(strategy).consumer(first).consumer(second)
+					.start();
+			for (int i = 0; i < EVENT_COUNT; i++) {
+				pipeline.publish(event(i));
+			}
+			pipeline.close();
+
+			assertEquals(EVENT_COUNT, pipeline.consumed(0));
+			assertEquals(EVENT_COUNT, pipeline.consumed(1));
+			for (RecordingVisitor visitor : new RecordingVisitor[] { first, second }) {
+				assertEquals(EVENT_COUNT / 2, visitor.integers.size());
+				assertEquals(EVENT_COUNT / 4, visitor.strings);
+				assertEquals(EVENT_COUNT / 4, visitor.subClasses);
+				for (int i = 0; i < visitor.integers.size(); i++) {
+					assertEquals(i * 2, visitor.integers.get(i).intValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * The events of each producer should be received in the order that
+	 * producer published them
+	 */
+	@Test
+	public void multiple_Producers_Should_Deliver_Every_Event() throws InterruptedException {
+
+		int producers = 4;
+		RecordingVisitor visitor = new RecordingVisitor();
+		pipeline = EventPipeline.builder().capacity(64).multiProducer().consumer(visitor).start();
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < producers; p++) {
+			int producer = p;
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < EVENT_COUNT; i++) {
+					pipeline.publish(i * producers + producer);
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		pipeline.close();
+
+		assertEquals(EVENT_COUNT * producers, visitor.integers.size());
+		int[] last = new int[producers];
+		for (Integer i : visitor.integers) {
+			int producer = i % producers;
+			assertEquals(last[producer]++, i / producers);
+		}
+	}
+
+	/**
+	 * A full ring should refuse an event rather than wait, while the consumer
+	 * has not finished the batch holding the earlier events
+	 */
+	@Test
+	public void tryPublish_Should_Refuse_Event_When_Full() throws InterruptedException {
+
+		BlockingVisitor visitor = new BlockingVisitor();
+		pipeline = EventPipeline.builder().capacity(2).consumer(visitor).start();
+
+		assertTrue(pipeline.tryPublish("a"));
+		assertTrue(pipeline.tryPublish("b"));
+		assertTrue(visitor.started.await(5, TimeUnit.SECONDS));
+		assertFalse(pipeline.tryPublish("c"));
+
+		visitor.release.countDown();
+		pipeline.publish("c");
+		pipeline.close();
+
+		assertEquals(3, pipeline.consumed(0));
+	}
+
+	/**
+	 * An exception thrown by a Visitor should be passed to the error handler
+	 * and the consumer should continue with the next event
+	 */
+	@Test
+	public void visitor_Exception_Should_Be_Passed_To_Error_Handler() {
+
+		List<Object> failed = new ArrayList<>();
+		List<Throwable> errors = new ArrayList<>();
+		RecordingVisitor visitor = new RecordingVisitor();
+		pipeline = EventPipeline.builder().consumer(visitor).onError((event, t) -> {
+			failed.add(event);
+			errors.add(t);
+		}).start();
+		SuperClass superClass = new SuperClass();
+		pipeline.publish(1);
+		pipeline.publish(new FinalClass());
+		pipeline.publish(superClass);
+		pipeline.publish(2);
+		pipeline.close();
+
+		assertEquals(2, visitor.integers.size());
+		assertEquals(1, failed.size());
+		assertSame(superClass, failed.get(0));
+		assertTrue(errors.get(0) instanceof IllegalArgumentException);
+	}
+
+	/**
+	 * An error handler that throws should not stop the consumer, so that
+	 * publishing continues beyond the capacity of the ring
+	 */
+	@Test(timeout = 10_000)
+	public void error_Handler_Exception_Should_Not_Stop_Consumer() {
+
+		AtomicInteger uncaught = new AtomicInteger();
+		RecordingVisitor visitor = new RecordingVisitor();
+		pipeline = EventPipeline.builder().capacity(4).consumer(visitor).threadFactory(r -> {
+			Thread thread = new Thread(r);
+			thread.setUncaughtExceptionHandler((t, e) -> uncaught.incrementAndGet());
+			return thread;
+		}).onError((event, t) -> {
+			throw new IllegalStateException("handler");
+		}).start();
+		for (int i = 0; i < 20; i++) {
+			pipeline.publish(i);
+			pipeline.publish(new SuperClass());
+		}
+		pipeline.close();
+
+		assertEquals(20, visitor.integers.size());
+		assertEquals(20, uncaught.get());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void publish_After_Close_Should_Throw() {
+
+		pipeline = EventPipeline.builder().consumer(new RecordingVisitor()).start();
+		pipeline.close();
+		pipeline.publish("a");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void capacity_Should_Be_Power_Of_Two() {
+
+		EventPipeline.builder().capacity(1000);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void pipeline_Should_Require_Consumer() {
+
+		EventPipeline.builder().start();
+	}
+
+	private Object event(int i) {
+
+		switch (i % 4) {
+		case 0:
+		case 2:
+			return i;
+		case 1:
+			return "s";
+		default:
+			return new SubClass();
+		}
+	}
+
+	class RecordingVisitor implements Visitor<String> {
+
+		private final List<Integer> integers = new ArrayList<>();
+
+		private int strings;
+
+		private int subClasses;
+
+		public void dispatch(Integer o) {
+			integers.add(o);
+		}
+
+		public void dispatch(String o) {
+			strings++;
+		}
+
+		public void dispatch(SubClass o) {
+			subClasses++;
+		}
+
+		public void dispatch(SuperClass o) {
+			throw new IllegalArgumentException("superClass");
+		}
+	}
+
+	class BlockingVisitor implements Visitor<String> {
+
+		private final CountDownLatch started = new CountDownLatch(1);
+
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		public void dispatch(String o) {
+
+			started.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
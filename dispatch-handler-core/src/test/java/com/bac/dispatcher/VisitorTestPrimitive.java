@@ -0,0 +1,197 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests dispatching primitive targets and returning primitive values
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestPrimitive extends AbstractVisitorTest {
+
+	private DispatchHandler<String> dispatcher;
+
+	private PrimitiveVisitor visitor;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+		visitor = new PrimitiveVisitor();
+	}
+
+	/**
+	 * A primitive target should be passed to the method declaring the
+	 * primitive in preference to its wrapper, while a boxed target retains
+	 * the preference for the wrapper
+	 */
+	@Test
+	public void primitive_Target_Should_Call_Primitive_Method() {
+
+		dispatcher.dispatchInt(visitor, 1);
+		dispatcher.dispatch(visitor, Integer.valueOf(2));
+
+		assertEquals("int 1, Integer 2", visitor.visited());
+	}
+
+	/**
+	 * Without a primitive method the target should be boxed and resolved as
+	 * its wrapper
+	 */
+	@Test
+	public void primitive_Target_Should_Fall_Back_To_Wrapper_Resolution() {
+
+		dispatcher.dispatchLong(visitor, 3L);
+		dispatcher.dispatchDouble(visitor, 4.5d);
+
+		assertEquals("Number 3, Number 4.5", visitor.visited());
+	}
+
+	/**
+	 * Primitives passed to dispatch should be boxed as their own wrappers,
+	 * not widened to a primitive form
+	 */
+	@Test
+	public void dispatch_Should_Box_Primitives_As_Their_Wrappers() {
+
+		dispatcher.dispatch(visitor, 'x');
+		dispatcher.dispatch(visitor, 1.5f);
+		dispatcher.dispatch(visitor, 1);
+
+		assertEquals("Character x, Number 1.5, Integer 1", visitor.visited());
+	}
+
+	@Test
+	public void handleAsLong_Should_Return_Primitive() {
+
+		assertEquals(2L, dispatcher.handleAsLong(visitor, 1));
+		assertEquals(20L, dispatcher.handleAsLong(visitor, 10L));
+		assertEquals(7L, dispatcher.handleAsLong(visitor, "seven"));
+		assertEquals(42L, dispatcher.handleAsLong(visitor, Integer.valueOf(6)));
+	}
+
+	/**
+	 * A primitive int returned by the Visitor should be widened
+	 */
+	@Test
+	public void handleAsDouble_Should_Widen_Return_Value() {
+
+		assertEquals(2.0, dispatcher.handleAsDouble(visitor, 1), 0);
+		assertEquals(20.0, dispatcher.handleAsDouble(visitor, 10L), 0);
+		assertEquals(0.5, dispatcher.handleAsDouble(visitor, 0.25d), 0);
+		assertEquals(7.0, dispatcher.handleAsDouble(visitor, "seven"), 0);
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void null_Return_Value_Should_Throw() {
+
+		dispatcher.handleAsLong(visitor, new SuperClass());
+	}
+
+	@Test(expected = ClassCastException.class)
+	public void unconvertible_Return_Value_Should_Throw() {
+
+		dispatcher.handleAsLong(visitor, new SubClass());
+	}
+
+	/**
+	 * Dispatching a primitive to a method declaring the primitive should not
+	 * allocate once compiled
+	 */
+	@Test
+	public void primitive_Dispatch_Should_Not_Allocate() {
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		CountingVisitor counter = new CountingVisitor();
+		long total = 0;
+		for (int i = 0; i < 200_000; i++) {
+			total += dispatcher.handleAsLong(counter, i);
+		}
+		long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+		for (int i = 0; i < 100_000; i++) {
+			dispatcher.dispatchInt(counter, i);
+			total += dispatcher.handleAsLong(counter, i);
+		}
+		long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+		assertTrue(total > 0);
+		assertTrue("Allocated " + allocated + " bytes", allocated < 100_000);
+	}
+
+	class PrimitiveVisitor implements Visitor<Object> {
+
+		private final List<String> visited = new ArrayList<>();
+
+		@Override
+		public void dispatch(Object o) {
+			visited.add("Object " + o);
+		}
+
+		public void dispatch(int o) {
+			visited.add("int " + o);
+		}
+
+		public void dispatch(Integer o) {
+			visited.add("Integer " + o);
+		}
+
+		public void dispatch(Character o) {
+			visited.add("Character " + o);
+		}
+
+		public void dispatch(Number o) {
+			visited.add("Number " + o);
+		}
+
+		public int handle(int o) {
+			return o * 2;
+		}
+
+		public Long handle(Long o) {
+			return o * 2;
+		}
+
+		public double handle(double o) {
+			return o * 2;
+		}
+
+		public Integer handle(Integer o) {
+			return o * 7;
+		}
+
+		public long handle(String o) {
+			return o.length() + 2;
+		}
+
+		public String handle(SubClass o) {
+			return "subClass";
+		}
+
+		String visited() {
+			return String.join(", ", visited);
+		}
+	}
+
+	class CountingVisitor implements Visitor<Object> {
+
+		private long count;
+
+		public void dispatch(int o) {
+			count += o;
+		}
+
+		public long handle(int o) {
+			return o;
+		}
+	}
+}
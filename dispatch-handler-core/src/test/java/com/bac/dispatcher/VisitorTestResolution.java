@@ -0,0 +1,157 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the rules used to select a Visitor method where the target matches
+ * more than one overload, or none at all
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestResolution extends AbstractVisitorTest {
+
+	private DispatchHandler<String> dispatcher;
+
+	private ResolutionVisitor visitor;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+		visitor = new ResolutionVisitor();
+	}
+
+	/**
+	 * A class match should be preferred to an interface match regardless of
+	 * how far up the hierarchy the class is declared
+	 */
+	@Test
+	public void class_Match_Should_Be_Preferred_To_Interface_Match() {
+
+		assertEquals("superClass", dispatcher.handle(visitor, new IdentifiedSubClass()));
+	}
+
+	/**
+	 * An interface match should be preferred to the default method
+	 */
+	@Test
+	public void interface_Match_Should_Be_Preferred_To_Default() {
+
+		assertEquals("interface", dispatcher.handle(visitor, new MethodIdentifier() {
+		}));
+	}
+
+	/**
+	 * A boxed target should be routed to a primitive overload
+	 */
+	@Test
+	public void boxed_Target_Should_Call_Primitive_Handler() {
+
+		assertEquals("long", dispatcher.handle(visitor, 1L));
+	}
+
+	/**
+	 * A null target should be routed to the Object method
+	 */
+	@Test
+	public void null_Target_Should_Call_Object_Handler() {
+
+		assertEquals("object", dispatcher.handle(visitor, null));
+	}
+
+	/**
+	 * An array should be routed to the method accepting the array of the
+	 * narrowest supertype of its component type, in preference to the
+	 * interfaces of every array
+	 */
+	@Test
+	public void array_Target_Should_Call_Narrowest_Array_Handler() {
+
+		ArrayVisitor arrays = new ArrayVisitor();
+
+		assertEquals("charSequenceArray", dispatcher.handle(arrays, new String[0]));
+		assertEquals("objectArray", dispatcher.handle(arrays, new Integer[0]));
+		assertEquals("objectArray", dispatcher.handle(arrays, new String[0][]));
+		assertEquals("cloneable", dispatcher.handle(arrays, new int[0]));
+	}
+
+	/**
+	 * An Object[] method should be preferred to the Object method whatever
+	 * the order of the methods
+	 */
+	@Test
+	public void array_Target_Should_Prefer_Object_Array_To_Object() {
+
+		assertEquals("objectArray", dispatcher.handle(new ObjectArrayVisitor(), new String[0]));
+	}
+
+	/**
+	 * Checked exceptions thrown by the Visitor should be propagated unchanged
+	 */
+	@Test(expected = IOException.class)
+	public void visitor_Exception_Should_Be_Propagated() {
+
+		new DefaultDispatchHandler().dispatch(visitor, "string");
+	}
+
+	class IdentifiedSubClass extends SubClass implements MethodIdentifier {
+
+	}
+
+	class ArrayVisitor implements Visitor<String> {
+
+		public String handle(Cloneable o) {
+			return "cloneable";
+		}
+
+		public String handle(Object[] o) {
+			return "objectArray";
+		}
+
+		public String handle(CharSequence[] o) {
+			return "charSequenceArray";
+		}
+	}
+
+	class ObjectArrayVisitor implements Visitor<String> {
+
+		@Override
+		public String handle(Object o) {
+			return "object";
+		}
+
+		public String handle(Object[] o) {
+			return "objectArray";
+		}
+	}
+
+	class ResolutionVisitor implements Visitor<String> {
+
+		public String handle(SuperClass o) {
+			return "superClass";
+		}
+
+		public String handle(MethodIdentifier o) {
+			return "interface";
+		}
+
+		public String handle(long o) {
+			return "long";
+		}
+
+		@Override
+		public String handle(Object o) {
+			return "object";
+		}
+
+		public void dispatch(String o) throws IOException {
+			throw new IOException();
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.ref.WeakReference;
+
+import org.junit.Test;
+
+/**
+ * Tests the resolution cache shared by all DispatchHandler instances. Visitor
+ * and target classes are loaded in isolated class loaders to verify that the
+ * cache does not prevent a redeployed application from being unloaded.
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestResolutionCache extends AbstractVisitorTest {
+
+	/**
+	 * A target class resolved by one handler should not be resolved again by
+	 * another
+	 */
+	@Test
+	public void resolution_Should_Be_Shared_By_Handlers() {
+
+		Visitor<Object> visitor = new IsolatedVisitor();
+		new DefaultDispatchHandler().dispatch(visitor, "string");
+		MethodHandle resolved = DispatchEngine.dispatchTable(IsolatedVisitor.class).lookup(String.class);
+
+		new DispatchHandler<String>().dispatch(visitor, "string");
+		assertSame(resolved, DispatchEngine.dispatchTable(IsolatedVisitor.class).lookup(String.class));
+	}
+
+	/**
+	 * A Visitor loaded by an application class loader should not be retained
+	 * by the cache once the application is discarded
+	 */
+	@Test
+	public void visitor_Class_Loader_Should_Not_Be_Retained() throws Exception {
+
+		WeakReference<ClassLoader> loader = dispatchFromIsolatedVisitor();
+		assertNull(awaitCollection(loader));
+	}
+
+	/**
+	 * A target loaded by an application class loader should not be retained by
+	 * the cache of a Visitor from a parent class loader
+	 */
+	@Test
+	public void target_Class_Loader_Should_Not_Be_Retained() throws Exception {
+
+		WeakReference<ClassLoader> loader = dispatchIsolatedTarget();
+		assertNull(awaitCollection(loader));
+	}
+
+	/**
+	 * A pair including a target class the Visitor cannot see should be
+	 * resolved once, whichever argument it is
+	 */
+	@Test
+	public void foreign_Pair_Should_Be_Resolved_Once() throws Exception {
+
+		Class<?> foreign = new IsolatingClassLoader(IsolatedTarget.class.getName())
+				.loadClass(IsolatedTarget.class.getName());
+		PairTable table = new PairTable(IsolatedVisitor.class, "dispatch", PairTable.DISPATCH_TYPE);
+
+		assertSame(table.lookup(foreign, String.class), table.lookup(foreign, String.class));
+		assertSame(table.lookup(String.class, foreign), table.lookup(String.class, foreign));
+		assertSame(table.lookup(foreign, foreign), table.lookup(foreign, foreign));
+	}
+
+	@Test
+	public void pair_Target_Class_Loader_Should_Not_Be_Retained() throws Exception {
+
+		WeakReference<ClassLoader> loader = dispatchIsolatedPair();
+		assertNull(awaitCollection(loader));
+	}
+
+	/**
+	 * A target loaded by an application class loader should not be retained by
+	 * a CompositeVisitor whose members are from a parent class loader
+	 */
+	@Test
+	public void composite_Target_Class_Loader_Should_Not_Be_Retained() throws Exception {
+
+		CompositeVisitor composite = new CompositeVisitor(new IsolatedVisitor(), new IsolatedVisitor());
+		WeakReference<ClassLoader> loader = dispatchIsolatedTarget(composite);
+		assertNull(awaitCollection(loader));
+		assertEquals(2, composite.route(String.class).length);
+	}
+
+	@SuppressWarnings("unchecked")
+	private WeakReference<ClassLoader> dispatchFromIsolatedVisitor() throws Exception {
+
+		ClassLoader loader = new IsolatingClassLoader(IsolatedVisitor.class.getName());
+		Visitor<Object> visitor = (Visitor<Object>) loader.loadClass(IsolatedVisitor.class.getName())
+				.getDeclaredConstructor().newInstance();
+		new DefaultDispatchHandler().dispatch(visitor, "string");
+		new DefaultDispatchHandler().dispatch(visitor, new SuperClass());
+		return new WeakReference<>(loader);
+	}
+
+	private WeakReference<ClassLoader> dispatchIsolatedTarget() throws Exception {
+
+		ClassLoader loader = new IsolatingClassLoader(IsolatedTarget.class.getName());
+		Object target = loader.loadClass(IsolatedTarget.class.getName()).getDeclaredConstructor().newInstance();
+		new DefaultDispatchHandler().dispatch(new IsolatedVisitor(), target);
+		return new WeakReference<>(loader);
+	}
+
+	private WeakReference<ClassLoader> dispatchIsolatedTarget(CompositeVisitor composite) throws Exception {
+
+		ClassLoader loader = new IsolatingClassLoader(IsolatedTarget.class.getName());
+		Object target = loader.loadClass(IsolatedTarget.class.getName()).getDeclaredConstructor().newInstance();
+		composite.dispatch(target);
+		composite.dispatch(target);
+		return new WeakReference<>(loader);
+	}
+
+	private WeakReference<ClassLoader> dispatchIsolatedPair() throws Exception {
+
+		ClassLoader loader = new IsolatingClassLoader(IsolatedTarget.class.getName());
+		Object target = loader.loadClass(IsolatedTarget.class.getName()).getDeclaredConstructor().newInstance();
+		new DefaultDispatchHandler().dispatch(new IsolatedVisitor(), target, "string");
+		new DefaultDispatchHandler().dispatch(new IsolatedVisitor(), "string", target);
+		return new WeakReference<>(loader);
+	}
+
+	private static ClassLoader awaitCollection(WeakReference<ClassLoader> loader) throws InterruptedException {
+
+		for (int i = 0; i < 50 && loader.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		return loader.get();
+	}
+
+	public static class IsolatedVisitor implements Visitor<Object> {
+
+		public void dispatch(String o) {
+		}
+
+		public void dispatch(Object a, Object b) {
+		}
+	}
+
+	public static class IsolatedTarget {
+
+	}
+
+	/**
+	 * Defines a single named class itself rather than delegating to its parent
+	 */
+	private static class IsolatingClassLoader extends ClassLoader {
+
+		private final String isolatedName;
+
+		IsolatingClassLoader(String isolatedName) {
+
+			super(IsolatingClassLoader.class.getClassLoader());
+			this.isolatedName = isolatedName;
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+
+			if (!name.equals(isolatedName)) {
+				return super.loadClass(name, resolve);
+			}
+			try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				for (int n; (n = in.read(buffer)) > 0;) {
+					bytes.write(buffer, 0, n);
+				}
+				return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+			} catch (IOException e) {
+				throw new ClassNotFoundException(name, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests preparing resolved methods in advance and persisting them in a
+ * snapshot. Each snapshot is read by a Visitor class in its own class loader
+ * so that its tables start empty.
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestSnapshot extends AbstractVisitorTest {
+
+	private DispatchHandler<String> dispatcher;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+	}
+
+	@Test
+	public void prepare_Should_Resolve_Targets() {
+
+		dispatcher.prepare(PreparedVisitor.class, String.class, Integer.class);
+
+		assertEquals(new HashSet<>(Arrays.asList(String.class, Integer.class)),
+				new HashSet<>(DispatchEngine.dispatchTable(PreparedVisitor.class).resolvedTargets()));
+		assertEquals(new HashSet<>(Arrays.asList(String.class, Integer.class)),
+				new HashSet<>(DispatchEngine.handleTable(PreparedVisitor.class).resolvedTargets()));
+	}
+
+	/**
+	 * A snapshot should restore the resolved targets of a Visitor class
+	 */
+	@Test
+	public void snapshot_Should_Resolve_Written_Targets() throws Exception {
+
+		SnapshotVisitor visitor = new SnapshotVisitor();
+		dispatcher.dispatch(visitor, "a");
+		dispatcher.dispatch(visitor, 1);
+		dispatcher.handle(visitor, new SubClass());
+		ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+		assertTrue(dispatcher.writeResolutions(snapshot) >= 3);
+
+		ClassLoader loader = new IsolatingClassLoader(SnapshotVisitor.class.getName());
+		Class<?> isolated = loader.loadClass(SnapshotVisitor.class.getName());
+		dispatcher.readResolutions(new ByteArrayInputStream(snapshot.toByteArray()), loader);
+
+		assertEquals(new HashSet<>(Arrays.asList(String.class, Integer.class)),
+				new HashSet<>(DispatchEngine.dispatchTable(isolated).resolvedTargets()));
+		assertEquals(Arrays.asList(SubClass.class), DispatchEngine.handleTable(isolated).resolvedTargets());
+	}
+
+	/**
+	 * Entries naming missing classes, or a method other than that now
+	 * resolved, should be dropped
+	 */
+	@Test
+	public void stale_Entries_Should_Be_Dropped() throws Exception {
+
+		String visitorName = SnapshotVisitor.class.getName();
+		byte[] snapshot = snapshot(new String[] { visitorName, String.class.getName(), "java.lang.Object",
+				"com.example.Missing", Integer.class.getName(), "int", "java.lang.Number" },
+				0, // visitor
+				4, // entries
+				1, 0, 1, // String resolves to dispatch(String) declared by the visitor
+				1, 0, 2, // String no longer resolves to the Object method
+				3, 0, 2, // missing target class
+				4, 0, 6); // Integer now resolves to dispatch(Integer), not Number
+
+		ClassLoader loader = new IsolatingClassLoader(visitorName);
+		Class<?> isolated = loader.loadClass(visitorName);
+		int resolved = new DispatchHandler<String>().readResolutions(new ByteArrayInputStream(snapshot), loader);
+
+		assertEquals(1, resolved);
+		assertEquals(Arrays.asList(String.class), DispatchEngine.dispatchTable(isolated).resolvedTargets());
+	}
+
+	@Test
+	public void missing_Visitor_Class_Should_Be_Dropped() throws Exception {
+
+		byte[] snapshot = snapshot(new String[] { "com.example.MissingVisitor", String.class.getName() }, 0, 1, 1,
+				1, 1);
+
+		assertEquals(0, dispatcher.readResolutions(new ByteArrayInputStream(snapshot)));
+	}
+
+	@Test(expected = IOException.class)
+	public void invalid_Snapshot_Should_Throw() throws Exception {
+
+		dispatcher.readResolutions(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5, 6 }));
+	}
+
+	/**
+	 * A truncated or corrupt snapshot should throw an IOException rather than
+	 * an unchecked exception
+	 */
+	@Test
+	public void corrupt_Snapshot_Should_Throw_IOException() throws Exception {
+
+		String[] names = { SnapshotVisitor.class.getName(), String.class.getName() };
+		byte[] valid = snapshot(names, 0, 1, 1, 0, 1);
+		assertCorrupt(Arrays.copyOf(valid, valid.length - 2));
+		assertCorrupt(snapshot(names, 0, 1, 1, 0, 7));
+		assertCorrupt(snapshot(names, -1, 1, 1, 0, 1));
+		assertCorrupt(snapshot(names, 0, -1));
+
+		byte[] negativeNames = snapshot(names, 0, 0);
+		negativeNames[6] = (byte) 0xFF;
+		assertCorrupt(negativeNames);
+	}
+
+	private void assertCorrupt(byte[] snapshot) {
+
+		try {
+			dispatcher.readResolutions(new ByteArrayInputStream(snapshot));
+			fail("Read a corrupt snapshot");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	/*
+	 * A snapshot of a single dispatch table, the entries of which are given
+	 * as indices into the names
+	 */
+	private static byte[] snapshot(String[] names, int visitor, int count, int... entries) throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(ResolutionSnapshot.MAGIC);
+		out.writeShort(ResolutionSnapshot.VERSION);
+		out.writeInt(names.length);
+		for (String name : names) {
+			out.writeUTF(name);
+		}
+		out.writeInt(1);
+		out.writeInt(visitor);
+		out.writeByte(ResolutionSnapshot.DISPATCH);
+		out.writeInt(count);
+		for (int entry : entries) {
+			out.writeInt(entry);
+		}
+		return bytes.toByteArray();
+	}
+
+	public static class PreparedVisitor implements Visitor<String> {
+
+		public void dispatch(String o) {
+		}
+
+		public String handle(Integer o) {
+			return "integer";
+		}
+	}
+
+	public static class SnapshotVisitor implements Visitor<String> {
+
+		public void dispatch(String o) {
+		}
+
+		public void dispatch(Integer o) {
+		}
+
+		public void dispatch(Number o) {
+		}
+
+		public String handle(SuperClass o) {
+			return "superClass";
+		}
+	}
+
+	/**
+	 * Defines a single named class itself rather than delegating to its parent
+	 */
+	private static class IsolatingClassLoader extends ClassLoader {
+
+		private final String isolatedName;
+
+		IsolatingClassLoader(String isolatedName) {
+
+			super(IsolatingClassLoader.class.getClassLoader());
+			this.isolatedName = isolatedName;
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+
+			if (!name.equals(isolatedName)) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (this) {
+				Class<?> loaded = findLoadedClass(name);
+				if (loaded != null) {
+					return loaded;
+				}
+				try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					byte[] buffer = new byte[4096];
+					for (int n; (n = in.read(buffer)) > 0;) {
+						bytes.write(buffer, 0, n);
+					}
+					return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+				} catch (IOException e) {
+					throw new ClassNotFoundException(name, e);
+				}
+			}
+		}
+	}
+}
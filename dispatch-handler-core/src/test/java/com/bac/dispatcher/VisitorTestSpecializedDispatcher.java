@@ -0,0 +1,169 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+/**
+ * Tests the dispatcher specialised for a single Visitor class. Target classes
+ * outside the initial switch, such as FinalClass, should be resolved and added
+ * to the switch on first use. Each test has a dispatcher of its own, so that
+ * classes added by one test are not seen by another.
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestSpecializedDispatcher extends AbstractVisitorTest {
+
+	/**
+	 * More target classes than the switch holds, none with a method of its own
+	 */
+	private static final Object[] OVERFLOW = { 1, 1L, 1.0d, 1.0f, (short) 1, (byte) 1, 'c', new Object(), new int[0],
+			new long[0], new double[0], new float[0], new short[0], new byte[0], new char[0], new boolean[0],
+			new Object[0], new String[0], new StringBuilder() };
+
+	@Mock
+	private MockDestination instance;
+
+	private SpecializedDispatcher<Long> dispatcher;
+
+	private SpecializedVisitor visitor;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new SpecializedDispatcher<>(SpecializedVisitor.class);
+		visitor = new SpecializedVisitor(instance);
+	}
+
+	/**
+	 * Handlers for the same Visitor class should share a dispatcher
+	 */
+	@Test
+	public void dispatcher_Should_Be_Shared_By_Handlers() {
+
+		assertSame(new DispatchHandler<Long>().specialize(SpecializedVisitor.class),
+				new DefaultDispatchHandler().specialize(SpecializedVisitor.class));
+	}
+
+	@Test
+	public void string_Target_Should_Call_String_Dispatch() {
+
+		dispatcher.dispatch(visitor, "string");
+
+		verify(instance).stringDispatch(any());
+		verify(instance, never()).subClassDispatch(any());
+	}
+
+	/**
+	 * FinalClass is not in the initial switch and should be resolved to its
+	 * direct ancestor on every call
+	 */
+	@Test
+	public void finalClass_Target_Should_Call_SubClass_Dispatch() {
+
+		dispatcher.dispatch(visitor, new FinalClass());
+		dispatcher.dispatch(visitor, new FinalClass());
+
+		verify(instance, times(2)).subClassDispatch(any());
+		verify(instance, never()).stringDispatch(any());
+	}
+
+	@Test
+	public void boolean_Target_Should_Call_Default_Dispatch() {
+
+		dispatcher.dispatch(visitor, false);
+
+		verify(instance, never()).stringDispatch(any());
+		verify(instance, never()).subClassDispatch(any());
+	}
+
+	@Test
+	public void handle_Should_Return_Visitor_Value() {
+
+		assertEquals(Long.valueOf(1), dispatcher.handle(visitor, "string"));
+		assertEquals(Long.valueOf(2), dispatcher.handle(visitor, new FinalClass()));
+		assertNull(dispatcher.handle(visitor, false));
+	}
+
+	/**
+	 * Target classes beyond the size of the switch should be resolved by the
+	 * shared method tables
+	 */
+	@Test
+	public void targets_Beyond_Switch_Limit_Should_Be_Dispatched_By_Engine() {
+
+		assertFalse(dispatcher.isDispatchFull());
+		for (Object target : OVERFLOW) {
+			dispatcher.dispatch(visitor, target);
+		}
+		assertTrue(dispatcher.isDispatchFull());
+		dispatcher.dispatch(visitor, new FinalClass());
+
+		verify(instance).subClassDispatch(any());
+		verify(instance, never()).stringDispatch(any());
+	}
+
+	@Test
+	public void handle_Beyond_Switch_Limit_Should_Be_Resolved_By_Engine() {
+
+		for (Object target : OVERFLOW) {
+			assertNull(dispatcher.handle(visitor, target));
+		}
+		assertTrue(dispatcher.isHandleFull());
+		assertFalse(dispatcher.isDispatchFull());
+
+		assertEquals(Long.valueOf(2), dispatcher.handle(visitor, new FinalClass()));
+		assertEquals(Long.valueOf(1), dispatcher.handle(visitor, "string"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void dispatching_Other_Visitor_Class_Should_Throw_Exception() {
+
+		dispatcher.dispatch(new Visitor<Object>() {
+		}, "string");
+	}
+
+	class SpecializedVisitor implements Visitor<Long> {
+
+		private final MockDestination mock;
+
+		public SpecializedVisitor(MockDestination mock) {
+
+			this.mock = mock;
+		}
+
+		public void dispatch(String o) {
+			mock.stringDispatch(o);
+		}
+
+		public void dispatch(SubClass o) {
+			mock.subClassDispatch(o);
+		}
+
+		public long handle(String o) {
+			return 1;
+		}
+
+		public Long handle(SubClass o) {
+			return 2L;
+		}
+	}
+
+	interface MockDestination {
+
+		void stringDispatch(String o);
+
+		void subClassDispatch(SubClass o);
+	}
+}
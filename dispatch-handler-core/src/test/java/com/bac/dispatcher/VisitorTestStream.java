@@ -0,0 +1,143 @@
+package com.bac.dispatcher;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests adapting the handle methods of a Visitor to Streams
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestStream extends AbstractVisitorTest {
+
+	private DispatchHandler<String> dispatcher;
+
+	private CountingVisitor visitor;
+
+	private List<Object> targets;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new DispatchHandler<String>();
+		visitor = new CountingVisitor();
+		targets = Arrays.<Object> asList("a", new SuperClass(), 1, new FinalClass(), null);
+	}
+
+	@Test
+	public void mapping_Should_Return_Visitor_Value() {
+
+		Function<Object, String> mapping = dispatcher.mapping(visitor);
+
+		assertEquals(Arrays.asList("string", "superClass", "integer", "subClass", null),
+				targets.stream().map(mapping).collect(Collectors.toList()));
+	}
+
+	/**
+	 * The Visitor should not be called until the Stream is consumed
+	 */
+	@Test
+	public void map_Should_Be_Lazy() {
+
+		Stream<String> mapped = dispatcher.map(visitor, targets.stream());
+		assertEquals(0, visitor.count.get());
+
+		assertEquals("string", mapped.findFirst().get());
+		assertEquals(1, visitor.count.get());
+	}
+
+	@Test
+	public void map_Should_Preserve_Size_And_Order() {
+
+		Spliterator<String> mapped = dispatcher.map(visitor, new ArrayList<>(targets).spliterator());
+
+		assertTrue(mapped.hasCharacteristics(Spliterator.SIZED));
+		assertTrue(mapped.hasCharacteristics(Spliterator.SUBSIZED));
+		assertTrue(mapped.hasCharacteristics(Spliterator.ORDERED));
+		assertEquals(targets.size(), mapped.getExactSizeIfKnown());
+	}
+
+	/**
+	 * A mapped element may be null or repeated so NONNULL and DISTINCT should
+	 * not be passed through
+	 */
+	@Test
+	public void map_Should_Not_Preserve_Distinct_Or_NonNull() {
+
+		Spliterator<String> mapped = dispatcher.map(visitor,
+				Stream.of("a", "b").distinct().filter(o -> o != null).spliterator());
+
+		assertFalse(mapped.hasCharacteristics(Spliterator.DISTINCT));
+		assertFalse(mapped.hasCharacteristics(Spliterator.NONNULL));
+	}
+
+	@Test
+	public void parallel_map_Should_Retain_Encounter_Order() {
+
+		List<Object> numbers = IntStream.range(0, 10_000).boxed().collect(Collectors.toList());
+		List<String> results = dispatcher.map(visitor, numbers.parallelStream()).collect(Collectors.toList());
+
+		assertEquals(numbers.size(), results.size());
+		assertTrue(results.stream().allMatch("integer"::equals));
+		assertEquals(numbers.size(), visitor.count.get());
+	}
+
+	@Test
+	public void handling_Should_Collect_Visitor_Values() {
+
+		Map<String, Long> counts = targets.stream().collect(
+				dispatcher.handling(visitor, Collectors.groupingBy(String::valueOf, Collectors.counting())));
+
+		assertEquals(Long.valueOf(1), counts.get("superClass"));
+		assertEquals(Long.valueOf(1), counts.get("null"));
+		assertEquals(5, visitor.count.get());
+	}
+
+	@ThreadSafeVisitor
+	class CountingVisitor implements Visitor<String> {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public String handle(Object o) {
+			count.incrementAndGet();
+			return null;
+		}
+
+		public String handle(String o) {
+			count.incrementAndGet();
+			return "string";
+		}
+
+		public String handle(Integer o) {
+			count.incrementAndGet();
+			return "integer";
+		}
+
+		public String handle(SuperClass o) {
+			count.incrementAndGet();
+			return "superClass";
+		}
+
+		public String handle(SubClass o) {
+			count.incrementAndGet();
+			return "subClass";
+		}
+	}
+}
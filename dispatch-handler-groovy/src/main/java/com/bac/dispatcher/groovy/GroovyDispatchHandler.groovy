@@ -29,52 +29,63 @@
  *
  */
 
-package com.bac.dispatcher;
+package com.bac.dispatcher.groovy;
 
+import com.bac.dispatcher.DispatchHandler
+import com.bac.dispatcher.Visitor
 
 /**
- * The dispatch handler dynamically routes calls to the Visitor. This 
- * circumvents double-dispatch required when implementing the Visitor 
- * pattern and thus removes the need for target object to implement any 
- * interfaces.
+ * A DispatchHandler that selects the Visitor method for a single Object
+ * with the multimethod dispatch of the Groovy runtime rather than the method
+ * tables of the core DispatchHandler.
  * 
- * Typically an extension of this class will specify Object as a return type
- * parameter. If an specialisation of this is required to enforce static 
- * typing then it may be supplied in the class parameter.
- * 
- * DispatchHandler stringDispatcher = new DispatchHandler<String>();
- * 
- * String result = stringDispatcher.handle(v, o);
+ * Groovy selects among the overloaded methods by the runtime type of the
+ * Object, so for Java Visitors the method selected is that of the core
+ * handler. Methods added to a Visitor through its metaClass, or handled by
+ * its methodMissing, are selected too, which is the reason to prefer this
+ * handler. A null Object is routed to the Object method, as by the core
+ * handler. Every other method, e.g. dispatchAll, is inherited from the core
+ * handler unchanged.
  * 
+ * 	DispatchHandler&lt;String&gt; dispatcher = new GroovyDispatchHandler&lt;String&gt;();
  * 
  * @author Simon Baird
  *
  * @param <T> the return type from the Visitor implementation
  */
-class DispatchHandler<T>   {
+class GroovyDispatchHandler<T> extends DispatchHandler<T>   {
 
 	/**
-	 * Forward the Object under extension to the supplied Visitor. 
+	 * Forward the Object under extension to the supplied Visitor, selecting
+	 * the method with the Groovy runtime. 
 	 * 
 	 * @param v a Visitor object that dynamically extends the Object o
 	 * @param o any Object requiring dynamic extension
 	 */
-	public void dispatch(Visitor v, Object  o) {
+	@Override
+	public void dispatch(Visitor<?> v, Object o) {
 
-		v.dispatch(o);
+		if (o == null) {
+			super.dispatch(v, o)
+		} else {
+			((Object) v).dispatch(o)
+		}
 	}
 
 	/**
 	 * Returns the output from calling the appropriate method on the
-	 * supplied Vistor. The return type is enforceable by parameter
+	 * supplied Vistor, selecting the method with the Groovy runtime.
 	 * 
 	 * @param v a Visitor object that dynamically extends the Object o
 	 * @param o o any Object requiring dynamic extension
 	 * @return an Object of type T returned from the Visitor method
 	 */
-	public T handle(Visitor v, Object  o) {
+	@Override
+	public T handle(Visitor<?> v, Object o) {
 
-		return v.handle(o);
+		if (o == null) {
+			return super.handle(v, o)
+		}
+		return (T) ((Object) v).handle(o)
 	}
 }
-
@@ -1,15 +1,11 @@
-package com.bac.dispatcher;
+package com.bac.dispatcher.groovy;
 
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ 
-	VisitorTestDispatch.class, 
-	VisitorTestHandler.class, 
-	VisitorTestHandlerWithReturnType.class 
-})
+@SuiteClasses({ VisitorTestGroovyDispatch.class })
 public class AllTests {
 
 }
@@ -0,0 +1,108 @@
+package com.bac.dispatcher.groovy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bac.dispatcher.Visitor;
+
+/**
+ * Tests that the Groovy runtime selects the same Visitor methods as the core
+ * DispatchHandler
+ *
+ * @author Simon Baird
+ *
+ */
+
+public class VisitorTestGroovyDispatch {
+
+	private GroovyDispatchHandler<String> dispatcher;
+
+	private RecordingVisitor visitor;
+
+	@Before
+	public void setEnv() {
+
+		dispatcher = new GroovyDispatchHandler<String>();
+		visitor = new RecordingVisitor();
+	}
+
+	@Test
+	public void dispatch_Should_Select_Method_By_Runtime_Type() {
+
+		Object string = "a";
+		Object subClass = new SubClass();
+		dispatcher.dispatch(visitor, string);
+		dispatcher.dispatch(visitor, subClass);
+		dispatcher.dispatch(visitor, new SuperClass());
+		dispatcher.dispatch(visitor, 1);
+
+		assertEquals(Arrays.asList("string", "subClass", "superClass"), visitor.visited);
+	}
+
+	@Test
+	public void handle_Should_Select_Method_By_Runtime_Type() {
+
+		assertEquals("string", dispatcher.handle(visitor, "a"));
+		assertEquals("subClass", dispatcher.handle(visitor, new SubClass()));
+		assertNull(dispatcher.handle(visitor, 1));
+	}
+
+	@Test
+	public void null_Target_Should_Call_Object_Method() {
+
+		dispatcher.dispatch(visitor, null);
+
+		assertNull(dispatcher.handle(visitor, null));
+		assertEquals(0, visitor.visited.size());
+	}
+
+	/**
+	 * Methods other than dispatch and handle are those of the core handler
+	 */
+	@Test
+	public void core_Methods_Should_Be_Inherited() {
+
+		new DefaultGroovyDispatchHandler().dispatchAll(visitor, Arrays.asList("a", new SubClass()));
+
+		assertEquals(Arrays.asList("string", "subClass"), visitor.visited);
+	}
+
+	public static class SuperClass {
+
+	}
+
+	public static class SubClass extends SuperClass {
+
+	}
+
+	public static class RecordingVisitor implements Visitor<String> {
+
+		private final List<String> visited = new ArrayList<>();
+
+		public void dispatch(String o) {
+			visited.add("string");
+		}
+
+		public void dispatch(SuperClass o) {
+			visited.add("superClass");
+		}
+
+		public void dispatch(SubClass o) {
+			visited.add("subClass");
+		}
+
+		public String handle(String o) {
+			return "string";
+		}
+
+		public String handle(SubClass o) {
+			return "subClass";
+		}
+	}
+}